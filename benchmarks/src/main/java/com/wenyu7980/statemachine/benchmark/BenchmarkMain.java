@@ -0,0 +1,52 @@
+package com.wenyu7980.statemachine.benchmark;
+
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 基准测试入口
+ * 无参数时运行全部基准测试，分别使用1、2、4、8个线程，并使用GC profiler报告内存分配速率；
+ * 有参数时按JMH命令行参数运行（如 -t 4 -prof gc StateMachine2d）
+ *
+ * @author wenyu
+ */
+public class BenchmarkMain {
+    private static final int[] THREADS = { 1, 2, 4, 8 };
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        for (int threads : THREADS) {
+            run(threads);
+        }
+    }
+
+    private static void run(int threads) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(BenchmarkMain.class.getPackage().getName()
+                        + ".*Benchmark.sendEvent$").threads(threads)
+                .addProfiler(GCProfiler.class).build();
+        new Runner(options).run();
+    }
+}
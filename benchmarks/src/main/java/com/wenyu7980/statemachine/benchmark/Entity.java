@@ -0,0 +1,35 @@
+package com.wenyu7980.statemachine.benchmark;
+
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.math.BigDecimal;
+
+/**
+ * 基准测试数据
+ *
+ * @author wenyu
+ */
+public class Entity {
+    /** 状态 */
+    int s1;
+    int s2;
+    int s3;
+    /** 文本守卫读取 */
+    private BigDecimal amount = BigDecimal.ONE;
+    /** 监听写入 */
+    long counter;
+}
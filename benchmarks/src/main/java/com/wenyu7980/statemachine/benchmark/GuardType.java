@@ -0,0 +1,60 @@
+package com.wenyu7980.statemachine.benchmark;
+
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.wenyu7980.statemachine.guard.StateMachineGuard;
+import com.wenyu7980.statemachine.guard.StateMachineTextGuard;
+
+/**
+ * 守卫类型
+ *
+ * @author wenyu
+ */
+public enum GuardType {
+    /** 无守卫 */
+    NONE {
+        @Override
+        <S, E> StateMachineGuard<Entity, S, E> guard() {
+            return null;
+        }
+    },
+    /** lambda守卫 */
+    LAMBDA {
+        @Override
+        <S, E> StateMachineGuard<Entity, S, E> guard() {
+            return (t, s, e, c) -> t.counter >= 0;
+        }
+    },
+    /** 文本守卫 */
+    TEXT {
+        @Override
+        <S, E> StateMachineGuard<Entity, S, E> guard() {
+            return new StateMachineTextGuard<>("#.amount > 0 && #.amount < 100;");
+        }
+    },
+    /** 按数据类型编译的文本守卫 */
+    TYPED_TEXT {
+        @Override
+        <S, E> StateMachineGuard<Entity, S, E> guard() {
+            return new StateMachineTextGuard<>(
+                    "#.counter >= 0 && #.amount > 0;", Entity.class,
+                    Object.class);
+        }
+    };
+
+    abstract <S, E> StateMachineGuard<Entity, S, E> guard();
+}
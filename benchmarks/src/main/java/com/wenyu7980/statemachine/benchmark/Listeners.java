@@ -0,0 +1,60 @@
+package com.wenyu7980.statemachine.benchmark;
+
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.wenyu7980.statemachine.AbstractStateMachine;
+import com.wenyu7980.statemachine.StateContainer;
+import com.wenyu7980.statemachine.listener.AbstractStateMachineListener;
+
+/**
+ * 基准测试监听
+ *
+ * @author wenyu
+ */
+final class Listeners {
+    private Listeners() {
+    }
+
+    /**
+     * 添加count个动作监听和count个状态机监听（后）
+     * @param machine
+     * @param count
+     * @param <S>
+     * @param <E>
+     */
+    static <S extends StateContainer, E> void add(
+            AbstractStateMachine<Entity, S, E, Object> machine,
+            int count) {
+        for (int i = 0; i < count; i++) {
+            machine.addAction((t, from, e, to, c) -> t.counter++);
+            machine.addListener(new PostListener<>());
+        }
+    }
+
+    private static final class PostListener<S, E>
+            implements AbstractStateMachineListener<Entity, S, E> {
+        @Override
+        public boolean isPost() {
+            return true;
+        }
+
+        @Override
+        public void listener(Entity t, S s, E e) {
+            t.counter++;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.wenyu7980.statemachine.benchmark;
+
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.wenyu7980.statemachine.StateMachine3d;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link StateMachine3d}的sendEvent基准测试
+ * 状态0..size-1组成环，每个状态一个迁移，按环依次发送事件
+ *
+ * @author wenyu
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StateMachine3dBenchmark {
+    private static final String EVENT = "E";
+    /** 迁移数 */
+    @Param({ "10", "1000", "10000" })
+    private int size;
+    /** 动作监听、状态机监听各多少个 */
+    @Param({ "0", "8" })
+    private int listeners;
+    @Param({ "LAMBDA", "TEXT", "TYPED_TEXT" })
+    private GuardType guard;
+
+    private StateMachine3d<Entity, Integer, Integer, Integer, String, Object> machine;
+    /** 查询状态 */
+    private StateMachine3d.StateTriple<Integer, Integer, Integer>[] states;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        this.machine = new StateMachine3d<>((t) -> new StateMachine3d.StateTriple<>(t.s1, t.s2, t.s3),
+                (t, s) -> {
+                    t.s1 = s.getS1();
+                    t.s2 = s.getS2();
+                    t.s3 = s.getS3();
+                },
+                (t, s, e) -> new IllegalStateException(s + "," + e));
+        this.states = new StateMachine3d.StateTriple[this.size];
+        for (int i = 0; i < this.size; i++) {
+            this.states[i] = new StateMachine3d.StateTriple<>(i, i % 7, i % 3);
+        }
+        for (int i = 0; i < this.size; i++) {
+            this.machine.addState(this.states[i], EVENT,
+                    this.states[(i + 1) % this.size], this.guard.guard());
+        }
+        Listeners.add(this.machine, this.listeners);
+        this.machine.build();
+    }
+
+    /**
+     * 每个线程一个数据
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private final Entity entity = new Entity();
+        private int index;
+    }
+
+    @Benchmark
+    public Object sendEvent(Cursor cursor) {
+        final int index = cursor.index;
+        cursor.index = index + 1 == this.size ? 0 : index + 1;
+        return this.machine.sendEvent(cursor.entity, this.states[index], EVENT);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object sendEventThreads4(Cursor cursor) {
+        return this.sendEvent(cursor);
+    }
+}
@@ -0,0 +1,108 @@
+package com.wenyu7980.statemachine.benchmark;
+
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.wenyu7980.statemachine.StateMachine;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link StateMachine}的sendEvent基准测试
+ * 状态0..size-1组成环，每个状态一个迁移，按环依次发送事件。
+ * 枚举状态时第i个迁移为(S[i%100], E[i/100])，状态、事件均为枚举，使用枚举索引
+ *
+ * @author wenyu
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StateMachineBenchmark {
+    private static final String EVENT = "E";
+    /** 迁移数 */
+    @Param({ "10", "1000", "10000" })
+    private int size;
+    /** 动作监听、状态机监听各多少个 */
+    @Param({ "0", "8" })
+    private int listeners;
+    @Param({ "LAMBDA", "TEXT", "TYPED_TEXT" })
+    private GuardType guard;
+    /** 状态、事件是否为枚举 */
+    @Param({ "false", "true" })
+    private boolean enums;
+
+    private StateMachine<Entity, Object, Object, Object> machine;
+    /** 查询状态 */
+    private StateMachine.StateSingle<Object>[] states;
+    /** 事件 */
+    private Object[] events;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        this.machine = new StateMachine<>((t) -> new StateMachine.StateSingle<>(t.s1),
+                (t, s) -> t.s1 = s.getS() instanceof Integer ? (Integer) s.getS()
+                        : ((BenchmarkState) s.getS()).ordinal(),
+                (t, s, e) -> new IllegalStateException(s + "," + e));
+        BenchmarkState[] enumStates = BenchmarkState.values();
+        BenchmarkEvent[] enumEvents = BenchmarkEvent.values();
+        this.states = new StateMachine.StateSingle[this.size];
+        this.events = new Object[this.size];
+        for (int i = 0; i < this.size; i++) {
+            if (this.enums) {
+                this.states[i] = new StateMachine.StateSingle<>(
+                        enumStates[i % enumStates.length]);
+                this.events[i] = enumEvents[i / enumStates.length];
+            } else {
+                this.states[i] = new StateMachine.StateSingle<>(i);
+                this.events[i] = EVENT;
+            }
+        }
+        for (int i = 0; i < this.size; i++) {
+            this.machine.addState(this.states[i], this.events[i],
+                    this.states[(i + 1) % this.size], this.guard.guard());
+        }
+        Listeners.add(this.machine, this.listeners);
+        this.machine.build();
+    }
+
+    /**
+     * 每个线程一个数据
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private final Entity entity = new Entity();
+        private int index;
+    }
+
+    @Benchmark
+    public Object sendEvent(Cursor cursor) {
+        final int index = cursor.index;
+        cursor.index = index + 1 == this.size ? 0 : index + 1;
+        return this.machine.sendEvent(cursor.entity, this.states[index],
+                this.events[index]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object sendEventThreads4(Cursor cursor) {
+        return this.sendEvent(cursor);
+    }
+}
@@ -0,0 +1,95 @@
+package com.wenyu7980.statemachine.benchmark;
+
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.wenyu7980.statemachine.guard.StateMachineGuard;
+import com.wenyu7980.statemachine.guard.StateMachineTextGuard;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文本守卫求值基准测试
+ * 多个不同结构的守卫轮流求值，守卫内部的调用点为多态
+ *
+ * @author wenyu
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TextGuardBenchmark {
+    private static final String[] TEXTS = { "#.counter >= 0;",
+            "#.counter >= 0 && #.amount > 0;",
+            "#.s1 < 100 || #.s2 > 100;",
+            "!(#.s1 > 100) && #.counter < 1000000;",
+            "#.amount > 0.5 && #.amount < 100 && #.s3 == 0;",
+            "#.s1 == 0 ? #.counter >= 0 : #.s2 >= 0;",
+            "#.counter + 1 > 0;",
+            "#.s1 <> 1 && #.s2 <> 1 && #.s3 <> 1;" };
+    @Param({ "false", "true" })
+    private boolean typed;
+
+    private StateMachineGuard<Entity, Object, Object>[] guards;
+    private final Entity entity = new Entity();
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        this.guards = new StateMachineGuard[TEXTS.length];
+        for (int i = 0; i < TEXTS.length; i++) {
+            this.guards[i] = this.typed
+                    ? new StateMachineTextGuard<>(TEXTS[i], Entity.class,
+                            Object.class)
+                    : new StateMachineTextGuard<>(TEXTS[i]);
+        }
+    }
+
+    /**
+     * 依次求值全部守卫
+     */
+    @Benchmark
+    @OperationsPerInvocation(8)
+    public int guardMixed() {
+        int count = 0;
+        for (StateMachineGuard<Entity, Object, Object> guard : this.guards) {
+            if (guard.guard(this.entity, null, null, null)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 只求值第一个守卫
+     */
+    @Benchmark
+    public boolean guardSingle() {
+        return this.guards[0].guard(this.entity, null, null, null);
+    }
+
+    /**
+     * 手写lambda守卫，作为对照
+     */
+    @Benchmark
+    public boolean lambda() {
+        Entity entity = this.entity;
+        return entity.counter >= 0 && entity.s1 < 100;
+    }
+}
@@ -1,342 +1,573 @@
-package com.wenyu7980.statemachine;
-/**
- * Copyright wenyu
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *     http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-
-import com.wenyu7980.statemachine.exception.StatemachineExceptionSupplier;
-import com.wenyu7980.statemachine.guard.StateMachineGuard;
-import com.wenyu7980.statemachine.listener.*;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
-import java.util.Objects;
-import java.util.function.BiConsumer;
-import java.util.function.Function;
-import java.util.stream.Collectors;
-
-/**
- * 状态机
- * =============================================================================
- * listen before statemachine（状态机前）
- * listen exit state (离开状态)
- * listen before event (事件触发前)
- * S + E + if（guard） => S 获取新状态
- * setState => 设置新状态
- * listen transform（状态迁移）
- * listen action （动作监听）
- * listen after event （事件触发后）
- * listen enter state （进入状态）
- * listen after statemachine （状态机后）
- * =============================================================================
- *
- * @author wenyu
- *
- * @param <T>
- * @param <S>
- * @param <E>
- * @param <C>
- */
-public abstract class AbstractStateMachine<T, S extends StateContainer, E, C> {
-
-    /** 日志 */
-    private static final Logger LOGGER = LoggerFactory
-            .getLogger(AbstractStateMachine.class);
-    /** 获取状态 */
-    public Function<T, S> getState;
-    /** 设置*/
-    private BiConsumer<T, S> setState;
-    /** 状态机状态列表*/
-    private List<MachineContainer<T, S, E>> states = new ArrayList<>();
-    /** 状态机监听 */
-    private List<AbstractStateMachineListener<T, S, E>> listeners = new ArrayList<>();
-    /** 状态机事件监听列表 */
-    private List<AbstractStateMachineEventListener<T, S, E, C>> eventListeners = new ArrayList<>();
-    /** 状态机状态监听列表 */
-    private List<AbstractStateMachineStateListener<T, S, E>> stateListeners = new ArrayList<>();
-    /** 状态机转态迁移监听 */
-    private List<AbstractStateMachineTransformListener<T, S, E>> transformListeners = new ArrayList<>();
-    /** 动作监听 */
-    private List<AbstractStateMachineActionListener<T, S, E, C>> actions = new ArrayList<>();
-    /** 异常处理 */
-    private StatemachineExceptionSupplier<T, S, E, ? extends RuntimeException> supplier;
-
-    /**
-     * 构造函数
-     * @param getState
-     * @param setState
-     * @param supplier
-     */
-    public AbstractStateMachine(Function<T, S> getState,
-            BiConsumer<T, S> setState,
-            StatemachineExceptionSupplier<T, S, E, ? extends RuntimeException> supplier) {
-        assert setState != null;
-        assert getState != null;
-        assert supplier != null;
-        this.setState = setState;
-        this.getState = getState;
-        this.supplier = supplier;
-    }
-
-    /**
-     * 添加状态
-     *
-     * @param from
-     * @param event
-     * @param to
-     * @param guard
-     * @return
-     */
-    public AbstractStateMachine<T, S, E, C> addState(S from, E event, S to,
-            StateMachineGuard<T, S, E> guard) {
-        states.add(new MachineContainer<>(from, event, to, guard));
-        return this;
-    }
-
-    /**
-     * 添加状态
-     *
-     * @param from
-     * @param event
-     * @param to
-     * @return
-     */
-    public AbstractStateMachine<T, S, E, C> addState(S from, E event, S to) {
-        addState(from, event, to, null);
-        return this;
-    }
-
-    /**
-     * 状态机监听
-     * @param listener
-     */
-    public AbstractStateMachine<T, S, E, C> addListener(
-            AbstractStateMachineListener<T, S, E> listener) {
-        listeners.add(listener);
-        return this;
-    }
-
-    /**
-     * 状态机监听
-     * @param listeners
-     */
-    public AbstractStateMachine<T, S, E, C> addListeners(
-            Collection<AbstractStateMachineListener<T, S, E>> listeners) {
-        listeners.addAll(listeners);
-        return this;
-    }
-
-    /**
-     * 事件监听
-     * @param listener
-     */
-    public AbstractStateMachine<T, S, E, C> addEventListener(
-            AbstractStateMachineEventListener<T, S, E, C> listener) {
-        this.eventListeners.add(listener);
-        return this;
-    }
-
-    /**
-     * 事件监听
-     * @param listensers
-     * @return
-     */
-    public AbstractStateMachine<T, S, E, C> addEventListeners(
-            Collection<AbstractStateMachineEventListener<T, S, E, C>> listensers) {
-        this.eventListeners.addAll(listensers);
-        return this;
-    }
-
-    /**
-     * 状态监听
-     * @param listener
-     */
-    public AbstractStateMachine<T, S, E, C> addStateListener(
-            AbstractStateMachineStateListener<T, S, E> listener) {
-        this.stateListeners.add(listener);
-        return this;
-    }
-
-    /**
-     * 状态监听
-     * @param listensers
-     * @return
-     */
-    public AbstractStateMachine<T, S, E, C> addStateListeners(
-            Collection<AbstractStateMachineStateListener<T, S, E>> listensers) {
-        this.stateListeners.addAll(listensers);
-        return this;
-    }
-
-    /**
-     * 状态迁移监听
-     * @param listener
-     */
-    public void addTransformListener(
-            AbstractStateMachineTransformListener<T, S, E> listener) {
-        this.transformListeners.add(listener);
-    }
-
-    /**
-     * 状态迁移监听
-     * @param listensers
-     * @return
-     */
-    public AbstractStateMachine<T, S, E, C> addTransformListeners(
-            Collection<AbstractStateMachineTransformListener<T, S, E>> listensers) {
-        this.transformListeners.addAll(listensers);
-        return this;
-    }
-
-    /**
-     * 动作监听
-     * @param action
-     */
-    public AbstractStateMachine<T, S, E, C> addAction(
-            AbstractStateMachineActionListener<T, S, E, C> action) {
-        this.actions.add(action);
-        return this;
-    }
-
-    /**
-     * 动作监听
-     * @param actions
-     */
-    public AbstractStateMachine<T, S, E, C> addActions(
-            Collection<AbstractStateMachineActionListener<T, S, E, C>> actions) {
-        this.actions.addAll(actions);
-        return this;
-    }
-
-    /**
-     *
-     * 状态切换
-     *
-     * @param t
-     * @param state 现在状态
-     * @param event 事件
-     * @param context
-     * @return 转换后状态
-     */
-    public <X extends RuntimeException> S sendEvent(final T t, final S state,
-            final E event, final C context) {
-        LOGGER.debug("状态机{}开始调用,源状态:{},事件:{},上下文:{}", this.getClass(), state,
-                event, context);
-        // 监听状态机（前）
-        this.listeners.stream().filter(listener -> !listener.isPost())
-                .forEach((listener) -> {
-                    LOGGER.debug("监听状态机（前）:{}", listener.getClass());
-                    listener.listener(t, state, event);
-                });
-        // 状态事件（离开）
-        this.stateListeners.stream()
-                .filter(listener -> !listener.isEnter() && listener.state()
-                        .match(state)).forEach(listener -> {
-            LOGGER.debug("状态事件（离开）:{}", listener.getClass());
-            listener.listener(t, event);
-        });
-        // 监听事件（前）
-        this.eventListeners.stream()
-                .filter(listener -> !listener.isPost() && Objects
-                        .equals(listener.event(), event)).forEach(action -> {
-            LOGGER.debug("监听事件（前）:{}", action.getClass());
-            action.listener(t, state, null, context);
-        });
-        // 转换
-        List<S> stats = this.states.stream()
-                .filter(container -> container.match(t, state, event, context))
-                .map(MachineContainer::getTo).collect(Collectors.toList());
-        if (stats.size() > 1 || stats.size() == 0) {
-            throw this.supplier.get(t, state, event);
-        }
-        final S s = stats.get(0);
-        setState.accept(t, s);
-        LOGGER.debug("迁移后状态:{}", s);
-        // 状态迁移
-        this.transformListeners.stream()
-                .filter(listener -> listener.source().match(state) && listener
-                        .target().match(s)).forEach(listener -> {
-            LOGGER.debug("状态迁移:{}", listener.getClass());
-            listener.listener(t, event);
-        });
-        // 动作监听
-        this.actions.stream().forEach((action) -> {
-            LOGGER.debug("动作监听:{}", action.getClass());
-            action.listener(t, state, event, s, context);
-        });
-        // 监听事件（后）
-        this.eventListeners.stream()
-                .filter(listener -> listener.isPost() && Objects
-                        .equals(listener.event(), event)).forEach(action -> {
-            LOGGER.debug("监听事件（后）:{}", action.getClass());
-            action.listener(t, state, s, context);
-        });
-        // 状态事件（进入）
-        this.stateListeners.stream()
-                .filter(listener -> listener.isEnter() && listener.state()
-                        .match(s)).forEach(listener -> {
-            LOGGER.debug("状态事件（进入）:{}", listener.getClass());
-            listener.listener(t, event);
-        });
-        // 监听状态机（后）
-        this.listeners.stream().filter(listener -> listener.isPost())
-                .forEach((listener) -> {
-                    LOGGER.debug("监听状态机（后）:{}", listener.getClass());
-                    listener.listener(t, s, event);
-                });
-        LOGGER.debug("状态机{}调用结束", this.getClass());
-        return s;
-    }
-
-    public <X extends RuntimeException> S sendEvent(final T t, final S state,
-            final E event) {
-        return this.sendEvent(t, state, event, null);
-    }
-
-    public S sendEvent(T t, E event, C context) {
-        return this.sendEvent(t, getState.apply(t), event, context);
-    }
-
-    public S sendEvent(T t, E event) {
-        return this.sendEvent(t, event, null);
-    }
-
-    protected static class MachineContainer<T, S extends StateContainer, E> {
-        private S from;
-        private E event;
-        private StateMachineGuard<T, S, E> guard;
-        private S to;
-
-        public MachineContainer(S from, E event, S to,
-                StateMachineGuard<T, S, E> guard) {
-            this.from = from;
-            this.event = event;
-            this.to = to;
-            this.guard = guard;
-        }
-
-        public boolean match(T t, S from, E event, Object object) {
-            return this.from.match(from) && Objects.equals(this.event, event)
-                    && (this.guard == null || this.guard
-                    .guard(t, from, event, object));
-        }
-
-        public S getTo() {
-            return this.to;
-        }
-    }
-}
+package com.wenyu7980.statemachine;
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.wenyu7980.statemachine.concurrent.StateMachineCompareAndSet;
+import com.wenyu7980.statemachine.concurrent.StateMachineRetryPolicy;
+import com.wenyu7980.statemachine.concurrent.StateMachineRetryStatistics;
+import com.wenyu7980.statemachine.exception.StatemachineExceptionSupplier;
+import com.wenyu7980.statemachine.guard.StateMachineGuard;
+import com.wenyu7980.statemachine.listener.*;
+import com.wenyu7980.statemachine.metrics.StateMachineMetrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * 状态机
+ * =============================================================================
+ * listen before statemachine（状态机前）
+ * listen exit state (离开状态)
+ * listen before event (事件触发前)
+ * S + E + if（guard） => S 获取新状态
+ * setState => 设置新状态
+ * listen transform（状态迁移）
+ * listen action （动作监听）
+ * listen after event （事件触发后）
+ * listen enter state （进入状态）
+ * listen after statemachine （状态机后）
+ * =============================================================================
+ * 状态机定义（addState、addListener等）完成后，由{@link #build()}编译为不可变的
+ * {@link CompiledStateMachine}，sendEvent使用最近一次编译结果
+ *
+ * @author wenyu
+ *
+ * @param <T>
+ * @param <S>
+ * @param <E>
+ * @param <C>
+ */
+public abstract class AbstractStateMachine<T, S extends StateContainer, E, C> {
+    /** 默认异步通道数 */
+    private static final int DEFAULT_LANES = Runtime.getRuntime()
+            .availableProcessors() * 4;
+
+    /** 获取状态 */
+    public Function<T, S> getState;
+    /** 设置*/
+    private BiConsumer<T, S> setState;
+    /** 比较并设置 */
+    private StateMachineCompareAndSet<T, S> compareAndSet;
+    /** 比较并设置失败后的重试策略 */
+    private StateMachineRetryPolicy retryPolicy = StateMachineRetryPolicy
+            .defaultPolicy();
+    /** 比较并设置统计 */
+    private final StateMachineRetryStatistics retryStatistics = new StateMachineRetryStatistics();
+    /** 状态机状态列表*/
+    private List<MachineContainer<T, S, E>> states = new ArrayList<>();
+    /** 状态机监听 */
+    private List<AbstractStateMachineListener<T, S, E>> listeners = new ArrayList<>();
+    /** 状态机事件监听列表 */
+    private List<AbstractStateMachineEventListener<T, S, E, C>> eventListeners = new ArrayList<>();
+    /** 状态机状态监听列表 */
+    private List<AbstractStateMachineStateListener<T, S, E>> stateListeners = new ArrayList<>();
+    /** 状态机转态迁移监听 */
+    private List<AbstractStateMachineTransformListener<T, S, E>> transformListeners = new ArrayList<>();
+    /** 动作监听 */
+    private List<AbstractStateMachineActionListener<T, S, E, C>> actions = new ArrayList<>();
+    /** 异常处理 */
+    private StatemachineExceptionSupplier<T, S, E, ? extends RuntimeException> supplier;
+    /** 编译后的状态机，定义变更后重建 */
+    private volatile CompiledStateMachine<T, S, E, C> compiled;
+    /** 异步调用的串行通道 */
+    private volatile SerialLanes<T> lanes;
+    /** 分段锁 */
+    private StripedLocks<T> locks;
+    /** 统计 */
+    private final StateMachineMetrics metrics = new StateMachineMetrics();
+
+    /**
+     * 构造函数
+     * @param getState
+     * @param setState
+     * @param supplier
+     */
+    public AbstractStateMachine(Function<T, S> getState,
+            BiConsumer<T, S> setState,
+            StatemachineExceptionSupplier<T, S, E, ? extends RuntimeException> supplier) {
+        assert setState != null;
+        assert getState != null;
+        assert supplier != null;
+        this.setState = setState;
+        this.getState = getState;
+        this.supplier = supplier;
+    }
+
+    /**
+     * 构造函数
+     * 以比较并设置代替setState，迁移过程中状态被其他线程修改时，
+     * 按{@link #retryPolicy}重试或抛出
+     * {@link com.wenyu7980.statemachine.exception.StatemachineConflictException}。
+     * 监听前已被修改的状态不执行监听；监听执行中被修改时，
+     * 设置前的监听与守卫在重试时会再次执行
+     * @param getState
+     * @param compareAndSet
+     * @param supplier
+     */
+    public AbstractStateMachine(Function<T, S> getState,
+            StateMachineCompareAndSet<T, S> compareAndSet,
+            StatemachineExceptionSupplier<T, S, E, ? extends RuntimeException> supplier) {
+        assert compareAndSet != null;
+        assert getState != null;
+        assert supplier != null;
+        this.compareAndSet = compareAndSet;
+        this.getState = getState;
+        this.supplier = supplier;
+    }
+
+    /**
+     * 添加状态
+     *
+     * @param from
+     * @param event
+     * @param to
+     * @param guard
+     * @return
+     */
+    public synchronized AbstractStateMachine<T, S, E, C> addState(S from,
+            E event, S to, StateMachineGuard<T, S, E> guard) {
+        states.add(new MachineContainer<>(from, event, to, guard));
+        this.compiled = null;
+        return this;
+    }
+
+    /**
+     * 添加状态
+     *
+     * @param from
+     * @param event
+     * @param to
+     * @return
+     */
+    public synchronized AbstractStateMachine<T, S, E, C> addState(S from,
+            E event, S to) {
+        addState(from, event, to, null);
+        return this;
+    }
+
+    /**
+     * 状态机监听
+     * @param listener
+     */
+    public synchronized AbstractStateMachine<T, S, E, C> addListener(
+            AbstractStateMachineListener<T, S, E> listener) {
+        listeners.add(listener);
+        this.compiled = null;
+        return this;
+    }
+
+    /**
+     * 状态机监听
+     * @param listeners
+     */
+    public synchronized AbstractStateMachine<T, S, E, C> addListeners(
+            Collection<AbstractStateMachineListener<T, S, E>> listeners) {
+        this.listeners.addAll(listeners);
+        this.compiled = null;
+        return this;
+    }
+
+    /**
+     * 事件监听
+     * @param listener
+     */
+    public synchronized AbstractStateMachine<T, S, E, C> addEventListener(
+            AbstractStateMachineEventListener<T, S, E, C> listener) {
+        this.eventListeners.add(listener);
+        this.compiled = null;
+        return this;
+    }
+
+    /**
+     * 事件监听
+     * @param listensers
+     * @return
+     */
+    public synchronized AbstractStateMachine<T, S, E, C> addEventListeners(
+            Collection<AbstractStateMachineEventListener<T, S, E, C>> listensers) {
+        this.eventListeners.addAll(listensers);
+        this.compiled = null;
+        return this;
+    }
+
+    /**
+     * 状态监听
+     * @param listener
+     */
+    public synchronized AbstractStateMachine<T, S, E, C> addStateListener(
+            AbstractStateMachineStateListener<T, S, E> listener) {
+        this.stateListeners.add(listener);
+        this.compiled = null;
+        return this;
+    }
+
+    /**
+     * 状态监听
+     * @param listensers
+     * @return
+     */
+    public synchronized AbstractStateMachine<T, S, E, C> addStateListeners(
+            Collection<AbstractStateMachineStateListener<T, S, E>> listensers) {
+        this.stateListeners.addAll(listensers);
+        this.compiled = null;
+        return this;
+    }
+
+    /**
+     * 状态迁移监听
+     * @param listener
+     */
+    public synchronized void addTransformListener(
+            AbstractStateMachineTransformListener<T, S, E> listener) {
+        this.transformListeners.add(listener);
+        this.compiled = null;
+    }
+
+    /**
+     * 状态迁移监听
+     * @param listensers
+     * @return
+     */
+    public synchronized AbstractStateMachine<T, S, E, C> addTransformListeners(
+            Collection<AbstractStateMachineTransformListener<T, S, E>> listensers) {
+        this.transformListeners.addAll(listensers);
+        this.compiled = null;
+        return this;
+    }
+
+    /**
+     * 动作监听
+     * @param action
+     */
+    public synchronized AbstractStateMachine<T, S, E, C> addAction(
+            AbstractStateMachineActionListener<T, S, E, C> action) {
+        this.actions.add(action);
+        this.compiled = null;
+        return this;
+    }
+
+    /**
+     * 动作监听
+     * @param actions
+     */
+    public synchronized AbstractStateMachine<T, S, E, C> addActions(
+            Collection<AbstractStateMachineActionListener<T, S, E, C>> actions) {
+        this.actions.addAll(actions);
+        this.compiled = null;
+        return this;
+    }
+
+    /**
+     *
+     * 状态切换
+     *
+     * @param t
+     * @param state 现在状态
+     * @param event 事件
+     * @param context
+     * @return 转换后状态
+     */
+    public <X extends RuntimeException> S sendEvent(final T t, final S state,
+            final E event, final C context) {
+        return this.compiled().sendEvent(t, state, event, context);
+    }
+
+    public <X extends RuntimeException> S sendEvent(final T t, final S state,
+            final E event) {
+        return this.sendEvent(t, state, event, null);
+    }
+
+    public S sendEvent(T t, E event, C context) {
+        return this.compiled().sendEvent(t, event, context);
+    }
+
+    public S sendEvent(T t, E event) {
+        return this.sendEvent(t, event, null);
+    }
+
+    /**
+     * 批量状态切换
+     * 现在状态由getState获取，按现在状态分组处理，某个数据被拒绝不影响其他数据
+     *
+     * @param ts
+     * @param event 事件
+     * @param context
+     * @return 迁移成功与被拒绝的数据
+     */
+    public StateMachineBatchResult<T, S> sendEvents(Collection<T> ts, E event,
+            C context) {
+        return this.compiled().sendEvents(ts, event, context);
+    }
+
+    public StateMachineBatchResult<T, S> sendEvents(Collection<T> ts,
+            E event) {
+        return this.sendEvents(ts, event, null);
+    }
+
+    /**
+     * 并行批量状态切换
+     *
+     * @param ts
+     * @param event 事件
+     * @param context
+     * @param options 并行配置
+     * @return 迁移成功与被拒绝的数据
+     */
+    public StateMachineBatchResult<T, S> sendEvents(Collection<T> ts, E event,
+            C context, StateMachineBatchOptions options) {
+        return this.compiled().sendEvents(ts, event, context, options);
+    }
+
+    /**
+     * 比较并设置失败后的重试策略，默认{@link StateMachineRetryPolicy#defaultPolicy()}
+     * @param retryPolicy
+     * @return
+     */
+    public synchronized AbstractStateMachine<T, S, E, C> retryPolicy(
+            StateMachineRetryPolicy retryPolicy) {
+        assert retryPolicy != null;
+        this.retryPolicy = retryPolicy;
+        this.compiled = null;
+        return this;
+    }
+
+    /**
+     * 比较并设置统计（冲突、重试、失败次数）
+     * @return
+     */
+    public StateMachineRetryStatistics getRetryStatistics() {
+        return retryStatistics;
+    }
+
+    /**
+     * 统计（状态迁移次数、耗时直方图、被拒绝次数），默认关闭，
+     * 由{@link StateMachineMetrics#setEnabled(boolean)}开启
+     * @return
+     */
+    public StateMachineMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 分段锁配置
+     * 由getState获取状态的调用（sendEvent(t, event, context)、批量、异步）
+     * 在数据所在分段的锁内完成获取状态、迁移、设置状态，同一数据的并发调用互斥。
+     * 监听中对其他数据调用状态机时，注意不同线程交叉持有分段锁可能死锁
+     *
+     * @param stripes 分段数，越大竞争越少
+     * @param key 数据key，为null时按数据对象本身（identity）区分
+     * @return
+     */
+    public synchronized AbstractStateMachine<T, S, E, C> lockStripes(
+            int stripes, Function<T, ?> key) {
+        this.locks = new StripedLocks<>(stripes, key);
+        this.compiled = null;
+        return this;
+    }
+
+    /**
+     * 异步调用配置
+     * 数据按key分配到串行通道，同一通道（同一数据）的事件按提交顺序执行，
+     * 不同通道在执行器中并行执行
+     *
+     * @param executor 执行器
+     * @param key 数据key，为null时按数据对象本身（identity）区分
+     * @param lanes 通道数
+     * @return
+     */
+    public synchronized AbstractStateMachine<T, S, E, C> async(
+            Executor executor, Function<T, ?> key, int lanes) {
+        assert executor != null;
+        this.lanes = new SerialLanes<>(executor, key, lanes);
+        return this;
+    }
+
+    /**
+     * 异步状态切换
+     * 现在状态在执行时由getState获取，未配置{@link #async}时使用
+     * {@link ForkJoinPool#commonPool()}，按数据对象本身分配通道
+     *
+     * @param t
+     * @param event 事件
+     * @param context
+     * @return 转换后状态
+     */
+    public CompletableFuture<S> sendEventAsync(T t, E event, C context) {
+        SerialLanes<T> lanes = this.lanes;
+        if (lanes == null) {
+            synchronized (this) {
+                if (this.lanes == null) {
+                    this.lanes = new SerialLanes<>(ForkJoinPool.commonPool(),
+                            null, DEFAULT_LANES);
+                }
+                lanes = this.lanes;
+            }
+        }
+        return lanes.submit(t, () -> this.sendEvent(t, event, context));
+    }
+
+    public CompletableFuture<S> sendEventAsync(T t, E event) {
+        return this.sendEventAsync(t, event, null);
+    }
+
+    /**
+     * 重放一条历史状态迁移
+     * 使用记录的目标状态，不调用守卫，只调用投影监听
+     * （{@link StateMachineProjectionListener}）
+     *
+     * @param t
+     * @param from 源状态
+     * @param event 事件
+     * @param to 目标状态
+     * @param context
+     */
+    public void replay(T t, S from, E event, S to, C context) {
+        this.compiled().replay(t, from, event, to, context);
+    }
+
+    /**
+     * 批量重放
+     * 只调用投影监听，每个数据在批次结束时设置一次最终状态
+     *
+     * @param batch
+     * @param context
+     */
+    public void replay(StateMachineReplayBatch<T, S, E> batch, C context) {
+        this.compiled().replay(batch, context);
+    }
+
+    /**
+     * 编译状态机
+     * 定义未变更时返回同一实例，变更后重新编译为新实例
+     * @return 不可变、可跨线程共享的状态机
+     */
+    public synchronized CompiledStateMachine<T, S, E, C> build() {
+        CompiledStateMachine<T, S, E, C> compiled = this.compiled;
+        if (compiled == null) {
+            List<MachineContainer<T, S, E>> states = new ArrayList<>(
+                    this.states);
+            compiled = new CompiledStateMachine<>(this.getClass(),
+                    this.getState, this.setState, this.compareAndSet,
+                    this.retryPolicy, this.retryStatistics, this.supplier,
+                    this.createIndex(states),
+                    new DispatchPlans<>(states, this.listeners,
+                            this.eventListeners,
+                            this.stateListeners, this.transformListeners,
+                            this.actions, this.metrics), this.locks,
+                    this.metrics);
+            this.compiled = compiled;
+        }
+        return compiled;
+    }
+
+    /**
+     * 当前编译后的状态机
+     * @return
+     */
+    private CompiledStateMachine<T, S, E, C> compiled() {
+        CompiledStateMachine<T, S, E, C> compiled = this.compiled;
+        return compiled == null ? this.build() : compiled;
+    }
+
+    /**
+     * 创建状态迁移索引
+     * @param containers 状态迁移（定义顺序）
+     * @return
+     */
+    TransitionIndex<T, S, E> createIndex(
+            List<MachineContainer<T, S, E>> containers) {
+        return new HashTransitionIndex<>(containers);
+    }
+
+    protected static class MachineContainer<T, S extends StateContainer, E> {
+        private final S from;
+        private final E event;
+        private final StateMachineGuard<T, S, E> guard;
+        private final S to;
+
+        public MachineContainer(S from, E event, S to,
+                StateMachineGuard<T, S, E> guard) {
+            this.from = from;
+            this.event = event;
+            this.to = to;
+            this.guard = guard;
+        }
+
+        public boolean match(T t, S from, E event, Object object) {
+            return this.from.match(from) && Objects.equals(this.event, event)
+                    && this.guard(t, from, event, object);
+        }
+
+        /**
+         * 守卫
+         * @param t
+         * @param from
+         * @param event
+         * @param object
+         * @return
+         */
+        public boolean guard(T t, S from, E event, Object object) {
+            return this.guard == null || this.guard
+                    .guard(t, from, event, object);
+        }
+
+        /**
+         * 源状态、事件已由索引确认匹配的迁移，匹配时只执行守卫
+         * @return
+         */
+        MachineContainer<T, S, E> resolved() {
+            return new ResolvedContainer<>(this);
+        }
+
+        public S getFrom() {
+            return this.from;
+        }
+
+        public E getEvent() {
+            return this.event;
+        }
+
+        public S getTo() {
+            return this.to;
+        }
+    }
+
+    private static class ResolvedContainer<T, S extends StateContainer, E>
+            extends MachineContainer<T, S, E> {
+
+        private ResolvedContainer(MachineContainer<T, S, E> container) {
+            super(container.from, container.event, container.to,
+                    container.guard);
+        }
+
+        @Override
+        public boolean match(T t, S from, E event, Object object) {
+            return this.guard(t, from, event, object);
+        }
+
+        @Override
+        MachineContainer<T, S, E> resolved() {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,705 @@
+package com.wenyu7980.statemachine;
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.wenyu7980.statemachine.AbstractStateMachine.MachineContainer;
+import com.wenyu7980.statemachine.concurrent.StateMachineCompareAndSet;
+import com.wenyu7980.statemachine.concurrent.StateMachineRetryPolicy;
+import com.wenyu7980.statemachine.concurrent.StateMachineRetryStatistics;
+import com.wenyu7980.statemachine.exception.StatemachineConflictException;
+import com.wenyu7980.statemachine.exception.StatemachineExceptionSupplier;
+import com.wenyu7980.statemachine.listener.*;
+import com.wenyu7980.statemachine.metrics.StateMachineMetrics;
+import com.wenyu7980.statemachine.metrics.StateMachinePhase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * 编译后的状态机
+ * 由{@link AbstractStateMachine#build()}创建，状态迁移、监听均为不可变快照，
+ * 构建后可安全地发布给任意线程并发调用，无需加锁。
+ * 状态机定义变更后重新build将得到新的实例，已发布的实例不受影响
+ *
+ * @author wenyu
+ *
+ * @param <T>
+ * @param <S>
+ * @param <E>
+ * @param <C>
+ */
+public final class CompiledStateMachine<T, S extends StateContainer, E, C> {
+    /** 日志（沿用状态机日志） */
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(AbstractStateMachine.class);
+    /** 状态机类型 */
+    private final Class<?> type;
+    /** 获取状态 */
+    private final Function<T, S> getState;
+    /** 设置，使用比较并设置时为null */
+    private final BiConsumer<T, S> setState;
+    /** 比较并设置，为null时使用setState */
+    private final StateMachineCompareAndSet<T, S> compareAndSet;
+    /** 比较并设置失败后的重试策略 */
+    private final StateMachineRetryPolicy retryPolicy;
+    /** 比较并设置统计 */
+    private final StateMachineRetryStatistics statistics;
+    /** 状态迁移索引 */
+    private final TransitionIndex<T, S, E> index;
+    /** 监听分发计划 */
+    private final DispatchPlans<T, S, E, C> plans;
+    /** 重放的监听分发计划（只含投影监听） */
+    private final DispatchPlans<T, S, E, C> projections;
+    /** 异常处理 */
+    private final StatemachineExceptionSupplier<T, S, E, ? extends RuntimeException> supplier;
+    /** 分段锁，为null时不加锁 */
+    private final StripedLocks<T> locks;
+    /** 统计 */
+    private final StateMachineMetrics metrics;
+
+    CompiledStateMachine(Class<?> type, Function<T, S> getState,
+            BiConsumer<T, S> setState,
+            StateMachineCompareAndSet<T, S> compareAndSet,
+            StateMachineRetryPolicy retryPolicy,
+            StateMachineRetryStatistics statistics,
+            StatemachineExceptionSupplier<T, S, E, ? extends RuntimeException> supplier,
+            TransitionIndex<T, S, E> index, DispatchPlans<T, S, E, C> plans,
+            StripedLocks<T> locks, StateMachineMetrics metrics) {
+        this.type = type;
+        this.getState = getState;
+        this.setState = setState;
+        this.compareAndSet = compareAndSet;
+        this.retryPolicy = retryPolicy;
+        this.statistics = statistics;
+        this.supplier = supplier;
+        this.index = index;
+        this.plans = plans;
+        this.projections = plans.projections();
+        this.locks = locks;
+        this.metrics = metrics;
+    }
+
+    /**
+     *
+     * 状态切换
+     * 使用比较并设置时，以state为期望状态设置，失败抛出
+     * {@link StatemachineConflictException}（现在状态由调用方提供，不重试）
+     *
+     * @param t
+     * @param state 现在状态
+     * @param event 事件
+     * @param context
+     * @return 转换后状态
+     */
+    public S sendEvent(final T t, final S state, final E event,
+            final C context) {
+        return this.dispatch(t, state, event, context,
+                this.plans.plan(state, event),
+                this.index.candidates(state, event), null);
+    }
+
+    /**
+     * 状态切换
+     *
+     * @param t
+     * @param state 现在状态
+     * @param event 事件
+     * @param context
+     * @param plan (state, event)的分发计划
+     * @param candidates (state, event)的候选迁移
+     * @param current 设置状态成功后记录迁移后状态，可为null
+     * @return 转换后状态
+     */
+    private S dispatch(final T t, final S state, final E event,
+            final C context, final DispatchPlans.EventPlan<T, S, E, C> plan,
+            final List<MachineContainer<T, S, E>> candidates,
+            final Current<S> current) {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("状态机{}开始调用,源状态:{},事件:{},上下文:{}", this.type,
+                    state, event, context);
+        }
+        if (this.compareAndSet != null
+                && !same(this.getState.apply(t), state)) {
+            // 状态已被修改，在监听、守卫之前检测冲突
+            throw this.conflict(t, state, event);
+        }
+        final boolean measured = this.metrics.isEnabled();
+        final boolean timed = this.metrics.isPhaseTimingEnabled();
+        final long start = measured ? System.nanoTime() : 0L;
+        this.before(t, state, event, context, plan, timed);
+        // 转换
+        long begin = timed ? System.nanoTime() : 0L;
+        MachineContainer<T, S, E> matched = null;
+        for (int i = 0, size = candidates.size(); i < size; i++) {
+            MachineContainer<T, S, E> container = candidates.get(i);
+            if (container.match(t, state, event, context)) {
+                if (matched != null) {
+                    throw this.reject(t, state, event, plan, measured);
+                }
+                matched = container;
+            }
+        }
+        if (matched == null) {
+            throw this.reject(t, state, event, plan, measured);
+        }
+        if (timed) {
+            final long now = System.nanoTime();
+            this.metrics.time(StateMachinePhase.GUARD, null, now - begin);
+            begin = now;
+        }
+        final S s = matched.getTo();
+        if (this.compareAndSet == null) {
+            this.setState.accept(t, s);
+        } else if (!this.compareAndSet.compareAndSet(t, state, s)) {
+            throw this.conflict(t, state, event);
+        }
+        if (current != null) {
+            current.to = s;
+        }
+        if (timed) {
+            this.metrics.time(StateMachinePhase.SET_STATE, null,
+                    System.nanoTime() - begin);
+        }
+        LOGGER.debug("迁移后状态:{}", s);
+        final DispatchPlans.TransitionPlan<T, S, E, C> transition = plan
+                .transition(s);
+        this.after(t, state, event, s, context, transition, timed);
+        if (measured) {
+            transition.metrics().record(System.nanoTime() - start);
+        }
+        LOGGER.debug("状态机{}调用结束", this.type);
+        return s;
+    }
+
+    /**
+     * 比较并设置冲突
+     * @return
+     */
+    private StatemachineConflictException conflict(final T t, final S state,
+            final E event) {
+        this.statistics.conflict();
+        LOGGER.debug("状态已被修改,期望状态:{}", state);
+        return new StatemachineConflictException(t, state, event);
+    }
+
+    /**
+     * 状态是否相同，未实现equals的状态按相互匹配比较
+     */
+    private static <S extends StateContainer> boolean same(S a, S b) {
+        return a == b || a != null && b != null && (a.equals(b)
+                || a.match(b) && b.match(a));
+    }
+
+    /**
+     * 没有或有多个匹配的迁移
+     * @return 异常处理的异常
+     */
+    private RuntimeException reject(final T t, final S state, final E event,
+            final DispatchPlans.EventPlan<T, S, E, C> plan,
+            final boolean measured) {
+        if (measured) {
+            plan.rejections().increment();
+        }
+        return this.supplier.get(t, state, event);
+    }
+
+    /**
+     * 统计
+     * @return
+     */
+    public StateMachineMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 迁移前的监听：状态机前、离开状态、事件前
+     * @param timed 是否分阶段计时
+     */
+    private void before(final T t, final S state, final E event,
+            final C context, final DispatchPlans.EventPlan<T, S, E, C> plan,
+            final boolean timed) {
+        // 监听状态机（前）
+        for (int i = 0, size = plan.preListeners.size(); i < size; i++) {
+            AbstractStateMachineListener<T, S, E> listener = plan.preListeners
+                    .get(i);
+            LOGGER.debug("监听状态机（前）:{}", listener.getClass());
+            final long begin = timed ? System.nanoTime() : 0L;
+            listener.listener(t, state, event);
+            if (timed) {
+                this.metrics.time(StateMachinePhase.PRE_LISTENER, listener,
+                        System.nanoTime() - begin);
+            }
+        }
+        // 状态事件（离开）
+        for (int i = 0, size = plan.exitListeners.size(); i < size; i++) {
+            AbstractStateMachineStateListener<T, S, E> listener = plan.exitListeners
+                    .get(i);
+            LOGGER.debug("状态事件（离开）:{}", listener.getClass());
+            final long begin = timed ? System.nanoTime() : 0L;
+            listener.listener(t, event);
+            if (timed) {
+                this.metrics.time(StateMachinePhase.EXIT_STATE, listener,
+                        System.nanoTime() - begin);
+            }
+        }
+        // 监听事件（前）
+        for (int i = 0, size = plan.preEventListeners.size(); i < size; i++) {
+            AbstractStateMachineEventListener<T, S, E, C> action = plan.preEventListeners
+                    .get(i);
+            LOGGER.debug("监听事件（前）:{}", action.getClass());
+            final long begin = timed ? System.nanoTime() : 0L;
+            action.listener(t, state, null, context);
+            if (timed) {
+                this.metrics.time(StateMachinePhase.PRE_EVENT, action,
+                        System.nanoTime() - begin);
+            }
+        }
+    }
+
+    /**
+     * 迁移后的监听：状态迁移、动作、事件后、进入状态、状态机后
+     * @param timed 是否分阶段计时
+     */
+    private void after(final T t, final S state, final E event, final S s,
+            final C context,
+            final DispatchPlans.TransitionPlan<T, S, E, C> transition,
+            final boolean timed) {
+        // 状态迁移
+        for (int i = 0, size = transition.transformListeners
+                .size(); i < size; i++) {
+            AbstractStateMachineTransformListener<T, S, E> listener = transition.transformListeners
+                    .get(i);
+            LOGGER.debug("状态迁移:{}", listener.getClass());
+            final long begin = timed ? System.nanoTime() : 0L;
+            listener.listener(t, event);
+            if (timed) {
+                this.metrics.time(StateMachinePhase.TRANSFORM, listener,
+                        System.nanoTime() - begin);
+            }
+        }
+        // 动作监听
+        for (int i = 0, size = transition.actions.size(); i < size; i++) {
+            AbstractStateMachineActionListener<T, S, E, C> action = transition.actions
+                    .get(i);
+            LOGGER.debug("动作监听:{}", action.getClass());
+            final long begin = timed ? System.nanoTime() : 0L;
+            action.listener(t, state, event, s, context);
+            if (timed) {
+                this.metrics.time(StateMachinePhase.ACTION, action,
+                        System.nanoTime() - begin);
+            }
+        }
+        // 监听事件（后）
+        for (int i = 0, size = transition.postEventListeners
+                .size(); i < size; i++) {
+            AbstractStateMachineEventListener<T, S, E, C> action = transition.postEventListeners
+                    .get(i);
+            LOGGER.debug("监听事件（后）:{}", action.getClass());
+            final long begin = timed ? System.nanoTime() : 0L;
+            action.listener(t, state, s, context);
+            if (timed) {
+                this.metrics.time(StateMachinePhase.POST_EVENT, action,
+                        System.nanoTime() - begin);
+            }
+        }
+        // 状态事件（进入）
+        for (int i = 0, size = transition.enterListeners.size(); i < size; i++) {
+            AbstractStateMachineStateListener<T, S, E> listener = transition.enterListeners
+                    .get(i);
+            LOGGER.debug("状态事件（进入）:{}", listener.getClass());
+            final long begin = timed ? System.nanoTime() : 0L;
+            listener.listener(t, event);
+            if (timed) {
+                this.metrics.time(StateMachinePhase.ENTER_STATE, listener,
+                        System.nanoTime() - begin);
+            }
+        }
+        // 监听状态机（后）
+        for (int i = 0, size = transition.postListeners.size(); i < size; i++) {
+            AbstractStateMachineListener<T, S, E> listener = transition.postListeners
+                    .get(i);
+            LOGGER.debug("监听状态机（后）:{}", listener.getClass());
+            final long begin = timed ? System.nanoTime() : 0L;
+            listener.listener(t, s, event);
+            if (timed) {
+                this.metrics.time(StateMachinePhase.POST_LISTENER, listener,
+                        System.nanoTime() - begin);
+            }
+        }
+    }
+
+    public S sendEvent(final T t, final S state, final E event) {
+        return this.sendEvent(t, state, event, null);
+    }
+
+    /**
+     * 重放一条历史状态迁移
+     * 使用记录的目标状态，不查找迁移、不调用守卫，只调用投影监听
+     * （{@link StateMachineProjectionListener}），之后设置状态
+     *
+     * @param t
+     * @param from 源状态
+     * @param event 事件
+     * @param to 目标状态
+     * @param context
+     */
+    public void replay(final T t, final S from, final E event, final S to,
+            final C context) {
+        this.project(t, from, event, to, context);
+        this.replayState(t, from, event, to);
+    }
+
+    /**
+     * 批量重放
+     * 按顺序调用投影监听，每个数据只在批次结束时设置一次最终状态
+     * （使用比较并设置时，期望状态为该数据在批次中的第一个源状态）
+     *
+     * @param batch
+     * @param context
+     */
+    public void replay(final StateMachineReplayBatch<T, S, E> batch,
+            final C context) {
+        // 数据 -> [第一条记录, 最后一条记录]
+        final Map<T, int[]> entities = new IdentityHashMap<>();
+        for (int i = 0, size = batch.size(); i < size; i++) {
+            final T t = batch.ts.get(i);
+            this.project(t, batch.froms.get(i), batch.events.get(i),
+                    batch.tos.get(i), context);
+            int[] range = entities.get(t);
+            if (range == null) {
+                entities.put(t, new int[] { i, i });
+            } else {
+                range[1] = i;
+            }
+        }
+        for (Map.Entry<T, int[]> entry : entities.entrySet()) {
+            final int[] range = entry.getValue();
+            this.replayState(entry.getKey(), batch.froms.get(range[0]),
+                    batch.events.get(range[1]), batch.tos.get(range[1]));
+        }
+    }
+
+    /**
+     * 调用投影监听
+     */
+    private void project(final T t, final S from, final E event, final S to,
+            final C context) {
+        final DispatchPlans.EventPlan<T, S, E, C> plan = this.projections
+                .plan(from, event);
+        this.before(t, from, event, context, plan, false);
+        this.after(t, from, event, to, context, plan.transition(to), false);
+    }
+
+    /**
+     * 重放设置状态
+     */
+    private void replayState(final T t, final S from, final E event,
+            final S to) {
+        if (this.compareAndSet == null) {
+            this.setState.accept(t, to);
+        } else if (!this.compareAndSet.compareAndSet(t, from, to)) {
+            this.statistics.conflict();
+            throw new StatemachineConflictException(t, from, event);
+        }
+    }
+
+    /**
+     * 状态切换
+     * 配置了分段锁时，获取状态、迁移、设置状态在数据的锁内完成；
+     * 使用比较并设置时，状态被其他线程修改后按重试策略重新获取状态重试，
+     * 重试用尽抛出{@link StatemachineConflictException}。
+     * 每次尝试先重新获取状态比较，已被修改时在监听、守卫之前冲突；
+     * 比较之后、设置之前被修改时，状态机前、离开状态、事件前监听和守卫已执行，
+     * 重试时会再次执行（不重试时其效果保留），这些监听需可重复执行
+     *
+     * @param t
+     * @param event 事件
+     * @param context
+     * @return 转换后状态
+     */
+    public S sendEvent(T t, E event, C context) {
+        if (this.locks == null) {
+            return this.sendEventOrRetry(t, event, context);
+        }
+        synchronized (this.locks.lock(t)) {
+            return this.sendEventOrRetry(t, event, context);
+        }
+    }
+
+    private S sendEventOrRetry(T t, E event, C context) {
+        return this.setOrRetry(t, this.getState.apply(t), event, context,
+                null, null, null);
+    }
+
+    /**
+     * 从现在状态切换，比较并设置冲突时按重试策略重新获取状态重试，
+     * 重试用尽抛出{@link StatemachineConflictException}
+     *
+     * @param t
+     * @param state 现在状态
+     * @param event 事件
+     * @param context
+     * @param plan state的分发计划，为null时查找
+     * @param candidates state的候选迁移
+     * @param current 记录实际迁移的现在状态与迁移后状态，可为null
+     * @return 转换后状态
+     */
+    private S setOrRetry(T t, S state, E event, C context,
+            DispatchPlans.EventPlan<T, S, E, C> plan,
+            List<MachineContainer<T, S, E>> candidates, Current<S> current) {
+        for (int retries = 0; ; retries++) {
+            if (current != null) {
+                current.state = state;
+            }
+            if (plan == null) {
+                plan = this.plans.plan(state, event);
+                candidates = this.index.candidates(state, event);
+            }
+            try {
+                return this.dispatch(t, state, event, context, plan,
+                        candidates, current);
+            } catch (StatemachineConflictException e) {
+                if (!this.retryable(retries)) {
+                    throw e;
+                }
+            }
+            state = this.getState.apply(t);
+            plan = null;
+        }
+    }
+
+    /**
+     * 冲突后是否重试
+     * @param retries 已重试次数
+     * @return
+     */
+    private boolean retryable(int retries) {
+        if (retries >= this.retryPolicy.getMaxRetries()) {
+            this.statistics.failure();
+            return false;
+        }
+        this.statistics.retry();
+        return true;
+    }
+
+    /**
+     * 比较并设置统计
+     * @return
+     */
+    public StateMachineRetryStatistics getRetryStatistics() {
+        return statistics;
+    }
+
+    public S sendEvent(T t, E event) {
+        return this.sendEvent(t, event, null);
+    }
+
+    /**
+     * 批量状态切换
+     * 按现在状态分组，每组只查找一次候选迁移和分发计划，
+     * 某个数据被拒绝（异常处理或监听抛出异常）不影响其他数据
+     *
+     * @param ts
+     * @param event 事件
+     * @param context
+     * @return 迁移成功与被拒绝的数据
+     */
+    public StateMachineBatchResult<T, S> sendEvents(Collection<T> ts, E event,
+            C context) {
+        List<T> list = new ArrayList<>(ts);
+        return this.sendEvents(list, 0, list.size(), event, context);
+    }
+
+    /**
+     * 并行批量状态切换
+     * 数据量超过拆分阈值时拆分到执行器中并行执行，
+     * 某个数据被拒绝不影响其他数据
+     *
+     * @param ts
+     * @param event 事件
+     * @param context
+     * @param options 并行配置
+     * @return 迁移成功与被拒绝的数据
+     */
+    public StateMachineBatchResult<T, S> sendEvents(Collection<T> ts, E event,
+            C context, StateMachineBatchOptions options) {
+        final List<T> list = new ArrayList<>(ts);
+        final int threshold = options.getThreshold();
+        StateMachineBatchResult<T, S> result;
+        if (list.size() <= threshold) {
+            result = this.sendEvents(list, 0, list.size(), event, context);
+        } else if (options.getExecutor() instanceof ForkJoinPool) {
+            result = ((ForkJoinPool) options.getExecutor()).invoke(
+                    new BatchTask(list, 0, list.size(), event, context,
+                            threshold));
+        } else {
+            List<CompletableFuture<StateMachineBatchResult<T, S>>> futures = new ArrayList<>();
+            for (int from = 0; from < list.size(); from += threshold) {
+                final int start = from;
+                final int end = Math.min(list.size(), from + threshold);
+                futures.add(CompletableFuture.supplyAsync(
+                        () -> this.sendEvents(list, start, end, event, context),
+                        options.getExecutor()));
+            }
+            result = new StateMachineBatchResult<>();
+            for (CompletableFuture<StateMachineBatchResult<T, S>> future : futures) {
+                result.merge(future.join());
+            }
+        }
+        if (options.isOrdered()) {
+            result.sort();
+        }
+        return result;
+    }
+
+    /**
+     * 批量状态切换[from, to)范围内的数据
+     * @param list
+     * @param from
+     * @param to
+     * @param event
+     * @param context
+     * @return
+     */
+    private StateMachineBatchResult<T, S> sendEvents(List<T> list, int from,
+            int to, E event, C context) {
+        StateMachineBatchResult<T, S> result = new StateMachineBatchResult<>();
+        Map<S, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = from; i < to; i++) {
+            S state;
+            try {
+                state = this.getState.apply(list.get(i));
+            } catch (RuntimeException e) {
+                result.rejected(i, list.get(i), null, e);
+                continue;
+            }
+            groups.computeIfAbsent(state, k -> new ArrayList<>()).add(i);
+        }
+        final Current<S> current = new Current<>();
+        groups.forEach((state, indexes) -> {
+            final DispatchPlans.EventPlan<T, S, E, C> plan = this.plans
+                    .plan(state, event);
+            final List<MachineContainer<T, S, E>> candidates = this.index
+                    .candidates(state, event);
+            for (int index : indexes) {
+                T t = list.get(index);
+                current.state = state;
+                current.to = null;
+                try {
+                    S s;
+                    if (this.locks == null) {
+                        s = this.setOrRetry(t, state, event, context, plan,
+                                candidates, current);
+                    } else {
+                        // 加锁后重新获取状态，分组后状态已变化时单独查找
+                        synchronized (this.locks.lock(t)) {
+                            current.state = this.getState.apply(t);
+                            s = Objects.equals(current.state, state) ?
+                                    this.dispatch(t, current.state, event,
+                                            context, plan, candidates,
+                                            current) :
+                                    this.dispatch(t, current.state, event,
+                                            context,
+                                            this.plans.plan(current.state,
+                                                    event),
+                                            this.index.candidates(
+                                                    current.state, event),
+                                            current);
+                        }
+                    }
+                    result.transitioned(index, t, current.state, s, null);
+                } catch (RuntimeException e) {
+                    if (current.to != null) {
+                        // 状态已迁移，迁移后的监听抛出异常
+                        result.transitioned(index, t, current.state,
+                                current.to, e);
+                    } else {
+                        result.rejected(index, t, current.state, e);
+                    }
+                }
+            }
+        });
+        return result;
+    }
+
+    public StateMachineBatchResult<T, S> sendEvents(Collection<T> ts,
+            E event) {
+        return this.sendEvents(ts, event, null);
+    }
+
+    /**
+     * 实际迁移的现在状态与迁移后状态
+     */
+    private static final class Current<S> {
+        private S state;
+        /** 设置状态成功前为null */
+        private S to;
+    }
+
+    /**
+     * fork/join批量任务
+     */
+    private class BatchTask
+            extends RecursiveTask<StateMachineBatchResult<T, S>> {
+        private final List<T> list;
+        private final int from;
+        private final int to;
+        private final E event;
+        private final C context;
+        private final int threshold;
+
+        private BatchTask(List<T> list, int from, int to, E event, C context,
+                int threshold) {
+            this.list = list;
+            this.from = from;
+            this.to = to;
+            this.event = event;
+            this.context = context;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected StateMachineBatchResult<T, S> compute() {
+            if (this.to - this.from <= this.threshold) {
+                return CompiledStateMachine.this
+                        .sendEvents(this.list, this.from, this.to, this.event,
+                                this.context);
+            }
+            int mid = (this.from + this.to) >>> 1;
+            BatchTask left = new BatchTask(this.list, this.from, mid,
+                    this.event, this.context, this.threshold);
+            BatchTask right = new BatchTask(this.list, mid, this.to,
+                    this.event, this.context, this.threshold);
+            left.fork();
+            StateMachineBatchResult<T, S> result = right.compute();
+            StateMachineBatchResult<T, S> merged = left.join();
+            merged.merge(result);
+            return merged;
+        }
+    }
+}
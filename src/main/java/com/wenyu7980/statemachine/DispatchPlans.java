@@ -0,0 +1,388 @@
+package com.wenyu7980.statemachine;
+
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.wenyu7980.statemachine.AbstractStateMachine.MachineContainer;
+import com.wenyu7980.statemachine.listener.*;
+import com.wenyu7980.statemachine.metrics.StateMachineMetrics;
+import com.wenyu7980.statemachine.metrics.StateMachineTransitionMetrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 监听分发计划
+ * 触发哪些监听只取决于(源状态, 事件, 目标状态)，按key预先筛选并缓存，
+ * 状态机调用时只需顺序遍历。监听变更后需重新创建。
+ * 状态是迁移定义中的源/目标状态（不含通配）且事件在迁移定义中时，计划总是缓存，
+ * 缓存大小由状态机定义决定；
+ * 其他计划（运行时出现的其他状态、事件未定义）最多缓存{@link #MAX_PLANS}个
+ *
+ * @author wenyu
+ *
+ * @param <T>
+ * @param <S>
+ * @param <E>
+ * @param <C>
+ */
+final class DispatchPlans<T, S extends StateContainer, E, C> {
+    /** 状态或事件不在迁移定义中的计划缓存上限，避免无限增长 */
+    static final int MAX_PLANS = 4096;
+    /** null key */
+    private static final Object NULL_KEY = new Object();
+
+    private final List<AbstractStateMachineListener<T, S, E>> preListeners;
+    private final List<AbstractStateMachineListener<T, S, E>> postListeners;
+    private final List<AbstractStateMachineEventListener<T, S, E, C>> eventListeners;
+    private final List<AbstractStateMachineStateListener<T, S, E>> stateListeners;
+    private final List<AbstractStateMachineTransformListener<T, S, E>> transformListeners;
+    private final List<AbstractStateMachineActionListener<T, S, E, C>> actions;
+    /** 统计，为null时不统计 */
+    private final StateMachineMetrics metrics;
+    /** 迁移定义中的事件 */
+    private final Set<Object> events;
+    /** 迁移定义中不含通配的源/目标状态 */
+    private final Set<Object> states;
+    /** 源状态 -> 事件 -> 计划 */
+    private final ConcurrentMap<Object, ConcurrentMap<Object, EventPlan<T, S, E, C>>> plans = new ConcurrentHashMap<>();
+    /** 受{@link #MAX_PLANS}限制的已缓存计划数 */
+    private final AtomicInteger size = new AtomicInteger();
+
+    DispatchPlans(List<MachineContainer<T, S, E>> containers,
+            List<AbstractStateMachineListener<T, S, E>> listeners,
+            List<AbstractStateMachineEventListener<T, S, E, C>> eventListeners,
+            List<AbstractStateMachineStateListener<T, S, E>> stateListeners,
+            List<AbstractStateMachineTransformListener<T, S, E>> transformListeners,
+            List<AbstractStateMachineActionListener<T, S, E, C>> actions,
+            StateMachineMetrics metrics) {
+        this(events(containers), states(containers), listeners, eventListeners, stateListeners,
+                transformListeners, actions, metrics);
+    }
+
+    private DispatchPlans(Set<Object> events, Set<Object> states,
+            List<AbstractStateMachineListener<T, S, E>> listeners,
+            List<AbstractStateMachineEventListener<T, S, E, C>> eventListeners,
+            List<AbstractStateMachineStateListener<T, S, E>> stateListeners,
+            List<AbstractStateMachineTransformListener<T, S, E>> transformListeners,
+            List<AbstractStateMachineActionListener<T, S, E, C>> actions,
+            StateMachineMetrics metrics) {
+        this.events = events;
+        this.states = states;
+        List<AbstractStateMachineListener<T, S, E>> pre = new ArrayList<>();
+        List<AbstractStateMachineListener<T, S, E>> post = new ArrayList<>();
+        for (AbstractStateMachineListener<T, S, E> listener : listeners) {
+            (listener.isPost() ? post : pre).add(listener);
+        }
+        this.preListeners = immutable(pre);
+        this.postListeners = immutable(post);
+        this.eventListeners = new ArrayList<>(eventListeners);
+        this.stateListeners = new ArrayList<>(stateListeners);
+        this.transformListeners = new ArrayList<>(transformListeners);
+        this.actions = immutable(actions);
+        this.metrics = metrics;
+    }
+
+    /**
+     * 只包含投影监听（{@link StateMachineProjectionListener}）的分发计划，用于重放
+     * @return
+     */
+    DispatchPlans<T, S, E, C> projections() {
+        List<AbstractStateMachineListener<T, S, E>> listeners = projections(
+                this.preListeners);
+        listeners.addAll(projections(this.postListeners));
+        return new DispatchPlans<>(this.events, this.states, listeners,
+                projections(this.eventListeners),
+                projections(this.stateListeners),
+                projections(this.transformListeners),
+                projections(this.actions), null);
+    }
+
+    private static <T, S extends StateContainer, E> Set<Object> events(
+            List<MachineContainer<T, S, E>> containers) {
+        Set<Object> events = new HashSet<>();
+        for (MachineContainer<T, S, E> container : containers) {
+            events.add(key(container.getEvent()));
+        }
+        return events;
+    }
+
+    private static <T, S extends StateContainer, E> Set<Object> states(
+            List<MachineContainer<T, S, E>> containers) {
+        Set<Object> states = new HashSet<>();
+        for (MachineContainer<T, S, E> container : containers) {
+            if (exact(container.getFrom())) {
+                states.add(container.getFrom());
+            }
+            if (exact(container.getTo())) {
+                states.add(container.getTo());
+            }
+        }
+        return states;
+    }
+
+    private static <X> List<X> projections(List<X> listeners) {
+        List<X> projections = new ArrayList<>();
+        for (X listener : listeners) {
+            if (listener instanceof StateMachineProjectionListener) {
+                projections.add(listener);
+            }
+        }
+        return projections;
+    }
+
+    /**
+     * (源状态, 事件)的分发计划
+     * @param state
+     * @param event
+     * @return
+     */
+    EventPlan<T, S, E, C> plan(S state, E event) {
+        Object stateKey = key(state);
+        Object eventKey = key(event);
+        ConcurrentMap<Object, EventPlan<T, S, E, C>> byEvent = this.plans
+                .get(stateKey);
+        EventPlan<T, S, E, C> plan =
+                byEvent == null ? null : byEvent.get(eventKey);
+        if (plan != null) {
+            return plan;
+        }
+        boolean defined = this.defined(state) && this.events
+                .contains(eventKey);
+        if (!defined && !this.reserve()) {
+            return new EventPlan<>(this, state, event, false, false);
+        }
+        plan = new EventPlan<>(this, state, event, defined, true);
+        if (byEvent == null) {
+            byEvent = this.plans.computeIfAbsent(stateKey,
+                    k -> new ConcurrentHashMap<>());
+        }
+        EventPlan<T, S, E, C> exist = byEvent.putIfAbsent(eventKey, plan);
+        if (exist != null) {
+            this.release(defined);
+            return exist;
+        }
+        return plan;
+    }
+
+    /**
+     * 受{@link #MAX_PLANS}限制的已缓存计划数
+     * @return
+     */
+    int limitedSize() {
+        return this.size.get();
+    }
+
+    /**
+     * 迁移定义中的状态，其计划不受{@link #MAX_PLANS}限制
+     */
+    private boolean defined(S state) {
+        return exact(state) && this.states.contains(state);
+    }
+
+    /**
+     * 状态不含通配，equals可用
+     */
+    private static boolean exact(StateContainer state) {
+        return state != null && !state.hasWildcard();
+    }
+
+    private boolean reserve() {
+        if (this.size.get() >= MAX_PLANS) {
+            return false;
+        }
+        return this.size.incrementAndGet() <= MAX_PLANS;
+    }
+
+    /**
+     * 计划已被其他线程缓存时归还名额
+     * @param defined 不受上限限制
+     */
+    private void release(boolean defined) {
+        if (!defined) {
+            this.size.decrementAndGet();
+        }
+    }
+
+    private static Object key(Object key) {
+        return key == null ? NULL_KEY : key;
+    }
+
+    private static <X> List<X> immutable(List<X> list) {
+        return Collections.unmodifiableList(new ArrayList<>(list));
+    }
+
+    /**
+     * (源状态, 事件)的分发计划：状态机前、离开状态、事件前
+     */
+    static final class EventPlan<T, S extends StateContainer, E, C> {
+        private final DispatchPlans<T, S, E, C> plans;
+        private final S state;
+        private final E event;
+        final List<AbstractStateMachineListener<T, S, E>> preListeners;
+        final List<AbstractStateMachineStateListener<T, S, E>> exitListeners;
+        final List<AbstractStateMachineEventListener<T, S, E, C>> preEventListeners;
+        /** 被拒绝次数，首次开启统计时解析 */
+        private LongAdder rejections;
+        /** 状态、事件均在迁移定义中，不受{@link #MAX_PLANS}限制 */
+        private final boolean defined;
+        /** 是否已缓存，未缓存的计划只使用一次，其迁移计划也不缓存 */
+        private final boolean cached;
+        /** 目标状态 -> 计划 */
+        private final ConcurrentMap<Object, TransitionPlan<T, S, E, C>> transitions = new ConcurrentHashMap<>();
+
+        private EventPlan(DispatchPlans<T, S, E, C> plans, S state, E event,
+                boolean defined, boolean cached) {
+            this.plans = plans;
+            this.state = state;
+            this.event = event;
+            this.defined = defined;
+            this.cached = cached;
+            this.preListeners = plans.preListeners;
+            List<AbstractStateMachineStateListener<T, S, E>> exit = new ArrayList<>();
+            for (AbstractStateMachineStateListener<T, S, E> listener : plans.stateListeners) {
+                if (!listener.isEnter() && listener.state().match(state)) {
+                    exit.add(listener);
+                }
+            }
+            this.exitListeners = immutable(exit);
+            List<AbstractStateMachineEventListener<T, S, E, C>> preEvent = new ArrayList<>();
+            for (AbstractStateMachineEventListener<T, S, E, C> listener : plans.eventListeners) {
+                if (!listener.isPost() && Objects
+                        .equals(listener.event(), event)) {
+                    preEvent.add(listener);
+                }
+            }
+            this.preEventListeners = immutable(preEvent);
+        }
+
+        /**
+         * 被拒绝次数的统计项，首次开启统计时解析
+         * @return
+         */
+        LongAdder rejections() {
+            LongAdder rejections = this.rejections;
+            if (rejections == null) {
+                rejections = this.plans.metrics.rejection(this.state,
+                        this.event);
+                this.rejections = rejections;
+            }
+            return rejections;
+        }
+
+        /**
+         * (源状态, 事件, 目标状态)的分发计划
+         * @param to
+         * @return
+         */
+        TransitionPlan<T, S, E, C> transition(S to) {
+            if (!this.cached) {
+                return new TransitionPlan<>(this.plans, this.state,
+                        this.event, to);
+            }
+            Object toKey = key(to);
+            TransitionPlan<T, S, E, C> plan = this.transitions.get(toKey);
+            if (plan != null) {
+                return plan;
+            }
+            plan = new TransitionPlan<>(this.plans, this.state, this.event,
+                    to);
+            boolean defined = this.defined && this.plans.defined(to);
+            if (!defined && !this.plans.reserve()) {
+                return plan;
+            }
+            TransitionPlan<T, S, E, C> exist = this.transitions
+                    .putIfAbsent(toKey, plan);
+            if (exist != null) {
+                this.plans.release(defined);
+                return exist;
+            }
+            return plan;
+        }
+    }
+
+    /**
+     * (源状态, 事件, 目标状态)的分发计划：状态迁移、动作、事件后、进入状态、状态机后
+     */
+    static final class TransitionPlan<T, S extends StateContainer, E, C> {
+        final List<AbstractStateMachineTransformListener<T, S, E>> transformListeners;
+        final List<AbstractStateMachineActionListener<T, S, E, C>> actions;
+        final List<AbstractStateMachineEventListener<T, S, E, C>> postEventListeners;
+        final List<AbstractStateMachineStateListener<T, S, E>> enterListeners;
+        final List<AbstractStateMachineListener<T, S, E>> postListeners;
+        private final DispatchPlans<T, S, E, C> plans;
+        private final S state;
+        private final E event;
+        private final S to;
+        /** 统计，首次开启统计时解析 */
+        private StateMachineTransitionMetrics metrics;
+
+        private TransitionPlan(DispatchPlans<T, S, E, C> plans, S state,
+                E event, S to) {
+            this.plans = plans;
+            this.state = state;
+            this.event = event;
+            this.to = to;
+            List<AbstractStateMachineTransformListener<T, S, E>> transform = new ArrayList<>();
+            for (AbstractStateMachineTransformListener<T, S, E> listener : plans.transformListeners) {
+                if (listener.source().match(state) && listener.target()
+                        .match(to)) {
+                    transform.add(listener);
+                }
+            }
+            this.transformListeners = immutable(transform);
+            this.actions = plans.actions;
+            List<AbstractStateMachineEventListener<T, S, E, C>> postEvent = new ArrayList<>();
+            for (AbstractStateMachineEventListener<T, S, E, C> listener : plans.eventListeners) {
+                if (listener.isPost() && Objects
+                        .equals(listener.event(), event)) {
+                    postEvent.add(listener);
+                }
+            }
+            this.postEventListeners = immutable(postEvent);
+            List<AbstractStateMachineStateListener<T, S, E>> enter = new ArrayList<>();
+            for (AbstractStateMachineStateListener<T, S, E> listener : plans.stateListeners) {
+                if (listener.isEnter() && listener.state().match(to)) {
+                    enter.add(listener);
+                }
+            }
+            this.enterListeners = immutable(enter);
+            this.postListeners = plans.postListeners;
+        }
+
+        /**
+         * 迁移的统计项，首次开启统计时解析
+         * @return
+         */
+        StateMachineTransitionMetrics metrics() {
+            StateMachineTransitionMetrics metrics = this.metrics;
+            if (metrics == null) {
+                metrics = this.plans.metrics.transition(this.state,
+                        this.event, this.to);
+                this.metrics = metrics;
+            }
+            return metrics;
+        }
+    }
+}
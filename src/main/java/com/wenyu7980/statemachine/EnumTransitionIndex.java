@@ -0,0 +1,143 @@
+package com.wenyu7980.statemachine;
+
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.wenyu7980.statemachine.AbstractStateMachine.MachineContainer;
+import com.wenyu7980.statemachine.StateMachine.StateSingle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 枚举状态迁移索引
+ * 状态、事件均为枚举时，迁移按[状态序号][事件序号]存放，通配（null）源状态在构建时展开到所有状态，
+ * 查找不再需要equals比较，候选迁移只需执行守卫。
+ * 现在状态为通配，或现在状态、事件不是定义时的枚举类型时退回hash索引
+ *
+ * @author wenyu
+ *
+ * @param <T>
+ * @param <S>
+ * @param <E>
+ */
+final class EnumTransitionIndex<T, S, E>
+        implements TransitionIndex<T, StateSingle<S>, E> {
+    /** 状态枚举类型 */
+    private final Class<?> stateType;
+    /** 事件枚举类型 */
+    private final Class<?> eventType;
+    /** [状态序号][事件序号] -> 迁移 */
+    private final List<MachineContainer<T, StateSingle<S>, E>>[][] table;
+    /** 现在状态为通配时使用 */
+    private final TransitionIndex<T, StateSingle<S>, E> fallback;
+
+    @SuppressWarnings("unchecked")
+    private EnumTransitionIndex(
+            List<MachineContainer<T, StateSingle<S>, E>> containers,
+            Class<?> stateType, Class<?> eventType) {
+        int states = stateType.getEnumConstants().length;
+        int events = eventType.getEnumConstants().length;
+        List<MachineContainer<T, StateSingle<S>, E>>[][] table = new List[states][events];
+        for (MachineContainer<T, StateSingle<S>, E> container : containers) {
+            int event = ((Enum<?>) container.getEvent()).ordinal();
+            S from = container.getFrom().getS();
+            MachineContainer<T, StateSingle<S>, E> resolved = container
+                    .resolved();
+            for (int state = 0; state < states; state++) {
+                if (from != null && ((Enum<?>) from).ordinal() != state) {
+                    continue;
+                }
+                if (table[state][event] == null) {
+                    table[state][event] = new ArrayList<>();
+                }
+                table[state][event].add(resolved);
+            }
+        }
+        for (int state = 0; state < states; state++) {
+            for (int event = 0; event < events; event++) {
+                table[state][event] = table[state][event] == null ?
+                        Collections.emptyList() :
+                        Collections.unmodifiableList(table[state][event]);
+            }
+        }
+        this.stateType = stateType;
+        this.eventType = eventType;
+        this.table = table;
+        this.fallback = new HashTransitionIndex<>(containers);
+    }
+
+    /**
+     * 创建枚举索引
+     * @param containers
+     * @return 状态或事件不全是同一枚举类型时返回null
+     */
+    static <T, S, E> EnumTransitionIndex<T, S, E> create(
+            List<MachineContainer<T, StateSingle<S>, E>> containers) {
+        Class<?> stateType = null;
+        Class<?> eventType = null;
+        for (MachineContainer<T, StateSingle<S>, E> container : containers) {
+            if (container.getFrom() == null || container.getTo() == null) {
+                return null;
+            }
+            stateType = enumType(stateType, container.getFrom().getS());
+            stateType = enumType(stateType, container.getTo().getS());
+            if (container.getEvent() == null) {
+                return null;
+            }
+            eventType = enumType(eventType, container.getEvent());
+            if (stateType == Object.class || eventType == Object.class) {
+                return null;
+            }
+        }
+        if (stateType == null || eventType == null) {
+            return null;
+        }
+        return new EnumTransitionIndex<>(containers, stateType, eventType);
+    }
+
+    /**
+     * 枚举类型
+     * @param type 已知类型
+     * @param value
+     * @return 与已知类型不一致或不是枚举时返回Object.class
+     */
+    private static Class<?> enumType(Class<?> type, Object value) {
+        if (value == null) {
+            return type;
+        }
+        if (!(value instanceof Enum)) {
+            return Object.class;
+        }
+        Class<?> valueType = ((Enum<?>) value).getDeclaringClass();
+        if (type != null && type != valueType) {
+            return Object.class;
+        }
+        return valueType;
+    }
+
+    @Override
+    public List<MachineContainer<T, StateSingle<S>, E>> candidates(
+            StateSingle<S> state, E event) {
+        if (state == null || !this.stateType.isInstance(state.getS())
+                || !this.eventType.isInstance(event)) {
+            return this.fallback.candidates(state, event);
+        }
+        return this.table[((Enum<?>) state.getS()).ordinal()][((Enum<?>) event)
+                .ordinal()];
+    }
+}
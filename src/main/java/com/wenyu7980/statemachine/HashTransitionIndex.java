@@ -0,0 +1,93 @@
+package com.wenyu7980.statemachine;
+
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.wenyu7980.statemachine.AbstractStateMachine.MachineContainer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 状态迁移hash索引
+ * 按(源状态, 事件)分桶，源状态包含通配的迁移放入事件下的通配桶，
+ * 精确桶中按定义顺序合并了通配桶的迁移，精确桶自身的迁移只需执行守卫
+ *
+ * @author wenyu
+ *
+ * @param <T>
+ * @param <S>
+ * @param <E>
+ */
+class HashTransitionIndex<T, S extends StateContainer, E>
+        implements TransitionIndex<T, S, E> {
+    /** 事件分桶 */
+    private final Map<E, EventBucket<T, S, E>> buckets;
+
+    HashTransitionIndex(List<MachineContainer<T, S, E>> containers) {
+        Map<E, EventBucket<T, S, E>> buckets = new HashMap<>();
+        for (MachineContainer<T, S, E> container : containers) {
+            buckets.computeIfAbsent(container.getEvent(),
+                    e -> new EventBucket<>()).add(container);
+        }
+        this.buckets = buckets;
+    }
+
+    @Override
+    public List<MachineContainer<T, S, E>> candidates(S state, E event) {
+        EventBucket<T, S, E> bucket = this.buckets.get(event);
+        if (bucket == null) {
+            return Collections.emptyList();
+        }
+        return bucket.candidates(state);
+    }
+
+    /**
+     * 同一事件下的迁移
+     */
+    private static class EventBucket<T, S extends StateContainer, E> {
+        /** 全部迁移 */
+        private final List<MachineContainer<T, S, E>> all = new ArrayList<>();
+        /** 源状态包含通配的迁移 */
+        private final List<MachineContainer<T, S, E>> wildcard = new ArrayList<>();
+        /** 源状态精确的迁移（含通配迁移） */
+        private final Map<S, List<MachineContainer<T, S, E>>> exact = new HashMap<>();
+
+        private void add(MachineContainer<T, S, E> container) {
+            S from = container.getFrom();
+            this.all.add(container);
+            if (from == null || from.hasWildcard()) {
+                this.wildcard.add(container);
+                this.exact.values().forEach(list -> list.add(container));
+            } else {
+                this.exact.computeIfAbsent(from,
+                        s -> new ArrayList<>(this.wildcard))
+                        .add(container.resolved());
+            }
+        }
+
+        private List<MachineContainer<T, S, E>> candidates(S state) {
+            if (state == null || state.hasWildcard()) {
+                return this.all;
+            }
+            List<MachineContainer<T, S, E>> list = this.exact.get(state);
+            return list == null ? this.wildcard : list;
+        }
+    }
+}
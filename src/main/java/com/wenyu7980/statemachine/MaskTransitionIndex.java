@@ -0,0 +1,243 @@
+package com.wenyu7980.statemachine;
+
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.wenyu7980.statemachine.AbstractStateMachine.MachineContainer;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * 多维状态迁移掩码索引
+ * 按源状态的非通配（非null）分量组成掩码，n维状态共2^n个掩码桶，
+ * 每个桶以非通配分量逐级hash。现在状态不含通配时最多查找2^n个桶；
+ * 源状态完全精确的状态在构建时已合并所有可匹配的迁移，只需一次查找，
+ * 其他状态逐个桶查找，匹配多个桶时按桶组合缓存合并结果，
+ * 匹配同一组桶的状态共用一个合并结果，缓存大小由迁移定义决定。
+ * 现在状态包含通配时退回hash索引
+ *
+ * @author wenyu
+ *
+ * @param <T>
+ * @param <S>
+ * @param <E>
+ */
+final class MaskTransitionIndex<T, S extends StateContainer, E>
+        implements TransitionIndex<T, S, E> {
+    /** 状态分量 */
+    private final Function<S, ?>[] dimensions;
+    /** 事件分桶 */
+    private final Map<E, EventBucket<T, S, E>> buckets;
+    /** 现在状态为通配时使用 */
+    private final TransitionIndex<T, S, E> fallback;
+
+    @SafeVarargs
+    MaskTransitionIndex(List<MachineContainer<T, S, E>> containers,
+            Function<S, ?>... dimensions) {
+        this.dimensions = dimensions;
+        Map<E, List<MachineContainer<T, S, E>>> events = new HashMap<>();
+        for (MachineContainer<T, S, E> container : containers) {
+            events.computeIfAbsent(container.getEvent(),
+                    e -> new ArrayList<>()).add(container);
+        }
+        Map<E, EventBucket<T, S, E>> buckets = new HashMap<>();
+        events.forEach((event, list) -> buckets
+                .put(event, new EventBucket<>(this, list)));
+        this.buckets = buckets;
+        this.fallback = new HashTransitionIndex<>(containers);
+    }
+
+    @Override
+    public List<MachineContainer<T, S, E>> candidates(S state, E event) {
+        if (state == null || state.hasWildcard()) {
+            return this.fallback.candidates(state, event);
+        }
+        EventBucket<T, S, E> bucket = this.buckets.get(event);
+        if (bucket == null) {
+            return Collections.emptyList();
+        }
+        return bucket.candidates(state);
+    }
+
+    /**
+     * 源状态的掩码
+     * @param from
+     * @return
+     */
+    private int mask(S from) {
+        int mask = 0;
+        if (from == null) {
+            return mask;
+        }
+        for (int d = 0; d < this.dimensions.length; d++) {
+            if (this.dimensions[d].apply(from) != null) {
+                mask |= 1 << d;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * 同一事件下的迁移
+     */
+    private static class EventBucket<T, S extends StateContainer, E> {
+        private final MaskTransitionIndex<T, S, E> index;
+        /** 掩码 -> 逐级hash（末级为{@link Leaf}），无迁移的掩码为null */
+        private final Object[] masks;
+        /** 完全精确的源状态 -> 合并后的迁移 */
+        private final Map<S, List<MachineContainer<T, S, E>>> exact = new HashMap<>();
+        /** 迁移定义顺序 */
+        private final Map<MachineContainer<T, S, E>, Integer> order = new IdentityHashMap<>();
+
+        @SuppressWarnings("unchecked")
+        private EventBucket(MaskTransitionIndex<T, S, E> index,
+                List<MachineContainer<T, S, E>> containers) {
+            this.index = index;
+            int full = (1 << index.dimensions.length) - 1;
+            this.masks = new Object[full + 1];
+            for (MachineContainer<T, S, E> container : containers) {
+                MachineContainer<T, S, E> resolved = container.resolved();
+                this.order.put(resolved, this.order.size());
+                int mask = index.mask(container.getFrom());
+                if (this.masks[mask] == null) {
+                    this.masks[mask] = mask == 0 ?
+                            new Leaf<T, S, E>(new ArrayList<>()) :
+                            new HashMap<>();
+                }
+                Object node = this.masks[mask];
+                int last = 31 - Integer.numberOfLeadingZeros(mask);
+                for (int d = 0; d <= last; d++) {
+                    if ((mask & (1 << d)) == 0) {
+                        continue;
+                    }
+                    Object key = index.dimensions[d].apply(container.getFrom());
+                    Map<Object, Object> map = (Map<Object, Object>) node;
+                    node = map.get(key);
+                    if (node == null) {
+                        node = d == last ?
+                                new Leaf<T, S, E>(new ArrayList<>()) :
+                                new HashMap<>();
+                        map.put(key, node);
+                    }
+                }
+                ((Leaf<T, S, E>) node).containers.add(resolved);
+                if (mask == full) {
+                    this.exact.putIfAbsent(container.getFrom(), null);
+                }
+            }
+            for (S from : new ArrayList<>(this.exact.keySet())) {
+                this.exact.put(from, this.probe(from));
+            }
+        }
+
+        private List<MachineContainer<T, S, E>> candidates(S state) {
+            List<MachineContainer<T, S, E>> list = this.exact.get(state);
+            return list == null ? this.probe(state) : list;
+        }
+
+        /**
+         * 逐个掩码桶查找，匹配多个桶时沿桶组合查找合并结果
+         * @param state 不包含通配的现在状态
+         * @return 匹配多个桶时为同一桶组合共用的{@link Merged}
+         */
+        @SuppressWarnings("unchecked")
+        private List<MachineContainer<T, S, E>> probe(S state) {
+            Leaf<T, S, E> result = null;
+            for (int mask = this.masks.length - 1; mask >= 0; mask--) {
+                Object node = this.masks[mask];
+                for (int d = 0; node != null
+                        && d < this.index.dimensions.length; d++) {
+                    if ((mask & (1 << d)) != 0) {
+                        node = ((Map<Object, Object>) node)
+                                .get(this.index.dimensions[d].apply(state));
+                    }
+                }
+                if (node == null) {
+                    continue;
+                }
+                Leaf<T, S, E> leaf = (Leaf<T, S, E>) node;
+                result = result == null ? leaf : this.merge(result, leaf);
+            }
+            return result == null ? Collections.emptyList() : result.containers;
+        }
+
+        /**
+         * 已合并的桶组合再合并一个桶，按定义顺序排序，结果按组合缓存
+         */
+        private Leaf<T, S, E> merge(Leaf<T, S, E> combination,
+                Leaf<T, S, E> leaf) {
+            Leaf<T, S, E> merged = combination.next.get(leaf);
+            if (merged != null) {
+                return merged;
+            }
+            List<MachineContainer<T, S, E>> containers = new ArrayList<>(
+                    combination.containers);
+            containers.addAll(leaf.containers);
+            containers.sort((a, b) -> this.order.get(a) - this.order.get(b));
+            merged = new Leaf<>(new Merged<>(containers));
+            Leaf<T, S, E> exist = combination.next.putIfAbsent(leaf, merged);
+            return exist == null ? merged : exist;
+        }
+    }
+
+    /**
+     * 掩码桶的迁移，或多个掩码桶组合合并后的迁移；
+     * 组合只由迁移定义决定，缓存大小不随现在状态增长
+     */
+    private static final class Leaf<T, S extends StateContainer, E> {
+        private final List<MachineContainer<T, S, E>> containers;
+        /** 再合并的掩码桶（按引用比较） -> 合并结果 */
+        private final ConcurrentMap<Leaf<T, S, E>, Leaf<T, S, E>> next = new ConcurrentHashMap<>();
+
+        private Leaf(List<MachineContainer<T, S, E>> containers) {
+            this.containers = containers;
+        }
+    }
+
+    /**
+     * 多个掩码桶合并后的迁移（不可变）
+     */
+    private static final class Merged<T, S extends StateContainer, E>
+            extends AbstractList<MachineContainer<T, S, E>>
+            implements RandomAccess {
+        private final Object[] containers;
+
+        private Merged(List<MachineContainer<T, S, E>> containers) {
+            this.containers = containers.toArray();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public MachineContainer<T, S, E> get(int index) {
+            return (MachineContainer<T, S, E>) this.containers[index];
+        }
+
+        @Override
+        public int size() {
+            return this.containers.length;
+        }
+    }
+}
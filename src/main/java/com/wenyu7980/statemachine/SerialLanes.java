@@ -0,0 +1,146 @@
+package com.wenyu7980.statemachine;
+
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.wenyu7980.statemachine.util.StripeUtil;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 串行通道
+ * 数据按key分配到固定数量的通道，同一通道内的任务按提交顺序依次执行，
+ * 不同通道的任务在执行器中并行执行
+ *
+ * @author wenyu
+ *
+ * @param <T>
+ */
+final class SerialLanes<T> {
+    /** 数据key，为null时使用数据的identityHashCode */
+    private final Function<T, ?> key;
+    /** 通道 */
+    private final Lane[] lanes;
+
+    SerialLanes(Executor executor, Function<T, ?> key, int lanes) {
+        if (lanes < 1) {
+            throw new IllegalArgumentException("lanes:" + lanes);
+        }
+        this.key = key;
+        this.lanes = new Lane[lanes];
+        for (int i = 0; i < lanes; i++) {
+            this.lanes[i] = new Lane(executor);
+        }
+    }
+
+    /**
+     * 提交任务
+     * @param t 数据
+     * @param supplier 任务
+     * @param <R>
+     * @return
+     */
+    <R> CompletableFuture<R> submit(T t, Supplier<R> supplier) {
+        Task<R> task = new Task<>(supplier);
+        this.lane(t).add(task);
+        return task.future;
+    }
+
+    private Lane lane(T t) {
+        return this.lanes[StripeUtil.stripe(this.key, t, this.lanes.length)];
+    }
+
+    /**
+     * 通道
+     */
+    private static final class Lane {
+        /** 执行器 */
+        private final Executor executor;
+        private final Queue<Task<?>> tasks = new ArrayDeque<>();
+        /** 是否已在执行器中 */
+        private boolean running;
+
+        private Lane(Executor executor) {
+            this.executor = executor;
+        }
+
+        private synchronized void add(Task<?> task) {
+            this.tasks.add(task);
+            if (!this.running) {
+                this.running = true;
+                this.schedule();
+            }
+        }
+
+        /**
+         * 提交下一个任务，需持有锁
+         */
+        private void schedule() {
+            try {
+                this.executor.execute(this::runNext);
+            } catch (RejectedExecutionException e) {
+                Task<?> task;
+                while ((task = this.tasks.poll()) != null) {
+                    task.future.completeExceptionally(e);
+                }
+                this.running = false;
+            }
+        }
+
+        private void runNext() {
+            Task<?> task;
+            synchronized (this) {
+                task = this.tasks.poll();
+            }
+            if (task != null) {
+                task.run();
+            }
+            synchronized (this) {
+                if (this.tasks.isEmpty()) {
+                    this.running = false;
+                } else {
+                    this.schedule();
+                }
+            }
+        }
+    }
+
+    /**
+     * 任务
+     */
+    private static final class Task<R> {
+        private final Supplier<R> supplier;
+        private final CompletableFuture<R> future = new CompletableFuture<>();
+
+        private Task(Supplier<R> supplier) {
+            this.supplier = supplier;
+        }
+
+        private void run() {
+            try {
+                this.future.complete(this.supplier.get());
+            } catch (Throwable e) {
+                this.future.completeExceptionally(e);
+            }
+        }
+    }
+}
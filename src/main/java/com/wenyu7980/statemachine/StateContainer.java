@@ -1,30 +1,40 @@
-package com.wenyu7980.statemachine;
-
-/**
- * Copyright wenyu
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *     http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-
-/**
- *
- * @author:wenyu
- */
-public interface StateContainer<T> {
-    /**
-     * 匹配
-     * @param t
-     * @return
-     */
-    boolean match(T t);
-}
+package com.wenyu7980.statemachine;
+
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ *
+ * @author:wenyu
+ */
+public interface StateContainer<T> {
+    /**
+     * 匹配
+     * @param t
+     * @return
+     */
+    boolean match(T t);
+
+    /**
+     * 是否包含通配（null）分量
+     * 包含通配的状态无法通过hash精确查找，默认按包含处理；
+     * 不包含通配时，equals相等的两个状态必须匹配
+     * @return
+     */
+    default boolean hasWildcard() {
+        return true;
+    }
+}
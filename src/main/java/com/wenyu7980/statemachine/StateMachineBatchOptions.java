@@ -0,0 +1,85 @@
+package com.wenyu7980.statemachine;
+
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 并行批量状态切换配置
+ * 数据量超过拆分阈值时拆分后并行执行，执行器为{@link ForkJoinPool}时以fork/join递归拆分，
+ * 否则按阈值切块提交到执行器。
+ * 并行执行时不同数据的守卫、监听会被并发调用，需保证其线程安全
+ *
+ * @author wenyu
+ */
+public class StateMachineBatchOptions {
+    /** 默认拆分阈值 */
+    public static final int DEFAULT_THRESHOLD = 1024;
+    /** 执行器 */
+    private Executor executor = ForkJoinPool.commonPool();
+    /** 拆分阈值 */
+    private int threshold = DEFAULT_THRESHOLD;
+    /** 结果是否保持数据顺序 */
+    private boolean ordered;
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * 执行器，默认{@link ForkJoinPool#commonPool()}
+     * @param executor
+     * @return
+     */
+    public StateMachineBatchOptions executor(Executor executor) {
+        assert executor != null;
+        this.executor = executor;
+        return this;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * 拆分阈值，不超过阈值的数据在一个任务中执行
+     * @param threshold
+     * @return
+     */
+    public StateMachineBatchOptions threshold(int threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("threshold:" + threshold);
+        }
+        this.threshold = threshold;
+        return this;
+    }
+
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    /**
+     * 结果按数据在批量中的顺序排列
+     * @param ordered
+     * @return
+     */
+    public StateMachineBatchOptions ordered(boolean ordered) {
+        this.ordered = ordered;
+        return this;
+    }
+}
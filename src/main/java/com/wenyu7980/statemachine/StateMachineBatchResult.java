@@ -0,0 +1,195 @@
+package com.wenyu7980.statemachine;
+
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 批量状态切换结果
+ * 迁移成功与被拒绝的数据分别记录，被拒绝的数据状态未改变，保留异常处理{@code supplier}
+ * 或迁移前的监听抛出的异常；状态已改变后监听抛出异常的数据记为迁移成功，
+ * 并保留该异常（{@link Transition#getException()}）
+ *
+ * @author wenyu
+ *
+ * @param <T>
+ * @param <S>
+ */
+public class StateMachineBatchResult<T, S> {
+    /** 迁移成功 */
+    private final List<Transition<T, S>> transitioned = new ArrayList<>();
+    /** 被拒绝 */
+    private final List<Rejection<T, S>> rejected = new ArrayList<>();
+
+    void transitioned(int index, T t, S from, S to,
+            RuntimeException exception) {
+        this.transitioned.add(new Transition<>(index, t, from, to, exception));
+    }
+
+    void rejected(int index, T t, S state, RuntimeException exception) {
+        this.rejected.add(new Rejection<>(index, t, state, exception));
+    }
+
+    /**
+     * 合并其他批次的结果
+     * @param other
+     */
+    void merge(StateMachineBatchResult<T, S> other) {
+        this.transitioned.addAll(other.transitioned);
+        this.rejected.addAll(other.rejected);
+    }
+
+    /**
+     * 按数据在批量中的顺序排列
+     */
+    void sort() {
+        this.transitioned.sort(Comparator.comparingInt(Transition::getIndex));
+        this.rejected.sort(Comparator.comparingInt(Rejection::getIndex));
+    }
+
+    public List<Transition<T, S>> getTransitioned() {
+        return Collections.unmodifiableList(transitioned);
+    }
+
+    public List<Rejection<T, S>> getRejected() {
+        return Collections.unmodifiableList(rejected);
+    }
+
+    /**
+     * 是否全部迁移成功
+     * @return
+     */
+    public boolean isAllTransitioned() {
+        return rejected.isEmpty();
+    }
+
+    /**
+     * 是否全部迁移成功且迁移后的监听没有抛出异常
+     * @return
+     */
+    public boolean isAllSucceeded() {
+        if (!rejected.isEmpty()) {
+            return false;
+        }
+        for (Transition<T, S> transition : transitioned) {
+            if (transition.exception != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 迁移成功的数据
+     */
+    public static class Transition<T, S> {
+        private final int index;
+        private final T t;
+        private final S from;
+        private final S to;
+        private final RuntimeException exception;
+
+        Transition(int index, T t, S from, S to, RuntimeException exception) {
+            this.index = index;
+            this.t = t;
+            this.from = from;
+            this.to = to;
+            this.exception = exception;
+        }
+
+        /**
+         * 在批量数据中的位置
+         * @return
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        public T getT() {
+            return t;
+        }
+
+        public S getFrom() {
+            return from;
+        }
+
+        public S getTo() {
+            return to;
+        }
+
+        /**
+         * 状态已改变后监听抛出的异常
+         * @return 没有异常时为null
+         */
+        public RuntimeException getException() {
+            return exception;
+        }
+
+        @Override
+        public String toString() {
+            return "{" + "index=" + index + ", from=" + from + ", to=" + to
+                    + (exception == null ? "" : ", exception=" + exception)
+                    + '}';
+        }
+    }
+
+    /**
+     * 被拒绝的数据
+     */
+    public static class Rejection<T, S> {
+        private final int index;
+        private final T t;
+        private final S state;
+        private final RuntimeException exception;
+
+        Rejection(int index, T t, S state, RuntimeException exception) {
+            this.index = index;
+            this.t = t;
+            this.state = state;
+            this.exception = exception;
+        }
+
+        /**
+         * 在批量数据中的位置
+         * @return
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        public T getT() {
+            return t;
+        }
+
+        public S getState() {
+            return state;
+        }
+
+        public RuntimeException getException() {
+            return exception;
+        }
+
+        @Override
+        public String toString() {
+            return "{" + "index=" + index + ", state=" + state + ", exception="
+                    + exception + '}';
+        }
+    }
+}
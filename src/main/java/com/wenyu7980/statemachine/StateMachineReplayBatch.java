@@ -0,0 +1,66 @@
+package com.wenyu7980.statemachine;
+
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 重放批次
+ * 按发生顺序记录的历史状态迁移（数据, 源状态, 事件, 目标状态），
+ * 由{@link AbstractStateMachine#replay(StateMachineReplayBatch, Object)}重放。
+ * 批次可清空后重复使用
+ *
+ * @author wenyu
+ *
+ * @param <T>
+ * @param <S>
+ * @param <E>
+ */
+public class StateMachineReplayBatch<T, S, E> {
+    final List<T> ts = new ArrayList<>();
+    final List<S> froms = new ArrayList<>();
+    final List<E> events = new ArrayList<>();
+    final List<S> tos = new ArrayList<>();
+
+    /**
+     * 添加一条历史状态迁移
+     * @param t
+     * @param from 源状态
+     * @param event 事件
+     * @param to 目标状态
+     * @return
+     */
+    public StateMachineReplayBatch<T, S, E> add(T t, S from, E event, S to) {
+        this.ts.add(t);
+        this.froms.add(from);
+        this.events.add(event);
+        this.tos.add(to);
+        return this;
+    }
+
+    public int size() {
+        return this.ts.size();
+    }
+
+    public void clear() {
+        this.ts.clear();
+        this.froms.clear();
+        this.events.clear();
+        this.tos.clear();
+    }
+}
@@ -0,0 +1,57 @@
+package com.wenyu7980.statemachine;
+
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.wenyu7980.statemachine.util.StripeUtil;
+
+import java.util.function.Function;
+
+/**
+ * 分段锁
+ * 数据按key分配到固定数量的锁，同一数据总是使用同一把锁，
+ * 不同数据只在落入同一分段时竞争
+ *
+ * @author wenyu
+ *
+ * @param <T>
+ */
+final class StripedLocks<T> {
+    /** 数据key，为null时按数据对象本身（identity）区分 */
+    private final Function<T, ?> key;
+    /** 锁 */
+    private final Object[] locks;
+
+    StripedLocks(int stripes, Function<T, ?> key) {
+        if (stripes < 1) {
+            throw new IllegalArgumentException("stripes:" + stripes);
+        }
+        this.key = key;
+        this.locks = new Object[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.locks[i] = new Object();
+        }
+    }
+
+    /**
+     * 数据的锁（监视器对象，可重入）
+     * @param t
+     * @return
+     */
+    Object lock(T t) {
+        return this.locks[StripeUtil.stripe(this.key, t, this.locks.length)];
+    }
+}
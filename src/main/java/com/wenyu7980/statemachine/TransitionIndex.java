@@ -0,0 +1,42 @@
+package com.wenyu7980.statemachine;
+
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.wenyu7980.statemachine.AbstractStateMachine.MachineContainer;
+
+import java.util.List;
+
+/**
+ * 状态迁移索引
+ * 在状态机定义完成后由状态迁移列表构建，查找时只返回可能匹配的候选迁移，
+ * 候选迁移仍需调用{@link MachineContainer#match}确认
+ *
+ * @author wenyu
+ *
+ * @param <T>
+ * @param <S>
+ * @param <E>
+ */
+interface TransitionIndex<T, S extends StateContainer, E> {
+    /**
+     * 候选迁移（按定义顺序）
+     * @param state 现在状态
+     * @param event 事件
+     * @return
+     */
+    List<MachineContainer<T, S, E>> candidates(S state, E event);
+}
@@ -0,0 +1,40 @@
+package com.wenyu7980.statemachine.concurrent;
+
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * 比较并设置状态
+ * 数据的状态与期望状态相等时设置为新状态并返回true，否则不修改并返回false，
+ * 比较与设置需为原子操作（如{@link java.util.concurrent.atomic.AtomicReference#compareAndSet}、
+ * 数据库带版本条件的更新）
+ *
+ * @author wenyu
+ *
+ * @param <T>
+ * @param <S>
+ */
+@FunctionalInterface
+public interface StateMachineCompareAndSet<T, S> {
+    /**
+     * 比较并设置
+     * @param t
+     * @param expected 期望状态（迁移前状态）
+     * @param update 新状态
+     * @return 是否设置成功
+     */
+    boolean compareAndSet(T t, S expected, S update);
+}
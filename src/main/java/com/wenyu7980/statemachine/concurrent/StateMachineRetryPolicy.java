@@ -0,0 +1,80 @@
+package com.wenyu7980.statemachine.concurrent;
+
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * 比较并设置失败后的重试策略
+ * 重试时重新获取状态并从头执行状态机，迁移前的监听（状态机前、离开状态、事件前）
+ * 会被再次调用
+ *
+ * @author wenyu
+ */
+public final class StateMachineRetryPolicy {
+    /** 默认重试次数 */
+    public static final int DEFAULT_RETRIES = 3;
+    /** 失败立即返回 */
+    private static final StateMachineRetryPolicy FAIL_FAST = new StateMachineRetryPolicy(
+            0);
+    /** 默认策略 */
+    private static final StateMachineRetryPolicy DEFAULT = new StateMachineRetryPolicy(
+            DEFAULT_RETRIES);
+    /** 最大重试次数 */
+    private final int maxRetries;
+
+    private StateMachineRetryPolicy(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * 不重试，失败时直接抛出
+     * {@link com.wenyu7980.statemachine.exception.StatemachineConflictException}
+     * @return
+     */
+    public static StateMachineRetryPolicy failFast() {
+        return FAIL_FAST;
+    }
+
+    /**
+     * 默认策略，重试{@value #DEFAULT_RETRIES}次
+     * @return
+     */
+    public static StateMachineRetryPolicy defaultPolicy() {
+        return DEFAULT;
+    }
+
+    /**
+     * 最多重试maxRetries次
+     * @param maxRetries
+     * @return
+     */
+    public static StateMachineRetryPolicy retry(int maxRetries) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("maxRetries:" + maxRetries);
+        }
+        return maxRetries == 0 ? FAIL_FAST : new StateMachineRetryPolicy(
+                maxRetries);
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    @Override
+    public String toString() {
+        return "{" + "maxRetries=" + maxRetries + '}';
+    }
+}
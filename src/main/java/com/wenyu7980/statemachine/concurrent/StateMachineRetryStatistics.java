@@ -0,0 +1,73 @@
+package com.wenyu7980.statemachine.concurrent;
+
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 比较并设置统计
+ * 冲突（比较并设置失败）、重试、重试用尽后失败的次数，可被多线程并发累加
+ *
+ * @author wenyu
+ */
+public final class StateMachineRetryStatistics {
+    /** 冲突次数 */
+    private final LongAdder conflicts = new LongAdder();
+    /** 重试次数 */
+    private final LongAdder retries = new LongAdder();
+    /** 失败次数 */
+    private final LongAdder failures = new LongAdder();
+
+    public void conflict() {
+        this.conflicts.increment();
+    }
+
+    public void retry() {
+        this.retries.increment();
+    }
+
+    public void failure() {
+        this.failures.increment();
+    }
+
+    public long getConflicts() {
+        return conflicts.sum();
+    }
+
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * 清零
+     */
+    public void reset() {
+        this.conflicts.reset();
+        this.retries.reset();
+        this.failures.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "{" + "conflicts=" + conflicts + ", retries=" + retries
+                + ", failures=" + failures + '}';
+    }
+}
@@ -0,0 +1,52 @@
+package com.wenyu7980.statemachine.exception;
+
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * 状态冲突异常
+ * 比较并设置状态失败（迁移过程中状态已被其他线程修改），且重试已用尽
+ *
+ * @author wenyu
+ */
+public class StatemachineConflictException extends RuntimeException {
+    /** 数据 */
+    private final transient Object t;
+    /** 期望状态 */
+    private final transient Object expected;
+    /** 事件 */
+    private final transient Object event;
+
+    public StatemachineConflictException(Object t, Object expected,
+            Object event) {
+        super("状态已被修改,期望状态:" + expected + ",事件:" + event);
+        this.t = t;
+        this.expected = expected;
+        this.event = event;
+    }
+
+    public Object getT() {
+        return t;
+    }
+
+    public Object getExpected() {
+        return expected;
+    }
+
+    public Object getEvent() {
+        return event;
+    }
+}
@@ -1,28 +1,28 @@
-package com.wenyu7980.statemachine.exception;
-/**
- * Copyright wenyu
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *     http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-
-/**
- * 异常类
- * @param <T>
- * @param <S>
- * @param <E>
- * @param <X>
- */
-@FunctionalInterface
-public interface StatemachineExceptionSupplier<T, S, E, X extends RuntimeException> {
-    X get(T t, S state, E event);
-}
+package com.wenyu7980.statemachine.exception;
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * 异常类
+ * @param <T>
+ * @param <S>
+ * @param <E>
+ * @param <X>
+ */
+@FunctionalInterface
+public interface StatemachineExceptionSupplier<T, S, E, X extends RuntimeException> {
+    X get(T t, S state, E event);
+}
@@ -1,34 +1,62 @@
-package com.wenyu7980.statemachine.guard;
-
-import com.wenyu7980.statemachine.guard.textguard.StateMachineValue;
-
-/**
- * 动态语言守卫
- *
- * @author wenyu
- *
- * @param <T>
- * @param <S>
- * @param <E>
- */
-public class StateMachineTextGuard<T, S, E>
-        implements StateMachineGuard<T, S, E> {
-
-    /** 动态语言 */
-    private String text;
-
-    /**
-     *
-     * @param text
-     *            以";"结尾的动态语言，例如："test"=="test";
-     */
-    public StateMachineTextGuard(String text) {
-        this.text = text;
-    }
-
-    @Override
-    public boolean guard(T t, S s, E e, Object value) {
-        return (Boolean) StateMachineValue.get(text, t, value);
-    }
-
-}
+package com.wenyu7980.statemachine.guard;
+
+import com.wenyu7980.statemachine.guard.textguard.StateMachineExpression;
+import com.wenyu7980.statemachine.guard.textguard.StateMachineValue;
+
+/**
+ * 动态语言守卫
+ *
+ * @author wenyu
+ *
+ * @param <T>
+ * @param <S>
+ * @param <E>
+ */
+public class StateMachineTextGuard<T, S, E>
+        implements StateMachineGuard<T, S, E> {
+
+    /** 动态语言 */
+    private final String text;
+    /** 编译后的表达式 */
+    private final StateMachineExpression expression;
+
+    /**
+     *
+     * @param text
+     *            以";"结尾的动态语言，例如："test"=="test";
+     * @throws com.wenyu7980.statemachine.guard.textguard.TextGuardException
+     *             语法错误
+     */
+    public StateMachineTextGuard(String text) {
+        this.text = text;
+        this.expression = StateMachineValue.compile(text);
+    }
+
+    /**
+     * 按数据类型编译，属性在构造时解析并检查类型，
+     * 基本类型的属性求值时不装箱
+     * @param text
+     *            以";"结尾的动态语言，例如：#.amount > 1000;
+     * @param type
+     *            数据类型
+     * @param contextType
+     *            上下文类型，Object表示求值时才能确定
+     * @throws com.wenyu7980.statemachine.guard.textguard.TextGuardException
+     *             语法错误，属性不存在，类型不匹配
+     */
+    public StateMachineTextGuard(String text, Class<? super T> type,
+            Class<?> contextType) {
+        this.text = text;
+        this.expression = StateMachineValue.compile(text, type, contextType);
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    @Override
+    public boolean guard(T t, S s, E e, Object value) {
+        return this.expression.test(t, value);
+    }
+
+}
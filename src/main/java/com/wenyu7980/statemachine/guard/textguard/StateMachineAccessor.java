@@ -0,0 +1,168 @@
+package com.wenyu7980.statemachine.guard.textguard;
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 属性访问器
+ * 按(类，属性名)解析一次并缓存，先查找类及其父类中声明的属性，找不到时使用getter
+ *
+ * @author:wenyu
+ */
+final class StateMachineAccessor {
+    /** 类的属性访问器缓存 */
+    private static final ClassValue<ConcurrentMap<String, StateMachineAccessor>> ACCESSORS =
+            new ClassValue<ConcurrentMap<String, StateMachineAccessor>>() {
+        @Override
+        protected ConcurrentMap<String, StateMachineAccessor> computeValue(
+                Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+    private static final MethodType GETTER = MethodType
+            .methodType(Object.class, Object.class);
+    /** 所属类 */
+    private final Class<?> owner;
+    /** 属性名 */
+    private final String name;
+    /** 属性类型 */
+    private final Class<?> type;
+    /** (owner)type */
+    private final MethodHandle handle;
+    /** (Object)Object */
+    private final MethodHandle generic;
+
+    private StateMachineAccessor(Class<?> owner, String name, Class<?> type,
+            MethodHandle handle) {
+        this.owner = owner;
+        this.name = name;
+        this.type = type;
+        this.handle = handle;
+        this.generic = handle.asType(GETTER);
+    }
+
+    /**
+     * 类的属性访问器
+     * @param owner
+     * @param name
+     * @return
+     * @throws TextGuardException 属性不存在
+     */
+    static StateMachineAccessor of(Class<?> owner, String name) {
+        ConcurrentMap<String, StateMachineAccessor> accessors = ACCESSORS
+                .get(owner);
+        StateMachineAccessor accessor = accessors.get(name);
+        if (accessor == null) {
+            accessor = resolve(owner, name);
+            StateMachineAccessor exist = accessors.putIfAbsent(name, accessor);
+            if (exist != null) {
+                accessor = exist;
+            }
+        }
+        return accessor;
+    }
+
+    private static StateMachineAccessor resolve(Class<?> owner, String name) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            for (Class<?> c = owner; c != null; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (field.getName().equals(name)
+                            && !Modifier.isStatic(field.getModifiers())) {
+                        field.setAccessible(true);
+                        return new StateMachineAccessor(owner, name,
+                                field.getType(), lookup.unreflectGetter(field));
+                    }
+                }
+            }
+            String suffix = Character.toUpperCase(name.charAt(0))
+                    + name.substring(1);
+            for (String getter : new String[] { "get" + suffix,
+                    "is" + suffix }) {
+                Method method;
+                try {
+                    method = owner.getMethod(getter);
+                } catch (NoSuchMethodException e) {
+                    continue;
+                }
+                if (method.getReturnType() != void.class
+                        && !Modifier.isStatic(method.getModifiers())) {
+                    method.setAccessible(true);
+                    return new StateMachineAccessor(owner, name,
+                            method.getReturnType(), lookup.unreflect(method));
+                }
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw new TextGuardException(owner.getName() + "." + name, e);
+        }
+        throw new TextGuardException(owner.getName() + "." + name);
+    }
+
+    Class<?> getOwner() {
+        return owner;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * 未转换类型的getter
+     * @return (owner)type
+     */
+    MethodHandle getHandle() {
+        return handle;
+    }
+
+    /**
+     * 取值，枚举类型的属性取其字符串
+     * @param obj {@link #getOwner()}的实例
+     * @return
+     */
+    Object get(Object obj) {
+        Object value = this.raw(obj);
+        if (value != null && this.type.isEnum()) {
+            return value.toString();
+        }
+        return value;
+    }
+
+    /**
+     * 取原始值，枚举类型的属性不转换
+     * @param obj {@link #getOwner()}的实例
+     * @return
+     */
+    Object raw(Object obj) {
+        try {
+            return (Object) this.generic.invokeExact(obj);
+        } catch (Throwable e) {
+            throw new TextGuardException(this.owner.getName() + "." + this.name,
+                    e);
+        }
+    }
+}
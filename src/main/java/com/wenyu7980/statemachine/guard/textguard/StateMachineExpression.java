@@ -0,0 +1,42 @@
+package com.wenyu7980.statemachine.guard.textguard;
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * 编译后的动态语言表达式
+ * 由{@link StateMachineValue#compile(String)}解析一次得到，可重复、并发求值
+ *
+ * @author:wenyu
+ */
+public interface StateMachineExpression {
+    /**
+     * 求值
+     * @param data 数据，表达式中的"#"
+     * @param value 上下文，表达式中的"$"
+     * @return
+     */
+    Object evaluate(Object data, Object value);
+
+    /**
+     * 按布尔表达式求值
+     * @param data 数据，表达式中的"#"
+     * @param value 上下文，表达式中的"$"
+     * @return
+     */
+    default boolean test(Object data, Object value) {
+        return (Boolean) this.evaluate(data, value);
+    }
+}
@@ -0,0 +1,277 @@
+package com.wenyu7980.statemachine.guard.textguard;
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 表达式类加载器
+ * 为每个表达式生成一个实现{@link StateMachineExpression}的类，
+ * 方法句柄保存在类的static final属性中，JIT将其视为常量，
+ * 可以把整个表达式内联到调用处。
+ * 每个表达式使用独立的加载器，表达式不再使用时生成的类可以被卸载
+ *
+ * @author:wenyu
+ */
+final class StateMachineExpressionLoader extends ClassLoader
+        implements Function<Object, Object> {
+    /** 生成的类名 */
+    private static final String NAME = "com.wenyu7980.statemachine.guard.textguard.generated.Expression";
+    /** (Object,Object)Object */
+    private final MethodHandle evaluate;
+    /** (Object,Object)boolean */
+    private final MethodHandle test;
+
+    private StateMachineExpressionLoader(MethodHandle evaluate,
+            MethodHandle test) {
+        super(StateMachineExpression.class.getClassLoader());
+        this.evaluate = evaluate;
+        this.test = test;
+    }
+
+    /**
+     * 生成表达式
+     * @param evaluate (Object,Object)Object
+     * @param test (Object,Object)boolean
+     * @return
+     * @throws ReflectiveOperationException 生成失败
+     */
+    static StateMachineExpression define(MethodHandle evaluate,
+            MethodHandle test) throws ReflectiveOperationException {
+        StateMachineExpressionLoader loader = new StateMachineExpressionLoader(
+                evaluate, test);
+        byte[] bytes = bytes();
+        Class<?> type = loader.defineClass(NAME, bytes, 0, bytes.length);
+        return (StateMachineExpression) type.getConstructor().newInstance();
+    }
+
+    /**
+     * 生成的类在初始化时通过此方法取得方法句柄
+     */
+    @Override
+    public Object apply(Object name) {
+        return "TEST".equals(name) ? this.test : this.evaluate;
+    }
+
+    /**
+     * <pre>
+     * public final class Expression implements StateMachineExpression {
+     *     static final MethodHandle TEST;
+     *     static final MethodHandle EVALUATE;
+     *     static {
+     *         Function loader = (Function) Expression.class.getClassLoader();
+     *         TEST = (MethodHandle) loader.apply("TEST");
+     *         EVALUATE = (MethodHandle) loader.apply("EVALUATE");
+     *     }
+     *     public boolean test(Object data, Object value) {
+     *         return TEST.invokeExact(data, value);
+     *     }
+     *     public Object evaluate(Object data, Object value) {
+     *         return EVALUATE.invokeExact(data, value);
+     *     }
+     * }
+     * </pre>
+     * 方法中没有分支，不需要StackMapTable
+     */
+    private static byte[] bytes() {
+        ConstantPool pool = new ConstantPool();
+        int self = pool.type(NAME.replace('.', '/'));
+        int object = pool.type("java/lang/Object");
+        int expression = pool.type(
+                StateMachineExpression.class.getName().replace('.', '/'));
+        int handle = pool.type("java/lang/invoke/MethodHandle");
+        int function = pool.type("java/util/function/Function");
+        int code = pool.utf8("Code");
+        String handleType = "Ljava/lang/invoke/MethodHandle;";
+        String testType = "(Ljava/lang/Object;Ljava/lang/Object;)Z";
+        String evaluateType = "(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;";
+        int testField = pool.member(9, self, "TEST", handleType);
+        int evaluateField = pool.member(9, self, "EVALUATE", handleType);
+        int init = pool.member(10, object, "<init>", "()V");
+        int classLoader = pool.member(10, pool.type("java/lang/Class"),
+                "getClassLoader", "()Ljava/lang/ClassLoader;");
+        int apply = pool.member(11, function, "apply",
+                "(Ljava/lang/Object;)Ljava/lang/Object;");
+        int testInvoke = pool.member(10, handle, "invokeExact", testType);
+        int evaluateInvoke = pool.member(10, handle, "invokeExact",
+                evaluateType);
+        int testName = pool.string("TEST");
+        int evaluateName = pool.string("EVALUATE");
+        for (String name : new String[] { "<clinit>", "test", "evaluate" }) {
+            pool.utf8(name);
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            // Java 8
+            out.writeShort(0);
+            out.writeShort(52);
+            pool.write(out);
+            // public final super
+            out.writeShort(0x0001 | 0x0010 | 0x0020);
+            out.writeShort(self);
+            out.writeShort(object);
+            out.writeShort(1);
+            out.writeShort(expression);
+            // static final
+            out.writeShort(2);
+            for (String name : new String[] { "TEST", "EVALUATE" }) {
+                out.writeShort(0x0008 | 0x0010);
+                out.writeShort(pool.utf8(name));
+                out.writeShort(pool.utf8(handleType));
+                out.writeShort(0);
+            }
+            out.writeShort(4);
+            method(out, pool, 0x0001, "<init>", "()V", code, 1, 1,
+                    0x2A, 0xB7, init >> 8, init, 0xB1);
+            method(out, pool, 0x0008, "<clinit>", "()V", code, 3, 0,
+                    0x13, self >> 8, self,
+                    0xB6, classLoader >> 8, classLoader,
+                    0xC0, function >> 8, function,
+                    0x59,
+                    0x13, testName >> 8, testName,
+                    0xB9, apply >> 8, apply, 2, 0,
+                    0xC0, handle >> 8, handle,
+                    0xB3, testField >> 8, testField,
+                    0x13, evaluateName >> 8, evaluateName,
+                    0xB9, apply >> 8, apply, 2, 0,
+                    0xC0, handle >> 8, handle,
+                    0xB3, evaluateField >> 8, evaluateField,
+                    0xB1);
+            method(out, pool, 0x0001, "test", testType, code, 3, 3,
+                    0xB2, testField >> 8, testField,
+                    0x2B, 0x2C,
+                    0xB6, testInvoke >> 8, testInvoke,
+                    0xAC);
+            method(out, pool, 0x0001, "evaluate", evaluateType, code, 3, 3,
+                    0xB2, evaluateField >> 8, evaluateField,
+                    0x2B, 0x2C,
+                    0xB6, evaluateInvoke >> 8, evaluateInvoke,
+                    0xB0);
+            // attributes
+            out.writeShort(0);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 写入方法
+     * @param instructions 字节码，每个int取低8位
+     */
+    private static void method(DataOutputStream out, ConstantPool pool,
+            int access, String name, String type, int code, int maxStack,
+            int maxLocals, int... instructions) throws IOException {
+        out.writeShort(access);
+        out.writeShort(pool.utf8(name));
+        out.writeShort(pool.utf8(type));
+        out.writeShort(1);
+        out.writeShort(code);
+        out.writeInt(12 + instructions.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(instructions.length);
+        for (int instruction : instructions) {
+            out.writeByte(instruction);
+        }
+        // exception table, attributes
+        out.writeShort(0);
+        out.writeShort(0);
+    }
+
+    /**
+     * 常量池
+     * 写入类文件前需创建全部常量
+     */
+    private static final class ConstantPool {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(this.bytes);
+        private final Map<String, Integer> entries = new HashMap<>();
+        private int count = 1;
+        /** 已写入类文件 */
+        private boolean written;
+
+        private int utf8(String value) {
+            return this.entry("U" + value, 1, out -> out.writeUTF(value));
+        }
+
+        private int type(String name) {
+            int utf8 = this.utf8(name);
+            return this.entry("C" + name, 7, out -> out.writeShort(utf8));
+        }
+
+        private int string(String value) {
+            int utf8 = this.utf8(value);
+            return this.entry("S" + value, 8, out -> out.writeShort(utf8));
+        }
+
+        /**
+         * @param tag 9:Fieldref，10:Methodref，11:InterfaceMethodref
+         */
+        private int member(int tag, int owner, String name, String type) {
+            int n = this.utf8(name);
+            int t = this.utf8(type);
+            int nameAndType = this.entry("N" + name + ":" + type, 12, out -> {
+                out.writeShort(n);
+                out.writeShort(t);
+            });
+            return this.entry(tag + ":" + owner + ":" + nameAndType, tag,
+                    out -> {
+                        out.writeShort(owner);
+                        out.writeShort(nameAndType);
+                    });
+        }
+
+        private int entry(String key, int tag, Writer writer) {
+            Integer index = this.entries.get(key);
+            if (index != null) {
+                return index;
+            }
+            if (this.written) {
+                throw new IllegalStateException(key);
+            }
+            try {
+                this.out.writeByte(tag);
+                writer.write(this.out);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            this.entries.put(key, this.count);
+            return this.count++;
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            this.written = true;
+            this.out.flush();
+            out.writeShort(this.count);
+            this.bytes.writeTo(out);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
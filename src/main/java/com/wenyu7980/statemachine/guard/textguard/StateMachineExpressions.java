@@ -0,0 +1,1357 @@
+package com.wenyu7980.statemachine.guard.textguard;
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 表达式节点
+ * 解析器按语法构建节点树，求值时只遍历节点树，不再重新解析。
+ * 每个节点带有静态类型，"#"、"$"的类型已知时属性在编译时解析并检查，
+ * 基本类型的属性和比较按long/double求值，不装箱，
+ * 枚举属性与字符串常量按枚举值的引用比较，不调用toString。
+ * 节点树最终组合为一个方法句柄，由JVM为每个表达式生成专用的字节码，
+ * 使整个表达式可以被JIT内联
+ *
+ * @author:wenyu
+ */
+final class StateMachineExpressions {
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(StateMachineExpressions.class);
+    /** 是否已记录不能定义类 */
+    private static final AtomicBoolean FALLBACK = new AtomicBoolean();
+    /** 类型未知，求值时才能确定 */
+    private static final Class<?> UNKNOWN = Object.class;
+    /** null常量的类型 */
+    private static final Class<?> NULL = Void.class;
+
+    private StateMachineExpressions() {
+    }
+
+    /**
+     * 将节点树组合为方法句柄
+     * @param root
+     * @return
+     */
+    static StateMachineExpression compile(Node root) {
+        MethodHandle evaluate = root.handle(Object.class);
+        MethodHandle test = root.handle(boolean.class);
+        try {
+            return StateMachineExpressionLoader.define(evaluate, test);
+        } catch (ReflectiveOperationException | RuntimeException
+                | LinkageError e) {
+            // 不能定义类时直接调用方法句柄，首次以warn记录
+            if (FALLBACK.compareAndSet(false, true)) {
+                LOGGER.warn("不能定义表达式类,直接调用方法句柄", e);
+            } else {
+                LOGGER.debug("不能定义表达式类,直接调用方法句柄", e);
+            }
+            return new Compiled(evaluate, test);
+        }
+    }
+
+    /**
+     * 常量（字符串）
+     * @param value
+     * @return
+     */
+    static Node literal(String value) {
+        return new Literal(value, String.class);
+    }
+
+    /**
+     * 数字常量，只在编译时解析一次
+     * @param text
+     * @return
+     */
+    static Node number(String text) {
+        return new NumberLiteral(new BigDecimal(text));
+    }
+
+    /**
+     * 变量根："#"数据，"$"上下文，"null"空
+     * @param name
+     * @param dataType "#"的类型
+     * @param valueType "$"的类型
+     * @return
+     */
+    static Node root(String name, Class<?> dataType, Class<?> valueType) {
+        if ("#".equals(name)) {
+            return new Root(dataType, true);
+        } else if ("$".equals(name)) {
+            return new Root(valueType, false);
+        } else if ("null".equals(name)) {
+            return new Literal(null, NULL);
+        }
+        throw new TextGuardException(name);
+    }
+
+    /**
+     * 属性，所属类型已知时在编译时解析
+     * @param target
+     * @param name
+     * @return
+     */
+    static Node field(Node target, String name) {
+        if (target.type == UNKNOWN) {
+            return new FieldAccess(target, name);
+        }
+        if (target.type == NULL || target.type.isPrimitive()) {
+            throw new TextGuardException(
+                    target.type.getName() + "." + name);
+        }
+        StateMachineAccessor accessor = StateMachineAccessor.of(target.type,
+                name);
+        Class<?> type = accessor.getType();
+        if (type == int.class || type == long.class || type == short.class
+                || type == byte.class) {
+            return new LongField(target, accessor);
+        } else if (type == double.class || type == float.class) {
+            return new DoubleField(target, accessor);
+        } else if (type == boolean.class) {
+            return new BooleanField(target, accessor);
+        }
+        return new TypedField(target, accessor);
+    }
+
+    static Node not(Node expr) {
+        checkBoolean("!", expr);
+        return new Not(expr);
+    }
+
+    static Node negate(Node expr) {
+        if (expr instanceof NumberLiteral) {
+            return new NumberLiteral(((NumberLiteral) expr).value.negate());
+        }
+        checkNumber("-", expr);
+        return new Negate(expr);
+    }
+
+    static Node multiply(Node left, Node right) {
+        return arithmetic("*", left, right,
+                (l, r) -> StateMachineNumbers.multiply(
+                        StateMachineNumbers.number(l),
+                        StateMachineNumbers.number(r)));
+    }
+
+    static Node divide(Node left, Node right) {
+        return arithmetic("/", left, right,
+                (l, r) -> StateMachineNumbers.divide(
+                        StateMachineNumbers.number(l),
+                        StateMachineNumbers.number(r)));
+    }
+
+    static Node add(Node left, Node right) {
+        return arithmetic("+", left, right,
+                (l, r) -> StateMachineNumbers.add(StateMachineNumbers.number(l),
+                        StateMachineNumbers.number(r)));
+    }
+
+    static Node subtract(Node left, Node right) {
+        return arithmetic("-", left, right,
+                (l, r) -> StateMachineNumbers.subtract(
+                        StateMachineNumbers.number(l),
+                        StateMachineNumbers.number(r)));
+    }
+
+    static Node equal(Node left, Node right) {
+        return compare(left, right, Comparison.EQ);
+    }
+
+    static Node notEqual(Node left, Node right) {
+        return compare(left, right, Comparison.NE);
+    }
+
+    static Node greater(Node left, Node right) {
+        return compare(left, right, Comparison.GT);
+    }
+
+    static Node greaterEqual(Node left, Node right) {
+        return compare(left, right, Comparison.GE);
+    }
+
+    static Node less(Node left, Node right) {
+        return compare(left, right, Comparison.LT);
+    }
+
+    static Node lessEqual(Node left, Node right) {
+        return compare(left, right, Comparison.LE);
+    }
+
+    /**
+     * 与，左侧为false时不再计算右侧
+     */
+    static Node and(Node left, Node right) {
+        checkBoolean("&&", left);
+        checkBoolean("&&", right);
+        return new And(left, right);
+    }
+
+    /**
+     * 或，左侧为true时不再计算右侧
+     */
+    static Node or(Node left, Node right) {
+        checkBoolean("||", left);
+        checkBoolean("||", right);
+        return new Or(left, right);
+    }
+
+    /**
+     * 条件，只计算选中的分支
+     */
+    static Node conditional(Node test, Node mid, Node right) {
+        checkBoolean("?:", test);
+        return new Conditional(test, mid, right);
+    }
+
+    private static Node arithmetic(String operator, Node left, Node right,
+            Operator function) {
+        checkNumber(operator, left);
+        checkNumber(operator, right);
+        return binary(left, right, function, isKnown(left.type)
+                && isKnown(right.type) ? Number.class : UNKNOWN);
+    }
+
+    /**
+     * 比较，两侧都是整数（基本类型或整数常量）时按long比较，
+     * 含float/double基本类型时按double比较
+     */
+    private static Node compare(Node left, Node right, Comparison comparison) {
+        if (comparison.equality) {
+            checkEnum(left, right);
+            checkEnum(right, left);
+            Node node = enumCompare(left, right, comparison);
+            if (node == null) {
+                node = enumCompare(right, left, comparison);
+            }
+            if (node != null) {
+                return node;
+            }
+        } else {
+            checkComparable(comparison, left, right);
+        }
+        if (left instanceof NumberLiteral && right instanceof NumberLiteral) {
+            return binary(left, right, (l, r) -> comparison.test(l, r),
+                    boolean.class);
+        }
+        if (isLong(left) && isLong(right)) {
+            return new LongCompare(left, right, comparison);
+        }
+        if (isDouble(left) && isDouble(right)
+                && (left.type == double.class || left.type == float.class
+                        || right.type == double.class
+                        || right.type == float.class)) {
+            return new DoubleCompare(left, right, comparison);
+        }
+        return binary(left, right, (l, r) -> comparison.test(l, r),
+                boolean.class);
+    }
+
+    /**
+     * 枚举属性与字符串常量的相等比较，按引用比较枚举值，不调用toString
+     * @return 不是枚举属性与字符串常量比较时为null
+     */
+    private static Node enumCompare(Node field, Node other,
+            Comparison comparison) {
+        if (!(other instanceof Literal) || other.type != String.class) {
+            return null;
+        }
+        String literal = (String) ((Literal) other).value;
+        if (field instanceof TypedField) {
+            Class<?> type = ((TypedField) field).accessor.getType();
+            if (!type.isEnum()) {
+                return null;
+            }
+            return new EnumCompare((TypedField) field,
+                    enumConstant(type, literal), comparison == Comparison.EQ);
+        } else if (field instanceof FieldAccess) {
+            return new FieldEnumCompare((FieldAccess) field, literal,
+                    comparison == Comparison.EQ);
+        }
+        return null;
+    }
+
+    /**
+     * 二元运算，两侧都是数字常量时在编译时计算
+     */
+    private static Node binary(Node left, Node right, Operator operator,
+            Class<?> type) {
+        if (left instanceof NumberLiteral && right instanceof NumberLiteral) {
+            Object result;
+            try {
+                result = operator.apply(((NumberLiteral) left).value,
+                        ((NumberLiteral) right).value);
+            } catch (RuntimeException e) {
+                // 保留到求值时抛出
+                return new Binary(left, right, operator, type);
+            }
+            return result instanceof BigDecimal
+                    ? new NumberLiteral((BigDecimal) result)
+                    : new Literal(result, result.getClass());
+        }
+        return new Binary(left, right, operator, type);
+    }
+
+    private static boolean isKnown(Class<?> type) {
+        return type != UNKNOWN;
+    }
+
+    /**
+     * 可按long求值：整数基本类型，整数常量
+     */
+    private static boolean isLong(Node node) {
+        if (node instanceof NumberLiteral) {
+            return ((NumberLiteral) node).longValue != null;
+        }
+        return node.type == int.class || node.type == long.class
+                || node.type == short.class || node.type == byte.class;
+    }
+
+    /**
+     * 可精确按double求值：数字常量，除long外的数字基本类型
+     */
+    private static boolean isDouble(Node node) {
+        return node instanceof NumberLiteral || node.type == int.class
+                || node.type == short.class || node.type == byte.class
+                || node.type == double.class || node.type == float.class;
+    }
+
+    private static boolean isNumber(Class<?> type) {
+        return Number.class.isAssignableFrom(type) || (type.isPrimitive()
+                && type != boolean.class && type != char.class);
+    }
+
+    private static void checkBoolean(String operator, Node node) {
+        if (isKnown(node.type) && node.type != boolean.class
+                && node.type != Boolean.class) {
+            throw new TextGuardException(
+                    operator + " " + node.type.getName() + " is not boolean");
+        }
+    }
+
+    private static void checkNumber(String operator, Node node) {
+        if (isKnown(node.type) && !isNumber(node.type)) {
+            throw new TextGuardException(
+                    operator + " " + node.type.getName() + " is not number");
+        }
+    }
+
+    private static void checkComparable(Comparison comparison, Node left,
+            Node right) {
+        if (!isKnown(left.type) || !isKnown(right.type)) {
+            return;
+        }
+        if (isNumber(left.type) && isNumber(right.type)) {
+            return;
+        }
+        if (!left.type.isPrimitive() && left.type != NULL
+                && Comparable.class.isAssignableFrom(left.type)
+                && left.type.isAssignableFrom(right.type)) {
+            return;
+        }
+        throw new TextGuardException(left.type.getName() + " "
+                + comparison.symbol + " " + right.type.getName());
+    }
+
+    /**
+     * 枚举属性与字符串常量比较时，常量须为枚举值
+     */
+    private static void checkEnum(Node node, Node other) {
+        if (!(node instanceof TypedField) || !(other instanceof Literal)
+                || other.type != String.class) {
+            return;
+        }
+        Class<?> type = ((TypedField) node).accessor.getType();
+        if (!type.isEnum()) {
+            return;
+        }
+        Object literal = ((Literal) other).value;
+        if (enumConstant(type, literal) == null) {
+            throw new TextGuardException(
+                    type.getName() + " has no constant " + literal);
+        }
+    }
+
+    /**
+     * 字符串对应的枚举值
+     * @param type 枚举类型
+     * @param literal
+     * @return 没有toString与literal相同的枚举值时为null
+     */
+    private static Object enumConstant(Class<?> type, Object literal) {
+        for (Object constant : type.getEnumConstants()) {
+            if (constant.toString().equals(literal)) {
+                return constant;
+            }
+        }
+        return null;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static int compare(Object left, Object right) {
+        if (left instanceof Number && right instanceof Number) {
+            return StateMachineNumbers.compare((Number) left, (Number) right);
+        }
+        return ((Comparable) left).compareTo(right);
+    }
+
+    private static boolean isEqual(Object left, Object right) {
+        if (left instanceof Number && right instanceof Number) {
+            return StateMachineNumbers.compare((Number) left,
+                    (Number) right) == 0;
+        }
+        return Objects.equals(left, right);
+    }
+
+    private static Object target(Node target, String name, Object data,
+            Object value) {
+        Object obj = target.evaluate(data, value);
+        if (obj == null) {
+            throw new TextGuardException(name);
+        }
+        return obj;
+    }
+
+    /**
+     * 节点
+     */
+    abstract static class Node implements StateMachineExpression {
+        /** 静态类型，Object表示求值时才能确定 */
+        final Class<?> type;
+
+        Node(Class<?> type) {
+            this.type = type;
+        }
+
+        @Override
+        public boolean test(Object data, Object value) {
+            return (Boolean) this.evaluate(data, value);
+        }
+
+        long evaluateLong(Object data, Object value) {
+            return ((Number) this.evaluate(data, value)).longValue();
+        }
+
+        double evaluateDouble(Object data, Object value) {
+            return ((Number) this.evaluate(data, value)).doubleValue();
+        }
+
+        /**
+         * 编译为方法句柄
+         * @param type 返回类型：boolean，long，double或Object
+         * @return (Object,Object)type
+         */
+        MethodHandle handle(Class<?> type) {
+            MethodHandle handle = this.compile();
+            if (handle != null) {
+                Class<?> natural = handle.type().returnType();
+                if (natural == type) {
+                    return handle;
+                }
+                if (type == Object.class
+                        || (natural == long.class && type == double.class)) {
+                    return handle.asType(handle.type().changeReturnType(type));
+                }
+            }
+            return Handles.bind(this, type);
+        }
+
+        /**
+         * 按节点的自然类型编译为方法句柄
+         * @return (Object,Object)自然类型，为null时求值回调节点本身
+         */
+        MethodHandle compile() {
+            return null;
+        }
+    }
+
+    /**
+     * 二元运算符
+     */
+    @FunctionalInterface
+    private interface Operator {
+        Object apply(Object left, Object right);
+    }
+
+    /**
+     * 比较运算符
+     */
+    private enum Comparison {
+        EQ("==", true), NE("<>", true), GT(">", false), GE(">=", false),
+        LT("<", false), LE("<=", false);
+        private final String symbol;
+        /** 相等比较，非数字按equals比较 */
+        private final boolean equality;
+
+        Comparison(String symbol, boolean equality) {
+            this.symbol = symbol;
+            this.equality = equality;
+        }
+
+        /**
+         * @param c 比较结果
+         */
+        boolean test(int c) {
+            switch (this) {
+            case EQ:
+                return c == 0;
+            case NE:
+                return c != 0;
+            case GT:
+                return c > 0;
+            case GE:
+                return c >= 0;
+            case LT:
+                return c < 0;
+            default:
+                return c <= 0;
+            }
+        }
+
+        private boolean test(Object left, Object right) {
+            if (this.equality) {
+                return isEqual(left, right) == (this == EQ);
+            }
+            return this.test(compare(left, right));
+        }
+    }
+
+    /**
+     * 变量根
+     */
+    private static final class Root extends Node {
+        /** true:"#"，false:"$" */
+        private final boolean data;
+
+        private Root(Class<?> type, boolean data) {
+            super(type);
+            this.data = data;
+        }
+
+        @Override
+        public Object evaluate(Object data, Object value) {
+            return this.data ? data : value;
+        }
+
+        @Override
+        MethodHandle compile() {
+            return this.data ? Handles.DATA : Handles.VALUE;
+        }
+    }
+
+    /**
+     * 常量
+     */
+    private static final class Literal extends Node {
+        private final Object value;
+
+        private Literal(Object value, Class<?> type) {
+            super(type);
+            this.value = value;
+        }
+
+        @Override
+        public Object evaluate(Object data, Object value) {
+            return this.value;
+        }
+
+        @Override
+        MethodHandle compile() {
+            return Handles.constant(Object.class, this.value);
+        }
+    }
+
+    /**
+     * 数字常量
+     * 求值结果为BigDecimal，参与运算时按另一侧取long/double形式
+     */
+    private static final class NumberLiteral extends Node {
+        private final BigDecimal value;
+        /** 整数形式，非整数或超出long范围时为null */
+        private final Long longValue;
+        /** 浮点形式 */
+        private final Double doubleValue;
+
+        private NumberLiteral(BigDecimal value) {
+            super(BigDecimal.class);
+            this.value = value;
+            Long longValue;
+            try {
+                longValue = value.longValueExact();
+            } catch (ArithmeticException e) {
+                longValue = null;
+            }
+            this.longValue = longValue;
+            this.doubleValue = value.doubleValue();
+        }
+
+        @Override
+        public Object evaluate(Object data, Object value) {
+            return this.value;
+        }
+
+        @Override
+        long evaluateLong(Object data, Object value) {
+            return this.longValue;
+        }
+
+        @Override
+        double evaluateDouble(Object data, Object value) {
+            return this.doubleValue;
+        }
+
+        @Override
+        MethodHandle handle(Class<?> type) {
+            if (type == long.class && this.longValue != null) {
+                return Handles.constant(long.class, this.longValue);
+            } else if (type == double.class) {
+                return Handles.constant(double.class, this.doubleValue);
+            }
+            return super.handle(type);
+        }
+
+        @Override
+        MethodHandle compile() {
+            return Handles.constant(Object.class, this.value);
+        }
+
+        /**
+         * 与other运算时使用的值
+         * @param other
+         * @return
+         */
+        private Object operand(Object other) {
+            switch (StateMachineNumbers.kind(other)) {
+            case StateMachineNumbers.LONG:
+                return this.longValue != null ? this.longValue : this.value;
+            case StateMachineNumbers.DOUBLE:
+                return this.doubleValue;
+            default:
+                return this.value;
+            }
+        }
+    }
+
+    /**
+     * 属性（类型未知）
+     * 按数据的类缓存访问器，同一节点最多缓存{@link #CACHE_SIZE}个类，
+     * 超过后使用全局缓存
+     */
+    private static final class FieldAccess extends Node {
+        /** 内联缓存大小 */
+        private static final int CACHE_SIZE = 4;
+        private final Node target;
+        private final String name;
+        /** 内联缓存 */
+        private volatile StateMachineAccessor[] cache = new StateMachineAccessor[0];
+
+        private FieldAccess(Node target, String name) {
+            super(UNKNOWN);
+            this.target = target;
+            this.name = name;
+        }
+
+        @Override
+        public Object evaluate(Object data, Object value) {
+            Object obj = target(this.target, this.name, data, value);
+            return this.accessor(obj.getClass()).get(obj);
+        }
+
+        private StateMachineAccessor accessor(Class<?> type) {
+            StateMachineAccessor[] cache = this.cache;
+            for (StateMachineAccessor accessor : cache) {
+                if (accessor.getOwner() == type) {
+                    return accessor;
+                }
+            }
+            StateMachineAccessor accessor = StateMachineAccessor.of(type,
+                    this.name);
+            if (cache.length < CACHE_SIZE) {
+                StateMachineAccessor[] update = Arrays.copyOf(cache,
+                        cache.length + 1);
+                update[cache.length] = accessor;
+                this.cache = update;
+            }
+            return accessor;
+        }
+    }
+
+    /**
+     * 属性（编译时解析）
+     */
+    private static class TypedField extends Node {
+        final Node target;
+        final StateMachineAccessor accessor;
+
+        private TypedField(Node target, StateMachineAccessor accessor) {
+            super(accessor.getType().isEnum() ? String.class
+                    : accessor.getType());
+            this.target = target;
+            this.accessor = accessor;
+        }
+
+        @Override
+        public Object evaluate(Object data, Object value) {
+            return this.accessor.get(target(this.target,
+                    this.accessor.getName(), data, value));
+        }
+
+        final Object owner(Object data, Object value) {
+            return target(this.target, this.accessor.getName(), data, value);
+        }
+
+        @Override
+        MethodHandle compile() {
+            return MethodHandles.filterReturnValue(this.owner(),
+                    Handles.ACCESSOR_GET.bindTo(this.accessor));
+        }
+
+        /**
+         * 属性所属对象，为null时抛出异常
+         * @return (Object,Object)Object
+         */
+        final MethodHandle owner() {
+            return MethodHandles.filterReturnValue(
+                    this.target.handle(Object.class),
+                    Handles.REQUIRE.bindTo(this.accessor.getName()));
+        }
+
+        final TextGuardException exception(Throwable e) {
+            return new TextGuardException(this.accessor.getOwner().getName()
+                    + "." + this.accessor.getName(), e);
+        }
+    }
+
+    /**
+     * 整数基本类型属性
+     */
+    private static final class LongField extends TypedField {
+        /** (Object)long */
+        private final MethodHandle handle;
+
+        private LongField(Node target, StateMachineAccessor accessor) {
+            super(target, accessor);
+            this.handle = accessor.getHandle()
+                    .asType(MethodType.methodType(long.class, Object.class));
+        }
+
+        @Override
+        long evaluateLong(Object data, Object value) {
+            Object owner = this.owner(data, value);
+            try {
+                return (long) this.handle.invokeExact(owner);
+            } catch (Throwable e) {
+                throw this.exception(e);
+            }
+        }
+
+        @Override
+        double evaluateDouble(Object data, Object value) {
+            return this.evaluateLong(data, value);
+        }
+
+        @Override
+        MethodHandle handle(Class<?> type) {
+            if (type == long.class || type == double.class) {
+                MethodHandle handle = MethodHandles
+                        .filterReturnValue(this.owner(), this.handle);
+                return handle.asType(handle.type().changeReturnType(type));
+            }
+            return super.handle(type);
+        }
+    }
+
+    /**
+     * 浮点基本类型属性
+     */
+    private static final class DoubleField extends TypedField {
+        /** (Object)double */
+        private final MethodHandle handle;
+
+        private DoubleField(Node target, StateMachineAccessor accessor) {
+            super(target, accessor);
+            this.handle = accessor.getHandle()
+                    .asType(MethodType.methodType(double.class, Object.class));
+        }
+
+        @Override
+        double evaluateDouble(Object data, Object value) {
+            Object owner = this.owner(data, value);
+            try {
+                return (double) this.handle.invokeExact(owner);
+            } catch (Throwable e) {
+                throw this.exception(e);
+            }
+        }
+
+        @Override
+        MethodHandle handle(Class<?> type) {
+            if (type == double.class) {
+                return MethodHandles.filterReturnValue(this.owner(),
+                        this.handle);
+            }
+            return super.handle(type);
+        }
+    }
+
+    /**
+     * boolean属性
+     */
+    private static final class BooleanField extends TypedField {
+        /** (Object)boolean */
+        private final MethodHandle handle;
+
+        private BooleanField(Node target, StateMachineAccessor accessor) {
+            super(target, accessor);
+            this.handle = accessor.getHandle()
+                    .asType(MethodType.methodType(boolean.class, Object.class));
+        }
+
+        @Override
+        public boolean test(Object data, Object value) {
+            Object owner = this.owner(data, value);
+            try {
+                return (boolean) this.handle.invokeExact(owner);
+            } catch (Throwable e) {
+                throw this.exception(e);
+            }
+        }
+
+        @Override
+        MethodHandle handle(Class<?> type) {
+            if (type == boolean.class) {
+                return MethodHandles.filterReturnValue(this.owner(),
+                        this.handle);
+            }
+            return super.handle(type);
+        }
+    }
+
+    /**
+     * 取反
+     */
+    private static final class Not extends Node {
+        private final Node expr;
+
+        private Not(Node expr) {
+            super(boolean.class);
+            this.expr = expr;
+        }
+
+        @Override
+        public Object evaluate(Object data, Object value) {
+            return this.test(data, value);
+        }
+
+        @Override
+        public boolean test(Object data, Object value) {
+            return !this.expr.test(data, value);
+        }
+
+        @Override
+        MethodHandle compile() {
+            return MethodHandles.filterReturnValue(
+                    this.expr.handle(boolean.class), Handles.NEGATION);
+        }
+    }
+
+    /**
+     * 负数
+     */
+    private static final class Negate extends Node {
+        private final Node expr;
+
+        private Negate(Node expr) {
+            super(expr.type.isPrimitive() || !isKnown(expr.type) ? expr.type
+                    : Number.class);
+            this.expr = expr;
+        }
+
+        @Override
+        public Object evaluate(Object data, Object value) {
+            return StateMachineNumbers.negate(
+                    StateMachineNumbers.number(this.expr.evaluate(data, value)));
+        }
+    }
+
+    private static final class And extends Node {
+        private final Node left;
+        private final Node right;
+
+        private And(Node left, Node right) {
+            super(boolean.class);
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public Object evaluate(Object data, Object value) {
+            return this.test(data, value);
+        }
+
+        @Override
+        public boolean test(Object data, Object value) {
+            return this.left.test(data, value) && this.right.test(data, value);
+        }
+
+        @Override
+        MethodHandle compile() {
+            return MethodHandles.guardWithTest(this.left.handle(boolean.class),
+                    this.right.handle(boolean.class), Handles.FALSE);
+        }
+    }
+
+    private static final class Or extends Node {
+        private final Node left;
+        private final Node right;
+
+        private Or(Node left, Node right) {
+            super(boolean.class);
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public Object evaluate(Object data, Object value) {
+            return this.test(data, value);
+        }
+
+        @Override
+        public boolean test(Object data, Object value) {
+            return this.left.test(data, value) || this.right.test(data, value);
+        }
+
+        @Override
+        MethodHandle compile() {
+            return MethodHandles.guardWithTest(this.left.handle(boolean.class),
+                    Handles.TRUE, this.right.handle(boolean.class));
+        }
+    }
+
+    private static final class Conditional extends Node {
+        private final Node test;
+        private final Node mid;
+        private final Node right;
+
+        private Conditional(Node test, Node mid, Node right) {
+            super(mid.type == right.type ? mid.type : UNKNOWN);
+            this.test = test;
+            this.mid = mid;
+            this.right = right;
+        }
+
+        @Override
+        public Object evaluate(Object data, Object value) {
+            return this.test.test(data, value) ? this.mid.evaluate(data, value)
+                    : this.right.evaluate(data, value);
+        }
+
+        @Override
+        public boolean test(Object data, Object value) {
+            return this.test.test(data, value) ? this.mid.test(data, value)
+                    : this.right.test(data, value);
+        }
+
+        @Override
+        MethodHandle handle(Class<?> type) {
+            return MethodHandles.guardWithTest(this.test.handle(boolean.class),
+                    this.mid.handle(type), this.right.handle(type));
+        }
+    }
+
+    /**
+     * 二元运算
+     * 一侧为数字常量时，常量按另一侧的数字类别取预先转换好的值
+     */
+    private static final class Binary extends Node {
+        private final Node left;
+        private final Node right;
+        private final Operator operator;
+
+        private Binary(Node left, Node right, Operator operator,
+                Class<?> type) {
+            super(type);
+            this.left = left;
+            this.right = right;
+            this.operator = operator;
+        }
+
+        @Override
+        public Object evaluate(Object data, Object value) {
+            Object l;
+            Object r;
+            if (this.left instanceof NumberLiteral) {
+                r = this.right.evaluate(data, value);
+                l = ((NumberLiteral) this.left).operand(r);
+            } else if (this.right instanceof NumberLiteral) {
+                l = this.left.evaluate(data, value);
+                r = ((NumberLiteral) this.right).operand(l);
+            } else {
+                l = this.left.evaluate(data, value);
+                r = this.right.evaluate(data, value);
+            }
+            return this.operator.apply(l, r);
+        }
+    }
+
+    /**
+     * long比较
+     */
+    private static final class LongCompare extends Node {
+        private final Node left;
+        private final Node right;
+        private final Comparison comparison;
+
+        private LongCompare(Node left, Node right, Comparison comparison) {
+            super(boolean.class);
+            this.left = left;
+            this.right = right;
+            this.comparison = comparison;
+        }
+
+        @Override
+        public Object evaluate(Object data, Object value) {
+            return this.test(data, value);
+        }
+
+        @Override
+        public boolean test(Object data, Object value) {
+            return this.comparison
+                    .test(Long.compare(this.left.evaluateLong(data, value),
+                            this.right.evaluateLong(data, value)));
+        }
+
+        @Override
+        MethodHandle compile() {
+            return Handles.compare(Handles.LONG_COMPARE,
+                    this.left.handle(long.class), this.right.handle(long.class),
+                    this.comparison);
+        }
+    }
+
+    /**
+     * double比较
+     */
+    private static final class DoubleCompare extends Node {
+        private final Node left;
+        private final Node right;
+        private final Comparison comparison;
+
+        private DoubleCompare(Node left, Node right, Comparison comparison) {
+            super(boolean.class);
+            this.left = left;
+            this.right = right;
+            this.comparison = comparison;
+        }
+
+        @Override
+        public Object evaluate(Object data, Object value) {
+            return this.test(data, value);
+        }
+
+        @Override
+        public boolean test(Object data, Object value) {
+            return this.comparison.test(StateMachineNumbers.compare(
+                    this.left.evaluateDouble(data, value),
+                    this.right.evaluateDouble(data, value)));
+        }
+
+        @Override
+        MethodHandle compile() {
+            return Handles.compare(Handles.DOUBLE_COMPARE,
+                    this.left.handle(double.class),
+                    this.right.handle(double.class), this.comparison);
+        }
+    }
+
+    /**
+     * 枚举属性与字符串常量的相等比较（编译时解析）
+     * 字符串在编译时转换为枚举值，求值时按引用比较
+     */
+    private static final class EnumCompare extends Node {
+        private final TypedField field;
+        private final Object constant;
+        /** true:"=="，false:"<>" */
+        private final boolean equal;
+
+        private EnumCompare(TypedField field, Object constant, boolean equal) {
+            super(boolean.class);
+            this.field = field;
+            this.constant = constant;
+            this.equal = equal;
+        }
+
+        @Override
+        public Object evaluate(Object data, Object value) {
+            return this.test(data, value);
+        }
+
+        @Override
+        public boolean test(Object data, Object value) {
+            Object owner = this.field.owner(data, value);
+            Object raw = this.field.accessor.raw(owner);
+            return (raw == this.constant) == this.equal;
+        }
+
+        @Override
+        MethodHandle compile() {
+            MethodHandle handle = MethodHandles.filterReturnValue(
+                    this.field.owner(),
+                    this.field.accessor.getHandle().asType(MethodType
+                            .methodType(Object.class, Object.class)));
+            handle = MethodHandles.filterReturnValue(handle,
+                    Handles.SAME.bindTo(this.constant));
+            return this.equal ? handle
+                    : MethodHandles.filterReturnValue(handle, Handles.NEGATION);
+        }
+    }
+
+    /**
+     * 属性（类型未知）与字符串常量的相等比较
+     * 属性为枚举类型时按引用比较，枚举类型对应的枚举值缓存最近一个
+     */
+    private static final class FieldEnumCompare extends Node {
+        private final FieldAccess field;
+        private final String literal;
+        /** true:"=="，false:"<>" */
+        private final boolean equal;
+        /** 最近一次解析的枚举值 */
+        private volatile EnumConstant constant;
+
+        private FieldEnumCompare(FieldAccess field, String literal,
+                boolean equal) {
+            super(boolean.class);
+            this.field = field;
+            this.literal = literal;
+            this.equal = equal;
+        }
+
+        @Override
+        public Object evaluate(Object data, Object value) {
+            return this.test(data, value);
+        }
+
+        @Override
+        public boolean test(Object data, Object value) {
+            Object obj = target(this.field.target, this.field.name, data,
+                    value);
+            StateMachineAccessor accessor = this.field.accessor(obj.getClass());
+            boolean equal;
+            if (accessor.getType().isEnum()) {
+                Object raw = accessor.raw(obj);
+                equal = raw != null && raw == this.constant(accessor.getType());
+            } else {
+                equal = isEqual(accessor.get(obj), this.literal);
+            }
+            return equal == this.equal;
+        }
+
+        private Object constant(Class<?> type) {
+            EnumConstant constant = this.constant;
+            if (constant == null || constant.type != type) {
+                constant = new EnumConstant(type,
+                        enumConstant(type, this.literal));
+                this.constant = constant;
+            }
+            return constant.value;
+        }
+    }
+
+    /**
+     * 枚举类型及字符串对应的枚举值
+     */
+    private static final class EnumConstant {
+        private final Class<?> type;
+        /** 没有对应的枚举值时为null */
+        private final Object value;
+
+        private EnumConstant(Class<?> type, Object value) {
+            this.type = type;
+            this.value = value;
+        }
+    }
+
+    /**
+     * 编译为方法句柄的表达式
+     */
+    private static final class Compiled implements StateMachineExpression {
+        /** (Object,Object)Object */
+        private final MethodHandle evaluate;
+        /** (Object,Object)boolean */
+        private final MethodHandle test;
+
+        private Compiled(MethodHandle evaluate, MethodHandle test) {
+            this.evaluate = evaluate;
+            this.test = test;
+        }
+
+        @Override
+        public Object evaluate(Object data, Object value) {
+            try {
+                return (Object) this.evaluate.invokeExact(data, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new TextGuardException(e.toString(), e);
+            }
+        }
+
+        @Override
+        public boolean test(Object data, Object value) {
+            try {
+                return (boolean) this.test.invokeExact(data, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new TextGuardException(e.toString(), e);
+            }
+        }
+    }
+
+    /**
+     * 组合节点使用的方法句柄
+     */
+    private static final class Handles {
+        private static final MethodType GENERIC = MethodType
+                .methodType(Object.class, Object.class, Object.class);
+        /** "#" */
+        private static final MethodHandle DATA = MethodHandles.dropArguments(
+                MethodHandles.identity(Object.class), 1, Object.class);
+        /** "$" */
+        private static final MethodHandle VALUE = MethodHandles.dropArguments(
+                MethodHandles.identity(Object.class), 0, Object.class);
+        private static final MethodHandle TRUE = constant(boolean.class, true);
+        private static final MethodHandle FALSE = constant(boolean.class,
+                false);
+        private static final MethodHandle EVALUATE;
+        private static final MethodHandle TEST;
+        private static final MethodHandle EVALUATE_LONG;
+        private static final MethodHandle EVALUATE_DOUBLE;
+        private static final MethodHandle ACCESSOR_GET;
+        /** (String,Object)Object */
+        private static final MethodHandle REQUIRE;
+        /** (boolean)boolean */
+        private static final MethodHandle NEGATION;
+        /** (long,long)int */
+        private static final MethodHandle LONG_COMPARE;
+        /** (double,double)int */
+        private static final MethodHandle DOUBLE_COMPARE;
+        /** (Comparison,int)boolean */
+        private static final MethodHandle COMPARISON_TEST;
+        /** (Object,Object)boolean，按引用比较 */
+        private static final MethodHandle SAME;
+
+        static {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            try {
+                EVALUATE = lookup.findVirtual(Node.class, "evaluate", GENERIC);
+                TEST = lookup.findVirtual(Node.class, "test",
+                        GENERIC.changeReturnType(boolean.class));
+                EVALUATE_LONG = lookup.findVirtual(Node.class, "evaluateLong",
+                        GENERIC.changeReturnType(long.class));
+                EVALUATE_DOUBLE = lookup.findVirtual(Node.class,
+                        "evaluateDouble",
+                        GENERIC.changeReturnType(double.class));
+                ACCESSOR_GET = lookup.findVirtual(StateMachineAccessor.class,
+                        "get", MethodType.methodType(Object.class,
+                                Object.class));
+                REQUIRE = lookup.findStatic(Handles.class, "require",
+                        MethodType.methodType(Object.class, String.class,
+                                Object.class));
+                NEGATION = lookup.findStatic(Handles.class, "negation",
+                        MethodType.methodType(boolean.class, boolean.class));
+                LONG_COMPARE = lookup.findStatic(Long.class, "compare",
+                        MethodType.methodType(int.class, long.class,
+                                long.class));
+                DOUBLE_COMPARE = lookup.findStatic(StateMachineNumbers.class,
+                        "compare", MethodType.methodType(int.class,
+                                double.class, double.class));
+                COMPARISON_TEST = lookup.findVirtual(Comparison.class, "test",
+                        MethodType.methodType(boolean.class, int.class));
+                SAME = lookup.findStatic(Handles.class, "same",
+                        MethodType.methodType(boolean.class, Object.class,
+                                Object.class));
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        /**
+         * 回调节点本身求值
+         */
+        private static MethodHandle bind(Node node, Class<?> type) {
+            if (type == boolean.class) {
+                return TEST.bindTo(node);
+            } else if (type == long.class) {
+                return EVALUATE_LONG.bindTo(node);
+            } else if (type == double.class) {
+                return EVALUATE_DOUBLE.bindTo(node);
+            }
+            return EVALUATE.bindTo(node);
+        }
+
+        /**
+         * 常量
+         * @return (Object,Object)type
+         */
+        private static MethodHandle constant(Class<?> type, Object value) {
+            return MethodHandles.dropArguments(
+                    MethodHandles.constant(type, value), 0, Object.class,
+                    Object.class);
+        }
+
+        /**
+         * 比较
+         * @param compare (x,x)int
+         * @param left (Object,Object)x
+         * @param right (Object,Object)x
+         * @return (Object,Object)boolean
+         */
+        private static MethodHandle compare(MethodHandle compare,
+                MethodHandle left, MethodHandle right, Comparison comparison) {
+            MethodHandle handle = MethodHandles.filterReturnValue(compare,
+                    COMPARISON_TEST.bindTo(comparison));
+            handle = MethodHandles.collectArguments(handle, 0, left);
+            handle = MethodHandles.collectArguments(handle, 2, right);
+            return MethodHandles.permuteArguments(handle,
+                    GENERIC.changeReturnType(boolean.class), 0, 1, 0, 1);
+        }
+
+        private static Object require(String name, Object obj) {
+            if (obj == null) {
+                throw new TextGuardException(name);
+            }
+            return obj;
+        }
+
+        private static boolean negation(boolean value) {
+            return !value;
+        }
+
+        private static boolean same(Object left, Object right) {
+            return left == right;
+        }
+    }
+}
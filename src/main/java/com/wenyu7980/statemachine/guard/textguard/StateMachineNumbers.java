@@ -0,0 +1,185 @@
+package com.wenyu7980.statemachine.guard.textguard;
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * 数字运算
+ * 整数(Byte,Short,Integer,Long)之间按long计算，溢出时改用BigDecimal；
+ * 含浮点数(Float,Double)时按double计算；含BigDecimal等其他数字时按BigDecimal计算
+ *
+ * @author:wenyu
+ */
+final class StateMachineNumbers {
+    /** 整数 */
+    static final int LONG = 0;
+    /** 浮点数 */
+    static final int DOUBLE = 1;
+    /** 其他 */
+    static final int DECIMAL = 2;
+    /** double可精确表示的最大整数 */
+    private static final long DOUBLE_EXACT = 1L << 53;
+
+    private StateMachineNumbers() {
+    }
+
+    /**
+     * 数字类别
+     * @param number
+     * @return {@link #LONG}，{@link #DOUBLE}或{@link #DECIMAL}
+     */
+    static int kind(Object number) {
+        if (number instanceof Integer || number instanceof Long
+                || number instanceof Short || number instanceof Byte) {
+            return LONG;
+        }
+        if (number instanceof Double || number instanceof Float) {
+            return DOUBLE;
+        }
+        return DECIMAL;
+    }
+
+    static Number number(Object obj) {
+        if (obj instanceof Number) {
+            return (Number) obj;
+        }
+        throw new TextGuardException("not a number:" + obj);
+    }
+
+    static BigDecimal decimal(Number number) {
+        if (number instanceof BigDecimal) {
+            return (BigDecimal) number;
+        }
+        switch (kind(number)) {
+        case LONG:
+            return BigDecimal.valueOf(number.longValue());
+        case DOUBLE:
+            return new BigDecimal(number.doubleValue());
+        default:
+            if (number instanceof BigInteger) {
+                return new BigDecimal((BigInteger) number);
+            }
+            return new BigDecimal(number.toString());
+        }
+    }
+
+    static Number add(Number left, Number right) {
+        int kind = Math.max(kind(left), kind(right));
+        if (kind == LONG) {
+            try {
+                return Math.addExact(left.longValue(), right.longValue());
+            } catch (ArithmeticException e) {
+                // 溢出
+            }
+        } else if (kind == DOUBLE) {
+            return left.doubleValue() + right.doubleValue();
+        }
+        return decimal(left).add(decimal(right));
+    }
+
+    static Number subtract(Number left, Number right) {
+        int kind = Math.max(kind(left), kind(right));
+        if (kind == LONG) {
+            try {
+                return Math.subtractExact(left.longValue(), right.longValue());
+            } catch (ArithmeticException e) {
+                // 溢出
+            }
+        } else if (kind == DOUBLE) {
+            return left.doubleValue() - right.doubleValue();
+        }
+        return decimal(left).subtract(decimal(right));
+    }
+
+    static Number multiply(Number left, Number right) {
+        int kind = Math.max(kind(left), kind(right));
+        if (kind == LONG) {
+            try {
+                return Math.multiplyExact(left.longValue(), right.longValue());
+            } catch (ArithmeticException e) {
+                // 溢出
+            }
+        } else if (kind == DOUBLE) {
+            return left.doubleValue() * right.doubleValue();
+        }
+        return decimal(left).multiply(decimal(right));
+    }
+
+    /**
+     * 除法，整数不能整除时按BigDecimal精确计算
+     */
+    static Number divide(Number left, Number right) {
+        int kind = Math.max(kind(left), kind(right));
+        if (kind == LONG) {
+            long l = left.longValue(), r = right.longValue();
+            if (r != 0 && !(l == Long.MIN_VALUE && r == -1) && l % r == 0) {
+                return l / r;
+            }
+        } else if (kind == DOUBLE) {
+            return left.doubleValue() / right.doubleValue();
+        }
+        return decimal(left).divide(decimal(right));
+    }
+
+    static Number negate(Number number) {
+        switch (kind(number)) {
+        case LONG:
+            if (number.longValue() != Long.MIN_VALUE) {
+                return -number.longValue();
+            }
+            break;
+        case DOUBLE:
+            return -number.doubleValue();
+        default:
+            break;
+        }
+        return decimal(number).negate();
+    }
+
+    /**
+     * 比较，按数值比较，与精度(scale)无关
+     */
+    static int compare(Number left, Number right) {
+        int lk = kind(left), rk = kind(right);
+        if (lk == LONG && rk == LONG) {
+            return Long.compare(left.longValue(), right.longValue());
+        }
+        if (lk != DECIMAL && rk != DECIMAL) {
+            if ((lk == DOUBLE || exact(left.longValue()))
+                    && (rk == DOUBLE || exact(right.longValue()))) {
+                return compare(left.doubleValue(), right.doubleValue());
+            }
+        }
+        if ((lk == DOUBLE && !Double.isFinite(left.doubleValue()))
+                || (rk == DOUBLE && !Double.isFinite(right.doubleValue()))) {
+            return compare(left.doubleValue(), right.doubleValue());
+        }
+        return decimal(left).compareTo(decimal(right));
+    }
+
+    private static boolean exact(long value) {
+        return -DOUBLE_EXACT <= value && value <= DOUBLE_EXACT;
+    }
+
+    /**
+     * double比较，0.0与-0.0相等
+     */
+    static int compare(double left, double right) {
+        return left == right ? 0 : Double.compare(left, right);
+    }
+}
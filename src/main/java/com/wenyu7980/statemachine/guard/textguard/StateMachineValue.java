@@ -1,35 +1,79 @@
-package com.wenyu7980.statemachine.guard.textguard;
-
-import java.io.StringReader;
-/**
- * Copyright wenyu
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *     http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-
-/**
- *
- * @author:wenyu
- */
-public class StateMachineValue {
-    public static Object get(String text, Object data, Object context) {
-        StateMachineValuePaser paser = new StateMachineValuePaser(
-                new StringReader(text));
-        try {
-            return paser.express(data, context);
-        } catch (ParseException e1) {
-            e1.printStackTrace();
-            throw new TextGuardException(text);
-        }
-    }
-}
+package com.wenyu7980.statemachine.guard.textguard;
+
+import com.wenyu7980.statemachine.guard.textguard.StateMachineExpressions.Node;
+
+import java.io.StringReader;
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ *
+ * @author:wenyu
+ */
+public class StateMachineValue {
+    /**
+     * 解析动态语言
+     * @param text
+     * @return 可重复求值的表达式
+     * @throws TextGuardException 语法错误
+     */
+    public static StateMachineExpression compile(String text) {
+        return compile(text, Object.class, Object.class);
+    }
+
+    /**
+     * 按数据类型解析动态语言
+     * 属性在编译时解析并检查类型，属性不存在、类型不匹配时抛出异常
+     * @param text
+     * @param dataType "#"的类型，Object表示求值时才能确定
+     * @param valueType "$"的类型，Object表示求值时才能确定
+     * @return 可重复求值的表达式
+     * @throws TextGuardException 语法错误，属性不存在，类型不匹配
+     */
+    public static StateMachineExpression compile(String text,
+            Class<?> dataType, Class<?> valueType) {
+        return StateMachineExpressions.compile(parse(text, dataType, valueType));
+    }
+
+    /**
+     * 求值一次
+     * 直接遍历节点树求值，不生成表达式类
+     * @param text
+     * @param data "#"
+     * @param context "$"
+     * @return
+     * @throws TextGuardException 语法错误
+     */
+    public static Object get(String text, Object data, Object context) {
+        return parse(text, Object.class, Object.class).evaluate(data, context);
+    }
+
+    /**
+     * 解析为节点树
+     */
+    private static Node parse(String text,
+            Class<?> dataType, Class<?> valueType) {
+        StateMachineValuePaser paser = new StateMachineValuePaser(
+                new StringReader(text),
+                dataType == null ? Object.class : dataType,
+                valueType == null ? Object.class : valueType);
+        try {
+            return paser.express();
+        } catch (ParseException | TokenMgrError | TextGuardException e) {
+            throw new TextGuardException(text, e);
+        }
+    }
+}
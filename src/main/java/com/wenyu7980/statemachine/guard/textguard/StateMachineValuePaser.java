@@ -1,28 +1,38 @@
 /* Generated By:JavaCC: Do not edit this line. StateMachineValuePaser.java */
 package com.wenyu7980.statemachine.guard.textguard;
 
-import java.lang.reflect.Field;
-import java.math.BigDecimal;
+import com.wenyu7980.statemachine.guard.textguard.StateMachineExpressions.Node;
 
 public class StateMachineValuePaser implements StateMachineValuePaserConstants {
+  /** "#"????Object????????? */
+  private Class<?> dataType = Object.class;
+  /** "$"????Object????????? */
+  private Class<?> valueType = Object.class;
 
-/** �?小的符号 */
-  final public Object primary(Object data, Object value) throws ParseException {
-  Object obj = null;
+  StateMachineValuePaser(java.io.Reader stream, Class<?> dataType, Class<?> valueType)
+  {
+    this(stream);
+    this.dataType = dataType;
+    this.valueType = valueType;
+  }
+
+/** ????? */
+  final public Node primary() throws ParseException {
+  Node obj = null;
   Token t = null;
     switch ((jj_ntk==-1)?jj_ntk():jj_ntk) {
     case IDENTIFIER:
-      // 变量
-          obj = variable(data, value);
+      // ??
+          obj = variable();
       break;
     case STRING:
       t = jj_consume_token(STRING);
       String str = t.toString();
-      obj = str.substring(1, str.length() - 1);
+      obj = StateMachineExpressions.literal(str.substring(1, str.length() - 1));
       break;
     case NUMBER:
       t = jj_consume_token(NUMBER);
-      obj = new BigDecimal(t.toString());
+      obj = StateMachineExpressions.number(t.toString());
       break;
     default:
       jj_la1[0] = jj_gen;
@@ -33,30 +43,29 @@ public class StateMachineValuePaser implements StateMachineValuePaserConstants {
     throw new Error("Missing return statement in function");
   }
 
-/** 单元运算�? */
-  final public Object unary(Object data, Object value) throws ParseException {
-  Token t = null;
-  Object obj = null;
+/** ????? */
+  final public Node unary() throws ParseException {
+  Node obj = null;
     switch ((jj_ntk==-1)?jj_ntk():jj_ntk) {
     case 14:
       jj_consume_token(14);
-      obj = express(data, value);
-      obj = !((Boolean) obj);
+      obj = express();
+      obj = StateMachineExpressions.not(obj);
       break;
     case 15:
       jj_consume_token(15);
-      obj = primary(data, value);
-      obj = ((BigDecimal) obj).multiply(new BigDecimal(- 1));
+      obj = primary();
+      obj = StateMachineExpressions.negate(obj);
       break;
     case 16:
       jj_consume_token(16);
-      obj = express(data, value);
+      obj = express();
       jj_consume_token(17);
       break;
     case NUMBER:
     case STRING:
     case IDENTIFIER:
-      obj = primary(data, value);
+      obj = primary();
       break;
     default:
       jj_la1[1] = jj_gen;
@@ -67,21 +76,19 @@ public class StateMachineValuePaser implements StateMachineValuePaserConstants {
     throw new Error("Missing return statement in function");
   }
 
-/** 基础term */
-  final public Object term(Object data, Object value) throws ParseException {
-  Object obj = null;
-  Token t = null;
-    obj = unary(data, value);
+/** ??term */
+  final public Node term() throws ParseException {
+  Node obj = null;
+    obj = unary();
     {if (true) return obj;}
     throw new Error("Missing return statement in function");
   }
 
-/** 乘除 */
-  final public Object multiDiv(Object data, Object value) throws ParseException {
-  Token t = null;
-  Object left = null;
-  Object right = null;
-    left = term(data, value);
+/** ?? */
+  final public Node multiDiv() throws ParseException {
+  Node left = null;
+  Node right = null;
+    left = term();
     label_1:
     while (true) {
       switch ((jj_ntk==-1)?jj_ntk():jj_ntk) {
@@ -96,13 +103,13 @@ public class StateMachineValuePaser implements StateMachineValuePaserConstants {
       switch ((jj_ntk==-1)?jj_ntk():jj_ntk) {
       case 18:
         jj_consume_token(18);
-        right = term(data, value);
-      left = ((BigDecimal) left).multiply((BigDecimal) right);
+        right = term();
+      left = StateMachineExpressions.multiply(left, right);
         break;
       case 19:
         jj_consume_token(19);
-        right = term(data, value);
-      left = ((BigDecimal) left).divide((BigDecimal) right);
+        right = term();
+      left = StateMachineExpressions.divide(left, right);
         break;
       default:
         jj_la1[3] = jj_gen;
@@ -114,12 +121,11 @@ public class StateMachineValuePaser implements StateMachineValuePaserConstants {
     throw new Error("Missing return statement in function");
   }
 
-/** 加减 */
-  final public Object plusMinus(Object data, Object value) throws ParseException {
-  Token t = null;
-  Object left = null;
-  Object right = null;
-    left = multiDiv(data, value);
+/** ?? */
+  final public Node plusMinus() throws ParseException {
+  Node left = null;
+  Node right = null;
+    left = multiDiv();
     label_2:
     while (true) {
       switch ((jj_ntk==-1)?jj_ntk():jj_ntk) {
@@ -134,13 +140,13 @@ public class StateMachineValuePaser implements StateMachineValuePaserConstants {
       switch ((jj_ntk==-1)?jj_ntk():jj_ntk) {
       case 20:
         jj_consume_token(20);
-        right = multiDiv(data, value);
-      left = ((BigDecimal) left).add((BigDecimal) right);
+        right = multiDiv();
+      left = StateMachineExpressions.add(left, right);
         break;
       case 15:
         jj_consume_token(15);
-        right = multiDiv(data, value);
-      left = ((BigDecimal) left).subtract((BigDecimal) right);
+        right = multiDiv();
+      left = StateMachineExpressions.subtract(left, right);
         break;
       default:
         jj_la1[5] = jj_gen;
@@ -152,11 +158,11 @@ public class StateMachineValuePaser implements StateMachineValuePaserConstants {
     throw new Error("Missing return statement in function");
   }
 
-/** 比较运算 */
-  final public Object compare(Object data, Object value) throws ParseException {
-  Object left = null;
-  Object right = null;
-    left = plusMinus(data, value);
+/** ???? */
+  final public Node compare() throws ParseException {
+  Node left = null;
+  Node right = null;
+    left = plusMinus();
     label_3:
     while (true) {
       switch ((jj_ntk==-1)?jj_ntk():jj_ntk) {
@@ -175,39 +181,33 @@ public class StateMachineValuePaser implements StateMachineValuePaserConstants {
       switch ((jj_ntk==-1)?jj_ntk():jj_ntk) {
       case 21:
         jj_consume_token(21);
-        right = plusMinus(data, value);
-      if (left instanceof BigDecimal){
-          {if (true) return ((Comparable) left).compareTo(right) != 0;}
-      }
-      {if (true) return !java.util.Objects.equals(left,right);}
+        right = plusMinus();
+      {if (true) return StateMachineExpressions.notEqual(left, right);}
         break;
       case 22:
         jj_consume_token(22);
-        right = plusMinus(data, value);
-      {if (true) return ((Comparable) left).compareTo(right) > 0;}
+        right = plusMinus();
+      {if (true) return StateMachineExpressions.greater(left, right);}
         break;
       case 23:
         jj_consume_token(23);
-        right = plusMinus(data, value);
-      {if (true) return ((Comparable) left).compareTo(right) < 0;}
+        right = plusMinus();
+      {if (true) return StateMachineExpressions.less(left, right);}
         break;
       case 24:
         jj_consume_token(24);
-        right = plusMinus(data, value);
-      if (left instanceof BigDecimal){
-        {if (true) return ((Comparable) left).compareTo(right) == 0;}
-      }
-      {if (true) return java.util.Objects.equals(left,right);}
+        right = plusMinus();
+      {if (true) return StateMachineExpressions.equal(left, right);}
         break;
       case 25:
         jj_consume_token(25);
-        right = plusMinus(data, value);
-      {if (true) return ((Comparable) left).compareTo(right) >= 0;}
+        right = plusMinus();
+      {if (true) return StateMachineExpressions.greaterEqual(left, right);}
         break;
       case 26:
         jj_consume_token(26);
-        right = plusMinus(data, value);
-      {if (true) return ((Comparable) left).compareTo(right) <= 0;}
+        right = plusMinus();
+      {if (true) return StateMachineExpressions.lessEqual(left, right);}
         break;
       default:
         jj_la1[7] = jj_gen;
@@ -220,10 +220,10 @@ public class StateMachineValuePaser implements StateMachineValuePaserConstants {
   }
 
 /** AND */
-  final public Object andExpr(Object data, Object value) throws ParseException {
-  Object left = null;
-  Object right = null;
-    left = compare(data, value);
+  final public Node andExpr() throws ParseException {
+  Node left = null;
+  Node right = null;
+    left = compare();
     label_4:
     while (true) {
       switch ((jj_ntk==-1)?jj_ntk():jj_ntk) {
@@ -235,18 +235,18 @@ public class StateMachineValuePaser implements StateMachineValuePaserConstants {
         break label_4;
       }
       jj_consume_token(27);
-      right = compare(data, value);
-      left = ((Boolean) left) && ((Boolean) right);
+      right = compare();
+      left = StateMachineExpressions.and(left, right);
     }
     {if (true) return left;}
     throw new Error("Missing return statement in function");
   }
 
 /** OR */
-  final public Object orExpr(Object data, Object value) throws ParseException {
-  Object left = null;
-  Object right = null;
-    left = andExpr(data, value);
+  final public Node orExpr() throws ParseException {
+  Node left = null;
+  Node right = null;
+    left = andExpr();
     label_5:
     while (true) {
       switch ((jj_ntk==-1)?jj_ntk():jj_ntk) {
@@ -258,27 +258,26 @@ public class StateMachineValuePaser implements StateMachineValuePaserConstants {
         break label_5;
       }
       jj_consume_token(28);
-      right = andExpr(data, value);
-      left = ((Boolean) left) || ((Boolean) right);
+      right = andExpr();
+      left = StateMachineExpressions.or(left, right);
     }
     {if (true) return left;}
     throw new Error("Missing return statement in function");
   }
 
-/** 表达�? */
-  final public Object express(Object data, Object value) throws ParseException {
-  Token t;
-  Object left = null;
-  Object mid = null;
-  Object right = null;
-    left = orExpr(data, value);
+/** ??? */
+  final public Node express() throws ParseException {
+  Node left = null;
+  Node mid = null;
+  Node right = null;
+    left = orExpr();
     switch ((jj_ntk==-1)?jj_ntk():jj_ntk) {
     case 29:
       jj_consume_token(29);
-      mid = express(data, value);
+      mid = express();
       jj_consume_token(30);
-      right = express(data, value);
-        left = ((Boolean) left) ? mid : right;
+      right = express();
+        left = StateMachineExpressions.conditional(left, mid, right);
       break;
     default:
       jj_la1[10] = jj_gen;
@@ -288,36 +287,12 @@ public class StateMachineValuePaser implements StateMachineValuePaserConstants {
     throw new Error("Missing return statement in function");
   }
 
-/** 属�?�变�? */
-  final public Object variable(Object data, Object value) throws ParseException {
+/** ???? */
+  final public Node variable() throws ParseException {
   Token t;
-  Field field = null;
-  Object obj = null;
+  Node obj = null;
     t = jj_consume_token(IDENTIFIER);
-      try
-      {
-        if ("#".equals(t.toString()))
-        {
-          obj = data;
-        }
-        else if ("$".equals(t.toString()))
-        {
-          obj = value;
-        }
-        else if("null".equals(t.toString()))
-        {
-          obj = null;
-        }
-        else
-        {
-          {if (true) throw new TextGuardException(t.toString());}
-        }
-      }
-      catch (Exception e)
-      {
-        e.printStackTrace();
-        {if (true) throw new TextGuardException(data.getClass().toString());}
-      }
+      obj = StateMachineExpressions.root(t.toString(), dataType, valueType);
     label_6:
     while (true) {
       switch ((jj_ntk==-1)?jj_ntk():jj_ntk) {
@@ -330,33 +305,16 @@ public class StateMachineValuePaser implements StateMachineValuePaserConstants {
       }
       jj_consume_token(31);
       t = jj_consume_token(IDENTIFIER);
-        try
-        {
-          field = obj.getClass().getDeclaredField(t.toString());
-          field.setAccessible(true);
-          if (field.getType().isEnum())
-          {
-            obj = field.get(obj).toString();
-          }
-          else
-          {
-            obj = field.get(obj);
-          }
-        }
-        catch (Exception e)
-        {
-          e.printStackTrace();
-          {if (true) throw new TextGuardException(data.getClass().toString());}
-        }
+        obj = StateMachineExpressions.field(obj, t.toString());
     }
     {if (true) return obj;}
     throw new Error("Missing return statement in function");
   }
 
-/** 语句 */
-  final public Object statement(Object data, Object value) throws ParseException {
-  Object obj = null;
-    obj = express(data, value);
+/** ?? */
+  final public Node statement() throws ParseException {
+  Node obj = null;
+    obj = express();
     jj_consume_token(32);
     {if (true) return obj;}
     throw new Error("Missing return statement in function");
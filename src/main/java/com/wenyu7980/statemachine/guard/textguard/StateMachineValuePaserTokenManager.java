@@ -1,7 +1,6 @@
 /* Generated By:JavaCC: Do not edit this line. StateMachineValuePaserTokenManager.java */
 package com.wenyu7980.statemachine.guard.textguard;
-import java.lang.reflect.Field;
-import java.math.BigDecimal;
+import com.wenyu7980.statemachine.guard.textguard.StateMachineExpressions.Node;
 
 /** Token Manager. */
 public class StateMachineValuePaserTokenManager implements StateMachineValuePaserConstants
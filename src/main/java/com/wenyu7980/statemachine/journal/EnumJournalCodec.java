@@ -0,0 +1,85 @@
+package com.wenyu7980.statemachine.journal;
+
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.wenyu7980.statemachine.StateMachine;
+
+import java.lang.reflect.Array;
+import java.util.function.ToLongFunction;
+
+/**
+ * 枚举编码
+ *
+ * @author wenyu
+ *
+ * @param <T>
+ * @param <S>
+ * @param <E>
+ */
+final class EnumJournalCodec<T, S extends Enum<S>, E extends Enum<E>>
+        implements StateMachineJournalCodec<T, StateMachine.StateSingle<S>, E> {
+    private final ToLongFunction<T> key;
+    /** 按编码的状态，0为null */
+    private final StateMachine.StateSingle<S>[] states;
+    /** 按编码的事件，0为null */
+    private final E[] events;
+
+    @SuppressWarnings("unchecked")
+    EnumJournalCodec(ToLongFunction<T> key, Class<S> states,
+            Class<E> events) {
+        this.key = key;
+        S[] constants = states.getEnumConstants();
+        this.states = new StateMachine.StateSingle[constants.length + 1];
+        this.states[0] = new StateMachine.StateSingle<>(null);
+        for (S constant : constants) {
+            this.states[constant.ordinal() + 1] = new StateMachine.StateSingle<>(
+                    constant);
+        }
+        E[] eventConstants = events.getEnumConstants();
+        this.events = (E[]) Array
+                .newInstance(events, eventConstants.length + 1);
+        System.arraycopy(eventConstants, 0, this.events, 1,
+                eventConstants.length);
+    }
+
+    @Override
+    public long key(T t) {
+        return this.key.applyAsLong(t);
+    }
+
+    @Override
+    public int encodeState(StateMachine.StateSingle<S> state) {
+        return state == null || state.getS() == null ?
+                0 :
+                state.getS().ordinal() + 1;
+    }
+
+    @Override
+    public StateMachine.StateSingle<S> decodeState(int code) {
+        return this.states[code];
+    }
+
+    @Override
+    public int encodeEvent(E event) {
+        return event == null ? 0 : event.ordinal() + 1;
+    }
+
+    @Override
+    public E decodeEvent(int code) {
+        return this.events[code];
+    }
+}
@@ -0,0 +1,481 @@
+package com.wenyu7980.statemachine.journal;
+
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.wenyu7980.statemachine.listener.AbstractStateMachineActionListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 状态迁移日志
+ * 作为动作监听（{@code addAction}）添加到状态机，记录每次成功的状态迁移，
+ * 追加写入内存映射的分段文件，写入单条记录不分配内存，分段写满后滚动到新文件。
+ * =============================================================================
+ * 分段文件：目录下以首条记录序号命名（20位数字 + {@value #SUFFIX}），
+ * 创建时按分段大小预分配，未写入部分为0
+ * 记录（定长{@value #RECORD_SIZE}字节，分段大小为其整数倍，记录不跨页）：
+ * sequence(8) timestamp(8) key(8) from(4) event(4) to(4) checksum(4) reserved(24)
+ * 序号从1开始连续递增，最后写入；checksum为其他字段的校验。
+ * 读取时序号为0、序号不连续或校验不符表示分段结束
+ * =============================================================================
+ * 崩溃保证：已刷盘（序号不大于{@link #getSynced()}）的记录完整可读；
+ * 未刷盘的记录可能丢失，写入一半的记录在重新打开和读取时按分段结束处理，
+ * 之后的记录一并丢弃并被后续写入覆盖。
+ * 重新打开目录时从最后一个分段的最后一条完整记录之后继续写入。
+ * 刷盘按{@link StateMachineJournalSync}，每个状态机的日志可使用不同策略，
+ * 需要刷盘时由一个调用方执行force，期间其他调用方写入的记录由下一次force合并刷盘
+ *
+ * @author wenyu
+ *
+ * @param <T>
+ * @param <S>
+ * @param <E>
+ * @param <C>
+ */
+public class StateMachineJournal<T, S, E, C>
+        implements AbstractStateMachineActionListener<T, S, E, C>, Closeable {
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(StateMachineJournal.class);
+    /** 记录长度 */
+    public static final int RECORD_SIZE = 64;
+    /** 默认分段大小 64M */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    /** 分段文件后缀 */
+    public static final String SUFFIX = ".journal";
+    static final int TIMESTAMP = 8;
+    static final int KEY = 16;
+    static final int FROM = 24;
+    static final int EVENT = 28;
+    static final int TO = 32;
+    static final int CHECKSUM = 36;
+
+    /** 目录 */
+    private final Path directory;
+    /** 编码 */
+    private final StateMachineJournalCodec<T, S, E> codec;
+    /** 分段大小，记录长度的整数倍 */
+    private final int segmentSize;
+    /** 刷盘策略 */
+    private final StateMachineJournalSync sync;
+    /** 刷盘锁 */
+    private final Object commit = new Object();
+    /** 已刷盘的序号 */
+    private volatile long synced;
+    /** 是否有调用方正在刷盘，由commit保护 */
+    private boolean syncing;
+    /** 刷盘次数 */
+    private final LongAdder forces = new LongAdder();
+    /** 定时刷盘 */
+    private final ScheduledExecutorService scheduler;
+    /** 当前分段 */
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    /** 当前分段写入位置 */
+    private int position;
+    /** 最后写入的序号 */
+    private long sequence;
+    private boolean closed;
+
+    public StateMachineJournal(Path directory,
+            StateMachineJournalCodec<T, S, E> codec) throws IOException {
+        this(directory, codec, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public StateMachineJournal(Path directory,
+            StateMachineJournalCodec<T, S, E> codec, int segmentSize)
+            throws IOException {
+        this(directory, codec, segmentSize, StateMachineJournalSync.none());
+    }
+
+    /**
+     * 构造函数
+     * @param directory 目录
+     * @param codec 编码
+     * @param segmentSize 分段大小（字节），向下取整为记录长度的整数倍
+     * @param sync 刷盘策略
+     * @throws IOException
+     */
+    public StateMachineJournal(Path directory,
+            StateMachineJournalCodec<T, S, E> codec, int segmentSize,
+            StateMachineJournalSync sync) throws IOException {
+        if (segmentSize < RECORD_SIZE) {
+            throw new IllegalArgumentException("segmentSize:" + segmentSize);
+        }
+        assert codec != null;
+        this.directory = directory;
+        this.codec = codec;
+        this.segmentSize = segmentSize - segmentSize % RECORD_SIZE;
+        this.sync = sync;
+        Files.createDirectories(directory);
+        this.recover();
+        this.synced = this.sequence;
+        if (sync.getMode() == StateMachineJournalSync.Mode.INTERVAL) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor((r) -> {
+                Thread thread = new Thread(r,
+                        "statemachine-journal-sync-" + directory.getFileName());
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.scheduler.scheduleWithFixedDelay(this::flush, sync.getValue(),
+                    sync.getValue(), TimeUnit.MILLISECONDS);
+        } else {
+            this.scheduler = null;
+        }
+    }
+
+    /**
+     * 从最后一个分段的结尾继续
+     * @throws IOException
+     */
+    private void recover() throws IOException {
+        List<Path> segments = segments(this.directory);
+        if (segments.isEmpty()) {
+            return;
+        }
+        Path last = segments.get(segments.size() - 1);
+        this.channel = FileChannel.open(last, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.buffer = this.channel
+                .map(FileChannel.MapMode.READ_WRITE, 0, this.channel.size());
+        this.sequence = firstSequence(last) - 1;
+        while (this.position + RECORD_SIZE <= this.buffer.capacity()) {
+            long sequence = sequence(this.buffer, this.position);
+            if (sequence != this.sequence + 1) {
+                break;
+            }
+            this.sequence = sequence;
+            this.position += RECORD_SIZE;
+        }
+        // 清除不完整记录及其之后的记录，避免覆盖写入后重新被读取
+        for (int position = this.position; position + RECORD_SIZE <= this.buffer
+                .capacity() && this.buffer.getLong(position) != 0;
+             position += RECORD_SIZE) {
+            for (int i = 0; i < RECORD_SIZE; i += 8) {
+                this.buffer.putLong(position + i, 0);
+            }
+        }
+    }
+
+    @Override
+    public void listener(T t, S from, E e, S to, C c) {
+        this.append(this.codec.key(t), this.codec.encodeState(from),
+                this.codec.encodeEvent(e), this.codec.encodeState(to));
+    }
+
+    /**
+     * 追加记录，按刷盘策略刷盘
+     * @param key 数据key
+     * @param from 源状态编码
+     * @param event 事件编码
+     * @param to 目标状态编码
+     * @return 序号
+     */
+    public long append(long key, int from, int event, int to) {
+        final long sequence = this.write(key, from, event, to);
+        switch (this.sync.getMode()) {
+        case ALWAYS:
+            this.sync(sequence);
+            break;
+        case EVERY_N:
+            if (sequence % this.sync.getValue() == 0) {
+                this.sync(sequence);
+            }
+            break;
+        default:
+            break;
+        }
+        return sequence;
+    }
+
+    /**
+     * 写入记录
+     * @return 序号
+     */
+    private synchronized long write(long key, int from, int event, int to) {
+        if (this.closed) {
+            throw new IllegalStateException("journal closed:" + this.directory);
+        }
+        if (this.buffer == null
+                || this.position + RECORD_SIZE > this.buffer.capacity()) {
+            this.roll();
+        }
+        final MappedByteBuffer buffer = this.buffer;
+        final int position = this.position;
+        final long sequence = this.sequence + 1;
+        final long timestamp = System.currentTimeMillis();
+        buffer.putLong(position + TIMESTAMP, timestamp);
+        buffer.putLong(position + KEY, key);
+        buffer.putInt(position + FROM, from);
+        buffer.putInt(position + EVENT, event);
+        buffer.putInt(position + TO, to);
+        buffer.putInt(position + CHECKSUM,
+                checksum(sequence, timestamp, key, from, event, to));
+        // 序号最后写入，作为记录完整的标记
+        buffer.putLong(position, sequence);
+        this.position = position + RECORD_SIZE;
+        this.sequence = sequence;
+        return sequence;
+    }
+
+    /**
+     * 滚动到新分段
+     */
+    private void roll() {
+        try {
+            if (this.channel != null) {
+                if (this.sync.getMode() != StateMachineJournalSync.Mode.NONE) {
+                    // 旧分段写满后刷盘
+                    this.buffer.force();
+                    this.forces.increment();
+                    this.synced(this.sequence);
+                }
+                this.channel.close();
+            }
+            Path path = this.directory.resolve(segmentName(this.sequence + 1));
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.buffer = this.channel
+                    .map(FileChannel.MapMode.READ_WRITE, 0, this.segmentSize);
+            this.position = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 最后写入的序号
+     * @return
+     */
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public StateMachineJournalCodec<T, S, E> getCodec() {
+        return codec;
+    }
+
+    /**
+     * 已刷盘的序号
+     * @return
+     */
+    public long getSynced() {
+        return synced;
+    }
+
+    /**
+     * 刷盘次数
+     * @return
+     */
+    public long getForces() {
+        return forces.sum();
+    }
+
+    /**
+     * 已写入的记录刷到磁盘
+     */
+    public void flush() {
+        try {
+            this.sync(this.getSequence());
+        } catch (RuntimeException e) {
+            LOGGER.warn("日志刷盘失败:{}", this.directory, e);
+        }
+    }
+
+    /**
+     * 刷盘直到sequence（含）的记录已落盘
+     * 没有其他调用方刷盘时由当前调用方执行force，否则等待其完成，
+     * 完成后仍未覆盖sequence时由当前调用方再次执行
+     * @param sequence
+     */
+    public void sync(long sequence) {
+        boolean interrupted = false;
+        try {
+            for (; ; ) {
+                synchronized (this.commit) {
+                    while (this.synced < sequence && this.syncing) {
+                        try {
+                            this.commit.wait();
+                        } catch (InterruptedException e) {
+                            interrupted = true;
+                        }
+                    }
+                    if (this.synced >= sequence) {
+                        return;
+                    }
+                    this.syncing = true;
+                }
+                long target;
+                MappedByteBuffer buffer;
+                synchronized (this) {
+                    target = this.sequence;
+                    buffer = this.buffer;
+                }
+                boolean forced = false;
+                try {
+                    if (buffer != null) {
+                        buffer.force();
+                        this.forces.increment();
+                    }
+                    forced = true;
+                } finally {
+                    synchronized (this.commit) {
+                        if (forced && target > this.synced) {
+                            this.synced = target;
+                        }
+                        this.syncing = false;
+                        this.commit.notifyAll();
+                    }
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 更新已刷盘的序号
+     * @param sequence
+     */
+    private void synced(long sequence) {
+        synchronized (this.commit) {
+            if (sequence > this.synced) {
+                this.synced = sequence;
+            }
+            this.commit.notifyAll();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.scheduler != null) {
+            this.scheduler.shutdownNow();
+        }
+        this.doClose();
+    }
+
+    private synchronized void doClose() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        if (this.buffer != null) {
+            this.buffer.force();
+            this.forces.increment();
+            this.buffer = null;
+        }
+        this.synced(this.sequence);
+        if (this.channel != null) {
+            this.channel.close();
+            this.channel = null;
+        }
+    }
+
+    /**
+     * 读取position处记录的序号
+     * @param buffer
+     * @param position
+     * @return 序号，没有记录或记录不完整时为0
+     */
+    static long sequence(ByteBuffer buffer, int position) {
+        long sequence = buffer.getLong(position);
+        if (sequence == 0 || buffer.getInt(position + CHECKSUM) != checksum(
+                sequence, buffer.getLong(position + TIMESTAMP),
+                buffer.getLong(position + KEY), buffer.getInt(position + FROM),
+                buffer.getInt(position + EVENT), buffer.getInt(position + TO))) {
+            return 0;
+        }
+        return sequence;
+    }
+
+    /**
+     * 记录校验
+     */
+    static int checksum(long sequence, long timestamp, long key, int from,
+            int event, int to) {
+        long h = mix(sequence);
+        h = mix(h ^ timestamp);
+        h = mix(h ^ key);
+        h = mix(h ^ ((long) from << 32 | (event & 0xFFFFFFFFL)));
+        h = mix(h ^ to);
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static long mix(long h) {
+        h *= 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    /**
+     * 目录下的分段，按序号排列
+     * @param directory
+     * @return
+     * @throws IOException
+     */
+    static List<Path> segments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> stream = Files
+                .newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path path : stream) {
+                segments.add(path);
+            }
+        }
+        // 文件名为定长数字，按名称排序即按序号排序
+        Collections.sort(segments);
+        return segments;
+    }
+
+    /**
+     * 分段首条记录序号
+     * @param segment
+     * @return
+     */
+    static long firstSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    static String segmentName(long firstSequence) {
+        return String.format("%020d", firstSequence) + SUFFIX;
+    }
+}
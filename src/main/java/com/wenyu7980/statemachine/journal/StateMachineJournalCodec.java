@@ -0,0 +1,84 @@
+package com.wenyu7980.statemachine.journal;
+
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.wenyu7980.statemachine.StateMachine;
+
+import java.util.function.ToLongFunction;
+
+/**
+ * 日志编码
+ * 数据编码为long型key，状态、事件编码为int，编码需稳定（重启后不变）且可解码
+ *
+ * @author wenyu
+ *
+ * @param <T>
+ * @param <S>
+ * @param <E>
+ */
+public interface StateMachineJournalCodec<T, S, E> {
+    /**
+     * 数据key
+     * @param t
+     * @return
+     */
+    long key(T t);
+
+    /**
+     * 状态编码
+     * @param state
+     * @return
+     */
+    int encodeState(S state);
+
+    /**
+     * 状态解码
+     * @param code
+     * @return
+     */
+    S decodeState(int code);
+
+    /**
+     * 事件编码
+     * @param event
+     * @return
+     */
+    int encodeEvent(E event);
+
+    /**
+     * 事件解码
+     * @param code
+     * @return
+     */
+    E decodeEvent(int code);
+
+    /**
+     * 枚举状态、枚举事件的一维状态机编码
+     * 编码为ordinal+1，null编码为0，枚举常量只能追加不能调整顺序
+     * @param key 数据key
+     * @param states 状态类型
+     * @param events 事件类型
+     * @param <T>
+     * @param <S>
+     * @param <E>
+     * @return
+     */
+    static <T, S extends Enum<S>, E extends Enum<E>> StateMachineJournalCodec<T, StateMachine.StateSingle<S>, E> ofEnum(
+            ToLongFunction<T> key, Class<S> states, Class<E> events) {
+        return new EnumJournalCodec<>(key, states, events);
+    }
+}
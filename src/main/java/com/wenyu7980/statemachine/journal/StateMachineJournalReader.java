@@ -0,0 +1,131 @@
+package com.wenyu7980.statemachine.journal;
+
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static com.wenyu7980.statemachine.journal.StateMachineJournal.*;
+
+/**
+ * 状态迁移日志读取
+ * 按序号顺序读取目录下所有分段的记录，
+ * 遇到不完整的记录（崩溃时未写完）时该分段之后的记录不再读取
+ *
+ * @author wenyu
+ *
+ * @param <S>
+ * @param <E>
+ */
+public class StateMachineJournalReader<S, E> {
+    /** 目录 */
+    private final Path directory;
+    /** 编码 */
+    private final StateMachineJournalCodec<?, S, E> codec;
+
+    public StateMachineJournalReader(Path directory,
+            StateMachineJournalCodec<?, S, E> codec) {
+        this.directory = directory;
+        this.codec = codec;
+    }
+
+    /**
+     * 读取全部记录
+     * @param visitor
+     * @return 最后一条记录的序号，没有记录时为0
+     * @throws IOException
+     */
+    public long read(StateMachineJournalVisitor<S, E> visitor)
+            throws IOException {
+        return this.read(0, visitor);
+    }
+
+    /**
+     * 读取序号大于after的记录
+     * @param after
+     * @param visitor
+     * @return 最后一条记录的序号，没有记录时为after
+     * @throws IOException
+     */
+    public long read(long after, StateMachineJournalVisitor<S, E> visitor)
+            throws IOException {
+        return scan(this.directory, after,
+                (sequence, timestamp, key, from, event, to) -> visitor
+                        .visit(sequence, timestamp, key,
+                                this.codec.decodeState(from),
+                                this.codec.decodeEvent(event),
+                                this.codec.decodeState(to)));
+    }
+
+    /**
+     * 按序号顺序读取序号大于after的记录（不解码）
+     * @param directory
+     * @param after
+     * @param visitor
+     * @return 最后一条记录的序号，没有记录时为after
+     * @throws IOException
+     */
+    static long scan(Path directory, long after, RecordVisitor visitor)
+            throws IOException {
+        long last = after;
+        List<Path> segments = segments(directory);
+        for (int i = 0, size = segments.size(); i < size; i++) {
+            // 下一分段之前的记录均不大于after时跳过
+            if (i + 1 < size && firstSequence(segments.get(i + 1)) <= after + 1) {
+                continue;
+            }
+            Path segment = segments.get(i);
+            try (FileChannel channel = FileChannel
+                    .open(segment, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel
+                        .map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                long expected = firstSequence(segment);
+                for (int position = 0; position + RECORD_SIZE <= buffer
+                        .capacity(); position += RECORD_SIZE, expected++) {
+                    long sequence = sequence(buffer, position);
+                    if (sequence != expected) {
+                        break;
+                    }
+                    if (sequence <= after) {
+                        continue;
+                    }
+                    visitor.visit(sequence,
+                            buffer.getLong(position + TIMESTAMP),
+                            buffer.getLong(position + KEY),
+                            buffer.getInt(position + FROM),
+                            buffer.getInt(position + EVENT),
+                            buffer.getInt(position + TO));
+                    last = sequence;
+                }
+            }
+        }
+        return last;
+    }
+
+    /**
+     * 记录访问（编码）
+     */
+    @FunctionalInterface
+    interface RecordVisitor {
+        void visit(long sequence, long timestamp, long key, int from,
+                int event, int to);
+    }
+}
@@ -0,0 +1,97 @@
+package com.wenyu7980.statemachine.journal;
+
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * 日志刷盘策略
+ * NONE：不主动刷盘，由操作系统回写
+ * EVERY_N：每写入N条记录刷盘一次
+ * INTERVAL：后台线程每隔T毫秒刷盘一次
+ * ALWAYS：每条记录刷盘后返回，并发写入的记录合并为一次刷盘（group commit）
+ *
+ * @author wenyu
+ */
+public final class StateMachineJournalSync {
+    /** 不刷盘 */
+    private static final StateMachineJournalSync NONE = new StateMachineJournalSync(
+            Mode.NONE, 0);
+    /** 每条记录刷盘 */
+    private static final StateMachineJournalSync ALWAYS = new StateMachineJournalSync(
+            Mode.ALWAYS, 0);
+    /** 模式 */
+    private final Mode mode;
+    /** EVERY_N的记录数、INTERVAL的毫秒数 */
+    private final long value;
+
+    private StateMachineJournalSync(Mode mode, long value) {
+        this.mode = mode;
+        this.value = value;
+    }
+
+    public static StateMachineJournalSync none() {
+        return NONE;
+    }
+
+    public static StateMachineJournalSync always() {
+        return ALWAYS;
+    }
+
+    /**
+     * 每写入records条记录刷盘一次
+     * @param records
+     * @return
+     */
+    public static StateMachineJournalSync everyRecords(int records) {
+        if (records < 1) {
+            throw new IllegalArgumentException("records:" + records);
+        }
+        return new StateMachineJournalSync(Mode.EVERY_N, records);
+    }
+
+    /**
+     * 每隔millis毫秒刷盘一次
+     * @param millis
+     * @return
+     */
+    public static StateMachineJournalSync interval(long millis) {
+        if (millis < 1) {
+            throw new IllegalArgumentException("millis:" + millis);
+        }
+        return new StateMachineJournalSync(Mode.INTERVAL, millis);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * EVERY_N的记录数、INTERVAL的毫秒数
+     * @return
+     */
+    public long getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "{" + "mode=" + mode + ", value=" + value + '}';
+    }
+
+    public enum Mode {
+        NONE, EVERY_N, INTERVAL, ALWAYS
+    }
+}
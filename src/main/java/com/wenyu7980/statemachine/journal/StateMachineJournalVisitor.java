@@ -0,0 +1,40 @@
+package com.wenyu7980.statemachine.journal;
+
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * 日志记录访问
+ *
+ * @author wenyu
+ *
+ * @param <S>
+ * @param <E>
+ */
+@FunctionalInterface
+public interface StateMachineJournalVisitor<S, E> {
+    /**
+     * 访问一条记录
+     * @param sequence 序号
+     * @param timestamp 时间戳（毫秒）
+     * @param key 数据key
+     * @param from 源状态
+     * @param event 事件
+     * @param to 目标状态
+     */
+    void visit(long sequence, long timestamp, long key, S from, E event,
+            S to);
+}
@@ -0,0 +1,472 @@
+package com.wenyu7980.statemachine.journal;
+
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 状态恢复
+ * 启动时加载最近的快照，再重放快照之后的日志，重建数据状态登记表。
+ * 重放只读取一遍日志，按数据key分区分批交给各分区并行应用，
+ * 只更新登记表，不调用状态机的守卫与监听，
+ * 启动时间取决于快照大小与快照之后的日志量，与全部历史长度无关
+ * =============================================================================
+ * 快照文件：目录下以已应用的日志序号命名（20位数字 + {@value #SUFFIX}），
+ * 先写入临时文件再原子重命名
+ * 格式：magic(4) sequence(8) count(8) [key(8) state(4)]*count
+ * =============================================================================
+ *
+ * @author wenyu
+ */
+public class StateMachineRecovery {
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(StateMachineRecovery.class);
+    /** 快照文件后缀 */
+    public static final String SUFFIX = ".snapshot";
+    /** 快照文件标识 */
+    private static final int MAGIC = 0x534D5331;
+    private static final int HEADER_SIZE = 20;
+    private static final int ENTRY_SIZE = 12;
+    /** 保留的快照数 */
+    private static final int RETAINED = 2;
+    /** 重放时每批记录数 */
+    private static final int BATCH_SIZE = 1024;
+    /** 重放时每个分区最多的批数（排队与应用中），超过时读取等待 */
+    private static final int QUEUE_DEPTH = 4;
+    /** 日志目录 */
+    private final Path journal;
+    /** 快照目录 */
+    private final Path snapshots;
+    /** 并行度（登记表分区数） */
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    /** 执行器 */
+    private Executor executor = ForkJoinPool.commonPool();
+
+    public StateMachineRecovery(Path journal, Path snapshots) {
+        this.journal = journal;
+        this.snapshots = snapshots;
+    }
+
+    /**
+     * 并行度，默认CPU核数
+     * @param parallelism
+     * @return
+     */
+    public StateMachineRecovery parallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism:" + parallelism);
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * 重放执行器，默认{@link ForkJoinPool#commonPool()}
+     * @param executor
+     * @return
+     */
+    public StateMachineRecovery executor(Executor executor) {
+        assert executor != null;
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * 恢复：加载最近的快照并重放之后的日志
+     * @return
+     * @throws IOException
+     */
+    public StateMachineRegistry recover() throws IOException {
+        StateMachineRegistry registry = this.load();
+        this.replay(registry);
+        return registry;
+    }
+
+    /**
+     * 加载最近的快照，没有快照时返回空登记表
+     * @return
+     * @throws IOException
+     */
+    public StateMachineRegistry load() throws IOException {
+        StateMachineRegistry registry = new StateMachineRegistry(
+                this.parallelism);
+        List<Path> snapshots = this.snapshots();
+        if (snapshots.isEmpty()) {
+            return registry;
+        }
+        Path snapshot = snapshots.get(snapshots.size() - 1);
+        try (FileChannel channel = FileChannel
+                .open(snapshot, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel
+                    .map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("not a snapshot:" + snapshot);
+            }
+            long sequence = buffer.getLong(4);
+            long count = buffer.getLong(12);
+            if (HEADER_SIZE + count * ENTRY_SIZE != buffer.capacity()) {
+                throw new IOException("corrupted snapshot:" + snapshot);
+            }
+            for (int position = HEADER_SIZE; position < buffer
+                    .capacity(); position += ENTRY_SIZE) {
+                registry.put(buffer.getLong(position),
+                        buffer.getInt(position + 8));
+            }
+            registry.setSequence(sequence);
+        }
+        LOGGER.debug("加载快照:{}", snapshot);
+        return registry;
+    }
+
+    /**
+     * 重放登记表序号之后的日志
+     * 调用线程按序号顺序读取一遍日志，记录按分区分批，
+     * 每个分区的批按顺序在执行器中依次应用，
+     * 同一数据的记录总是在同一分区中按序应用
+     * @param registry
+     * @throws IOException
+     */
+    public void replay(StateMachineRegistry registry) throws IOException {
+        final long after = registry.getSequence();
+        final int partitions = registry.partitions();
+        final Lane[] lanes = new Lane[partitions];
+        for (int i = 0; i < partitions; i++) {
+            lanes[i] = new Lane(registry, this.executor);
+        }
+        final Batch[] batches = new Batch[partitions];
+        long sequence;
+        try {
+            sequence = StateMachineJournalReader.scan(this.journal, after,
+                    (number, timestamp, key, from, event, to) -> {
+                        int partition = registry.partition(key);
+                        Batch batch = batches[partition];
+                        if (batch == null) {
+                            batch = lanes[partition].acquire();
+                            batches[partition] = batch;
+                        }
+                        if (batch.add(key, to)) {
+                            lanes[partition].submit(batch);
+                            batches[partition] = null;
+                        }
+                    });
+        } finally {
+            for (int i = 0; i < partitions; i++) {
+                if (batches[i] != null) {
+                    lanes[i].submit(batches[i]);
+                }
+            }
+            for (Lane lane : lanes) {
+                lane.await();
+            }
+        }
+        for (Lane lane : lanes) {
+            lane.rethrow();
+        }
+        registry.setSequence(sequence);
+        LOGGER.debug("重放日志:{}-{}", after, sequence);
+    }
+
+    /**
+     * 写入快照，保留最近{@value #RETAINED}个
+     * @param registry
+     * @return 快照文件
+     * @throws IOException
+     */
+    public Path snapshot(StateMachineRegistry registry) throws IOException {
+        Files.createDirectories(this.snapshots);
+        final long sequence = registry.getSequence();
+        Path target = this.snapshots
+                .resolve(String.format("%020d", sequence) + SUFFIX);
+        Path temp = this.snapshots.resolve(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel
+                .open(temp, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            buffer.putInt(MAGIC).putLong(sequence).putLong(0);
+            long[] count = new long[1];
+            registry.forEach((key, state) -> {
+                if (buffer.remaining() < ENTRY_SIZE) {
+                    write(channel, buffer);
+                }
+                buffer.putLong(key).putInt(state);
+                count[0]++;
+            });
+            write(channel, buffer);
+            buffer.putLong(count[0]);
+            // 按Buffer调用，JDK 9+编译后仍可在Java 8运行
+            ((Buffer) buffer).flip();
+            channel.write(buffer, 12);
+            channel.force(true);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        List<Path> snapshots = this.snapshots();
+        for (int i = 0; i < snapshots.size() - RETAINED; i++) {
+            Files.deleteIfExists(snapshots.get(i));
+        }
+        LOGGER.debug("写入快照:{}", target);
+        return target;
+    }
+
+    /**
+     * 定时快照
+     * 首次执行时恢复登记表，之后每次重放新增的日志并写入快照
+     * @param scheduler
+     * @param period
+     * @param unit
+     * @return
+     */
+    public ScheduledFuture<?> schedule(ScheduledExecutorService scheduler,
+            long period, TimeUnit unit) {
+        StateMachineRegistry[] registry = new StateMachineRegistry[1];
+        return scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                if (registry[0] == null) {
+                    registry[0] = this.load();
+                }
+                long sequence = registry[0].getSequence();
+                this.replay(registry[0]);
+                if (registry[0].getSequence() > sequence) {
+                    this.snapshot(registry[0]);
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("快照失败:{}", this.snapshots, e);
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * 快照文件，按序号排列
+     * @return
+     * @throws IOException
+     */
+    private List<Path> snapshots() throws IOException {
+        List<Path> snapshots = new ArrayList<>();
+        if (!Files.isDirectory(this.snapshots)) {
+            return snapshots;
+        }
+        try (DirectoryStream<Path> stream = Files
+                .newDirectoryStream(this.snapshots, "*" + SUFFIX)) {
+            for (Path path : stream) {
+                snapshots.add(path);
+            }
+        }
+        Collections.sort(snapshots);
+        return snapshots;
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) {
+        ((Buffer) buffer).flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        ((Buffer) buffer).clear();
+    }
+
+    /**
+     * 重放的一批记录
+     */
+    private static final class Batch {
+        private final long[] keys = new long[BATCH_SIZE];
+        private final int[] states = new int[BATCH_SIZE];
+        private int size;
+
+        /**
+         * @return 是否已满
+         */
+        private boolean add(long key, int state) {
+            this.keys[this.size] = key;
+            this.states[this.size] = state;
+            return ++this.size == BATCH_SIZE;
+        }
+
+        private void apply(StateMachineRegistry registry) {
+            for (int i = 0; i < this.size; i++) {
+                registry.put(this.keys[i], this.states[i]);
+            }
+        }
+    }
+
+    /**
+     * 重放分区
+     * 批按提交顺序依次应用，最多{@value #QUEUE_DEPTH}批，批用完后复用
+     */
+    private static final class Lane {
+        private final StateMachineRegistry registry;
+        private final Executor executor;
+        /** 待应用的批 */
+        private final Queue<Batch> queue = new ArrayDeque<>();
+        /** 已应用可复用的批 */
+        private final Queue<Batch> free = new ArrayDeque<>();
+        /** 已创建的批数 */
+        private int batches;
+        /** 是否已在执行器中 */
+        private boolean running;
+        /** 应用失败的异常，之后的批不再应用 */
+        private Throwable failure;
+
+        private Lane(StateMachineRegistry registry, Executor executor) {
+            this.registry = registry;
+            this.executor = executor;
+        }
+
+        /**
+         * 获取空批，批数达到上限时等待
+         * @return
+         */
+        private synchronized Batch acquire() {
+            boolean interrupted = false;
+            try {
+                while (this.free.isEmpty() && this.batches >= QUEUE_DEPTH) {
+                    try {
+                        this.wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            Batch batch = this.free.poll();
+            if (batch == null) {
+                batch = new Batch();
+                this.batches++;
+            }
+            return batch;
+        }
+
+        private synchronized void submit(Batch batch) {
+            this.queue.add(batch);
+            if (!this.running) {
+                this.running = true;
+                try {
+                    this.executor.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    this.failure = e;
+                    this.running = false;
+                    this.recycle();
+                }
+            }
+        }
+
+        private void drain() {
+            for (; ; ) {
+                Batch batch;
+                boolean failed;
+                synchronized (this) {
+                    batch = this.queue.poll();
+                    if (batch == null) {
+                        this.running = false;
+                        this.notifyAll();
+                        return;
+                    }
+                    failed = this.failure != null;
+                }
+                Throwable failure = null;
+                if (!failed) {
+                    try {
+                        batch.apply(this.registry);
+                    } catch (Throwable e) {
+                        failure = e;
+                    }
+                }
+                synchronized (this) {
+                    if (failure != null) {
+                        this.failure = failure;
+                    }
+                    batch.size = 0;
+                    this.free.add(batch);
+                    this.notifyAll();
+                }
+            }
+        }
+
+        /**
+         * 放弃待应用的批，需持有锁
+         */
+        private void recycle() {
+            Batch batch;
+            while ((batch = this.queue.poll()) != null) {
+                batch.size = 0;
+                this.free.add(batch);
+            }
+            this.notifyAll();
+        }
+
+        /**
+         * 等待已提交的批应用完成
+         */
+        private synchronized void await() {
+            boolean interrupted = false;
+            try {
+                while (this.running) {
+                    try {
+                        this.wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        private synchronized void rethrow() {
+            if (this.failure instanceof RuntimeException) {
+                throw (RuntimeException) this.failure;
+            }
+            if (this.failure instanceof Error) {
+                throw (Error) this.failure;
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.wenyu7980.statemachine.journal;
+
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * 数据状态登记表
+ * 数据key到状态编码的映射，按key分区，每个分区为开放寻址的基本类型哈希表，
+ * 百万级数据只占用数十M内存。
+ * 记录已应用的日志序号，快照、重放均从该序号继续
+ *
+ * @author wenyu
+ */
+public final class StateMachineRegistry {
+    /** 分区 */
+    private final Partition[] partitions;
+    /** 已应用的日志序号 */
+    private volatile long sequence;
+
+    /**
+     * 构造函数
+     * @param partitions 分区数，并行重放时每个分区由一个线程写入
+     */
+    public StateMachineRegistry(int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("partitions:" + partitions);
+        }
+        this.partitions = new Partition[partitions];
+        for (int i = 0; i < partitions; i++) {
+            this.partitions[i] = new Partition();
+        }
+    }
+
+    /**
+     * 分区数
+     * @return
+     */
+    public int partitions() {
+        return this.partitions.length;
+    }
+
+    /**
+     * key所在分区
+     * @param key
+     * @return [0, partitions)
+     */
+    public int partition(long key) {
+        // 分区使用高32位，分区内寻址使用低位
+        return (int) ((mix(key) >>> 33) % this.partitions.length);
+    }
+
+    /**
+     * 状态编码
+     * @param key 数据key
+     * @param defaultState 没有登记时返回
+     * @return
+     */
+    public int get(long key, int defaultState) {
+        return this.partitions[this.partition(key)].get(key, defaultState);
+    }
+
+    /**
+     * 登记状态编码
+     * @param key 数据key
+     * @param state 状态编码
+     */
+    public void put(long key, int state) {
+        this.partitions[this.partition(key)].put(key, state);
+    }
+
+    /**
+     * 数据数量
+     * @return
+     */
+    public long size() {
+        long size = 0;
+        for (Partition partition : this.partitions) {
+            size += partition.size();
+        }
+        return size;
+    }
+
+    /**
+     * 遍历
+     * @param visitor
+     */
+    public void forEach(EntryVisitor visitor) {
+        for (Partition partition : this.partitions) {
+            partition.forEach(visitor);
+        }
+    }
+
+    /**
+     * 已应用的日志序号
+     * @return
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    private static long mix(long key) {
+        key = (key ^ (key >>> 33)) * 0xff51afd7ed558ccdL;
+        key = (key ^ (key >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return key ^ (key >>> 33);
+    }
+
+    /**
+     * 登记项访问
+     */
+    @FunctionalInterface
+    public interface EntryVisitor {
+        void visit(long key, int state);
+    }
+
+    /**
+     * 分区（开放寻址，线性探测）
+     */
+    private static final class Partition {
+        private static final int INITIAL_CAPACITY = 16;
+        private long[] keys = new long[INITIAL_CAPACITY];
+        private int[] states = new int[INITIAL_CAPACITY];
+        private boolean[] used = new boolean[INITIAL_CAPACITY];
+        private int size;
+
+        private synchronized int get(long key, int defaultState) {
+            int mask = this.keys.length - 1;
+            for (int i = (int) mix(key) & mask; this.used[i]; i = (i + 1)
+                    & mask) {
+                if (this.keys[i] == key) {
+                    return this.states[i];
+                }
+            }
+            return defaultState;
+        }
+
+        private synchronized void put(long key, int state) {
+            int mask = this.keys.length - 1;
+            int i = (int) mix(key) & mask;
+            for (; this.used[i]; i = (i + 1) & mask) {
+                if (this.keys[i] == key) {
+                    this.states[i] = state;
+                    return;
+                }
+            }
+            this.keys[i] = key;
+            this.states[i] = state;
+            this.used[i] = true;
+            // 负载因子0.75
+            if (++this.size * 4 > this.keys.length * 3) {
+                this.resize();
+            }
+        }
+
+        private void resize() {
+            long[] keys = this.keys;
+            int[] states = this.states;
+            boolean[] used = this.used;
+            int capacity = keys.length << 1;
+            int mask = capacity - 1;
+            this.keys = new long[capacity];
+            this.states = new int[capacity];
+            this.used = new boolean[capacity];
+            for (int j = 0; j < keys.length; j++) {
+                if (used[j]) {
+                    int i = (int) mix(keys[j]) & mask;
+                    while (this.used[i]) {
+                        i = (i + 1) & mask;
+                    }
+                    this.keys[i] = keys[j];
+                    this.states[i] = states[j];
+                    this.used[i] = true;
+                }
+            }
+        }
+
+        private synchronized int size() {
+            return this.size;
+        }
+
+        private synchronized void forEach(EntryVisitor visitor) {
+            for (int i = 0; i < this.keys.length; i++) {
+                if (this.used[i]) {
+                    visitor.visit(this.keys[i], this.states[i]);
+                }
+            }
+        }
+    }
+}
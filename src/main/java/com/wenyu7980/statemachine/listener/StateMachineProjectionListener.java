@@ -0,0 +1,27 @@
+package com.wenyu7980.statemachine.listener;
+
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * 投影监听（标记接口）
+ * 与其他监听接口一起实现，重放（replay）时只调用实现了该接口的监听。
+ * 重放时数据的状态在批次结束后才设置，投影监听应使用参数中的源状态、目标状态
+ *
+ * @author wenyu
+ */
+public interface StateMachineProjectionListener {
+}
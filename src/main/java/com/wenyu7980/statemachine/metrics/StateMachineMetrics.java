@@ -0,0 +1,256 @@
+package com.wenyu7980.statemachine.metrics;
+
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 状态机统计
+ * 按(源状态, 事件, 目标状态)统计调用次数与耗时直方图，按(源状态, 事件)统计被拒绝次数
+ * （异常处理{@code supplier}的调用）。
+ * 统计项在开启统计后首次调用时解析并缓存在分发计划中，之后调用时只累加计数器，
+ * 迁移、被拒绝的统计项各最多{@value #MAX_ENTRIES}个，超过后合并计入{@link #OVERFLOW}。
+ * 默认关闭，关闭时每次调用只读取一次开关，不创建统计项。
+ * 分阶段计时单独开关，开启后按阶段、按阶段内的监听类型统计调用次数与耗时
+ *
+ * @author wenyu
+ */
+public final class StateMachineMetrics {
+    /** 迁移、被拒绝统计项各自的上限 */
+    public static final int MAX_ENTRIES = 4096;
+    /** 超过上限后合并计入的统计项的源状态、事件、目标状态 */
+    public static final Object OVERFLOW = new Object() {
+        @Override
+        public String toString() {
+            return "OVERFLOW";
+        }
+    };
+    /** 是否开启 */
+    private volatile boolean enabled;
+    /** 是否开启分阶段计时 */
+    private volatile boolean phaseTimingEnabled;
+    /** 阶段 -> 计时 */
+    private final Timer[] phases = new Timer[StateMachinePhase.values().length];
+    /** 阶段 -> 监听类型 -> 计时 */
+    private final ConcurrentMap<Class<?>, Timer>[] listeners;
+    /** (源状态, 事件, 目标状态) -> 统计 */
+    private final ConcurrentMap<Key, StateMachineTransitionMetrics> transitions = new ConcurrentHashMap<>();
+    /** (源状态, 事件) -> 被拒绝次数 */
+    private final ConcurrentMap<Key, LongAdder> rejections = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    public StateMachineMetrics() {
+        this.listeners = new ConcurrentMap[this.phases.length];
+        for (int i = 0; i < this.phases.length; i++) {
+            this.phases[i] = new Timer();
+            this.listeners[i] = new ConcurrentHashMap<>();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 开启或关闭统计，运行时可随时切换
+     * @param enabled
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isPhaseTimingEnabled() {
+        return phaseTimingEnabled;
+    }
+
+    /**
+     * 开启或关闭分阶段计时，运行时可随时切换
+     * @param phaseTimingEnabled
+     */
+    public void setPhaseTimingEnabled(boolean phaseTimingEnabled) {
+        this.phaseTimingEnabled = phaseTimingEnabled;
+    }
+
+    /**
+     * 记录阶段耗时
+     * @param phase 阶段
+     * @param listener 监听，为null时只计入阶段
+     * @param nanos 耗时（纳秒）
+     */
+    public void time(StateMachinePhase phase, Object listener, long nanos) {
+        this.phases[phase.ordinal()].record(nanos);
+        if (listener != null) {
+            ConcurrentMap<Class<?>, Timer> timers = this.listeners[phase
+                    .ordinal()];
+            Timer timer = timers.get(listener.getClass());
+            if (timer == null) {
+                timer = timers
+                        .computeIfAbsent(listener.getClass(), k -> new Timer());
+            }
+            timer.record(nanos);
+        }
+    }
+
+    /**
+     * 状态迁移的统计项
+     * @param from
+     * @param event
+     * @param to
+     * @return
+     */
+    public StateMachineTransitionMetrics transition(Object from,
+            Object event, Object to) {
+        Key key = new Key(from, event, to);
+        StateMachineTransitionMetrics metrics = this.transitions.get(key);
+        if (metrics == null) {
+            if (this.transitions.size() >= MAX_ENTRIES) {
+                key = new Key(OVERFLOW, OVERFLOW, OVERFLOW);
+            }
+            metrics = this.transitions.computeIfAbsent(key,
+                    k -> new StateMachineTransitionMetrics(k.from, k.event,
+                            k.to));
+        }
+        return metrics;
+    }
+
+    /**
+     * 被拒绝次数的统计项
+     * @param state
+     * @param event
+     * @return
+     */
+    public LongAdder rejection(Object state, Object event) {
+        Key key = new Key(state, event, null);
+        LongAdder rejection = this.rejections.get(key);
+        if (rejection == null) {
+            if (this.rejections.size() >= MAX_ENTRIES) {
+                key = new Key(OVERFLOW, OVERFLOW, null);
+            }
+            rejection = this.rejections.computeIfAbsent(key,
+                    k -> new LongAdder());
+        }
+        return rejection;
+    }
+
+    /**
+     * 快照
+     * @return
+     */
+    public StateMachineMetricsSnapshot snapshot() {
+        List<StateMachineMetricsSnapshot.Transition> transitions = new ArrayList<>();
+        for (StateMachineTransitionMetrics metrics : this.transitions.values()) {
+            transitions.add(metrics.snapshot());
+        }
+        List<StateMachineMetricsSnapshot.Rejection> rejections = new ArrayList<>();
+        for (Map.Entry<Key, LongAdder> entry : this.rejections.entrySet()) {
+            rejections.add(new StateMachineMetricsSnapshot.Rejection(
+                    entry.getKey().from, entry.getKey().event,
+                    entry.getValue().sum()));
+        }
+        List<StateMachineMetricsSnapshot.Phase> phases = new ArrayList<>();
+        List<StateMachineMetricsSnapshot.Listener> listeners = new ArrayList<>();
+        for (StateMachinePhase phase : StateMachinePhase.values()) {
+            Timer timer = this.phases[phase.ordinal()];
+            phases.add(new StateMachineMetricsSnapshot.Phase(phase,
+                    timer.count.sum(), timer.nanos.sum()));
+            for (Map.Entry<Class<?>, Timer> entry : this.listeners[phase
+                    .ordinal()].entrySet()) {
+                listeners.add(new StateMachineMetricsSnapshot.Listener(
+                        entry.getKey(), phase, entry.getValue().count.sum(),
+                        entry.getValue().nanos.sum()));
+            }
+        }
+        return new StateMachineMetricsSnapshot(
+                Collections.unmodifiableList(transitions),
+                Collections.unmodifiableList(rejections),
+                Collections.unmodifiableList(phases),
+                Collections.unmodifiableList(listeners));
+    }
+
+    /**
+     * 清零
+     */
+    public void reset() {
+        for (StateMachineTransitionMetrics metrics : this.transitions.values()) {
+            metrics.reset();
+        }
+        for (LongAdder rejection : this.rejections.values()) {
+            rejection.reset();
+        }
+        for (int i = 0; i < this.phases.length; i++) {
+            this.phases[i].reset();
+            for (Timer timer : this.listeners[i].values()) {
+                timer.reset();
+            }
+        }
+    }
+
+    /**
+     * 计时
+     */
+    private static final class Timer {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        private void record(long nanos) {
+            this.count.increment();
+            this.nanos.add(nanos);
+        }
+
+        private void reset() {
+            this.count.reset();
+            this.nanos.reset();
+        }
+    }
+
+    private static final class Key {
+        private final Object from;
+        private final Object event;
+        private final Object to;
+
+        private Key(Object from, Object event, Object to) {
+            this.from = from;
+            this.event = event;
+            this.to = to;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return Objects.equals(from, key.from) && Objects
+                    .equals(event, key.event) && Objects.equals(to, key.to);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(from, event, to);
+        }
+    }
+}
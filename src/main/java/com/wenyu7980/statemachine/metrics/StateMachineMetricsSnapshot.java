@@ -0,0 +1,275 @@
+package com.wenyu7980.statemachine.metrics;
+
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.List;
+
+/**
+ * 状态机统计快照
+ *
+ * @author wenyu
+ */
+public final class StateMachineMetricsSnapshot {
+    private final List<Transition> transitions;
+    private final List<Rejection> rejections;
+    private final List<Phase> phases;
+    private final List<Listener> listeners;
+
+    StateMachineMetricsSnapshot(List<Transition> transitions,
+            List<Rejection> rejections, List<Phase> phases,
+            List<Listener> listeners) {
+        this.transitions = transitions;
+        this.rejections = rejections;
+        this.phases = phases;
+        this.listeners = listeners;
+    }
+
+    public List<Transition> getTransitions() {
+        return transitions;
+    }
+
+    public List<Rejection> getRejections() {
+        return rejections;
+    }
+
+    /**
+     * 分阶段计时
+     * @return
+     */
+    public List<Phase> getPhases() {
+        return phases;
+    }
+
+    /**
+     * 按监听类型的分阶段计时
+     * @return
+     */
+    public List<Listener> getListeners() {
+        return listeners;
+    }
+
+    /**
+     * 状态迁移的统计
+     */
+    public static final class Transition {
+        private final Object from;
+        private final Object event;
+        private final Object to;
+        private final long count;
+        private final long nanos;
+        private final long[] histogram;
+
+        Transition(Object from, Object event, Object to, long count,
+                long nanos, long[] histogram) {
+            this.from = from;
+            this.event = event;
+            this.to = to;
+            this.count = count;
+            this.nanos = nanos;
+            this.histogram = histogram;
+        }
+
+        public Object getFrom() {
+            return from;
+        }
+
+        public Object getEvent() {
+            return event;
+        }
+
+        public Object getTo() {
+            return to;
+        }
+
+        /**
+         * 调用次数
+         * @return
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * 总耗时（纳秒）
+         * @return
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * 耗时直方图，桶i为[2^i, 2^(i+1))纳秒内的调用次数
+         * @return
+         */
+        public long[] getHistogram() {
+            return histogram.clone();
+        }
+
+        /**
+         * 平均耗时（纳秒）
+         * @return
+         */
+        public double getMean() {
+            return count == 0 ? 0 : (double) nanos / count;
+        }
+
+        /**
+         * 耗时百分位（桶上界，纳秒）
+         * @param percentile (0, 100]
+         * @return
+         */
+        public long getPercentile(double percentile) {
+            long total = 0;
+            for (long bucket : histogram) {
+                total += bucket;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < histogram.length; i++) {
+                seen += histogram[i];
+                if (seen >= rank) {
+                    return i >= 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public String toString() {
+            return "{" + "from=" + from + ", event=" + event + ", to=" + to
+                    + ", count=" + count + ", nanos=" + nanos + '}';
+        }
+    }
+
+    /**
+     * 被拒绝次数
+     */
+    public static final class Rejection {
+        private final Object state;
+        private final Object event;
+        private final long count;
+
+        Rejection(Object state, Object event, long count) {
+            this.state = state;
+            this.event = event;
+            this.count = count;
+        }
+
+        public Object getState() {
+            return state;
+        }
+
+        public Object getEvent() {
+            return event;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            return "{" + "state=" + state + ", event=" + event + ", count="
+                    + count + '}';
+        }
+    }
+
+    /**
+     * 阶段计时
+     * 监听阶段按每个监听的调用计数，守卫、设置状态阶段按每次状态机调用计数
+     */
+    public static final class Phase {
+        private final StateMachinePhase phase;
+        private final long count;
+        private final long nanos;
+
+        Phase(StateMachinePhase phase, long count, long nanos) {
+            this.phase = phase;
+            this.count = count;
+            this.nanos = nanos;
+        }
+
+        public StateMachinePhase getPhase() {
+            return phase;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * 总耗时（纳秒）
+         * @return
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        @Override
+        public String toString() {
+            return "{" + "phase=" + phase + ", count=" + count + ", nanos="
+                    + nanos + '}';
+        }
+    }
+
+    /**
+     * 监听类型在某阶段的计时
+     */
+    public static final class Listener {
+        private final Class<?> type;
+        private final StateMachinePhase phase;
+        private final long count;
+        private final long nanos;
+
+        Listener(Class<?> type, StateMachinePhase phase, long count,
+                long nanos) {
+            this.type = type;
+            this.phase = phase;
+            this.count = count;
+            this.nanos = nanos;
+        }
+
+        public Class<?> getType() {
+            return type;
+        }
+
+        public StateMachinePhase getPhase() {
+            return phase;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * 总耗时（纳秒）
+         * @return
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        @Override
+        public String toString() {
+            return "{" + "type=" + type.getName() + ", phase=" + phase
+                    + ", count=" + count + ", nanos=" + nanos + '}';
+        }
+    }
+}
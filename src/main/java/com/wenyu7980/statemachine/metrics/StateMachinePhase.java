@@ -0,0 +1,45 @@
+package com.wenyu7980.statemachine.metrics;
+
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * 状态机调用阶段
+ *
+ * @author wenyu
+ */
+public enum StateMachinePhase {
+    /** 监听状态机（前） */
+    PRE_LISTENER,
+    /** 状态事件（离开） */
+    EXIT_STATE,
+    /** 监听事件（前） */
+    PRE_EVENT,
+    /** 查找迁移（守卫） */
+    GUARD,
+    /** 设置状态 */
+    SET_STATE,
+    /** 状态迁移 */
+    TRANSFORM,
+    /** 动作监听 */
+    ACTION,
+    /** 监听事件（后） */
+    POST_EVENT,
+    /** 状态事件（进入） */
+    ENTER_STATE,
+    /** 监听状态机（后） */
+    POST_LISTENER
+}
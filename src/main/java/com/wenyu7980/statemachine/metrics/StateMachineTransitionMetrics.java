@@ -0,0 +1,82 @@
+package com.wenyu7980.statemachine.metrics;
+
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 状态迁移统计
+ * 调用次数、总耗时及按2的幂分桶的耗时直方图（桶i记录[2^i, 2^(i+1))纳秒）
+ *
+ * @author wenyu
+ */
+public final class StateMachineTransitionMetrics {
+    /** 直方图桶数 */
+    public static final int BUCKETS = 64;
+    private final Object from;
+    private final Object event;
+    private final Object to;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final LongAdder[] histogram = new LongAdder[BUCKETS];
+
+    StateMachineTransitionMetrics(Object from, Object event, Object to) {
+        this.from = from;
+        this.event = event;
+        this.to = to;
+        for (int i = 0; i < BUCKETS; i++) {
+            this.histogram[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * 记录一次调用
+     * @param nanos 耗时（纳秒）
+     */
+    public void record(long nanos) {
+        this.count.increment();
+        this.nanos.add(nanos);
+        this.histogram[bucket(nanos)].increment();
+    }
+
+    /**
+     * 耗时所在桶
+     * @param nanos
+     * @return
+     */
+    static int bucket(long nanos) {
+        return nanos <= 0 ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+    }
+
+    StateMachineMetricsSnapshot.Transition snapshot() {
+        long[] histogram = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            histogram[i] = this.histogram[i].sum();
+        }
+        return new StateMachineMetricsSnapshot.Transition(this.from,
+                this.event, this.to, this.count.sum(), this.nanos.sum(),
+                histogram);
+    }
+
+    void reset() {
+        this.count.reset();
+        this.nanos.reset();
+        for (LongAdder bucket : this.histogram) {
+            bucket.reset();
+        }
+    }
+}
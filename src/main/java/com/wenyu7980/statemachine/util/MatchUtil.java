@@ -1,39 +1,39 @@
-package com.wenyu7980.statemachine.util;
-
-/**
- * Copyright wenyu
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *     http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-
-import java.util.Objects;
-
-/**
- * Match 辅助类
- * @author wenyu
- */
-public final class MatchUtil {
-    private MatchUtil() {
-    }
-
-    /**
-     * 是否匹配
-     * @param t1
-     * @param t2
-     * @param <T>
-     * @return
-     */
-    public static <T> boolean matchOrNull(T t1, T t2) {
-        return t1 == null || t2 == null || Objects.equals(t1, t2);
-    }
-}
+package com.wenyu7980.statemachine.util;
+
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Objects;
+
+/**
+ * Match 辅助类
+ * @author wenyu
+ */
+public final class MatchUtil {
+    private MatchUtil() {
+    }
+
+    /**
+     * 是否匹配
+     * @param t1
+     * @param t2
+     * @param <T>
+     * @return
+     */
+    public static <T> boolean matchOrNull(T t1, T t2) {
+        return t1 == null || t2 == null || Objects.equals(t1, t2);
+    }
+}
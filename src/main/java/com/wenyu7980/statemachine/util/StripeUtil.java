@@ -0,0 +1,45 @@
+package com.wenyu7980.statemachine.util;
+
+/**
+ * Copyright wenyu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * 分段 辅助类
+ * @author wenyu
+ */
+public final class StripeUtil {
+    private StripeUtil() {
+    }
+
+    /**
+     * 数据所在分段
+     * @param key 数据key，为null时按数据对象本身（identity）区分
+     * @param t 数据
+     * @param stripes 分段数
+     * @param <T>
+     * @return [0, stripes)
+     */
+    public static <T> int stripe(Function<T, ?> key, T t, int stripes) {
+        int hash = key == null ?
+                System.identityHashCode(t) :
+                Objects.hashCode(key.apply(t));
+        hash ^= hash >>> 16;
+        return (hash & 0x7fffffff) % stripes;
+    }
+}
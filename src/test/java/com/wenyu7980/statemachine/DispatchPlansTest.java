@@ -0,0 +1,148 @@
+package com.wenyu7980.statemachine;
+
+import com.wenyu7980.statemachine.AbstractStateMachine.MachineContainer;
+import com.wenyu7980.statemachine.StateMachine2d.StatePair;
+import com.wenyu7980.statemachine.listener.AbstractStateMachineStateListener;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 测试监听分发计划缓存
+ *
+ * @author wenyu
+ */
+public class DispatchPlansTest {
+    private static final String EVENT = "E";
+
+    /**
+     * 迁移定义内的状态、事件不受缓存上限限制
+     */
+    @Test
+    public void testDefined() {
+        int size = DispatchPlans.MAX_PLANS * 2;
+        List<MachineContainer<Object, StateMachine.StateSingle<Integer>, String>> containers = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            containers.add(new MachineContainer<>(
+                    new StateMachine.StateSingle<>(i), EVENT,
+                    new StateMachine.StateSingle<>((i + 1) % size), null));
+        }
+        DispatchPlans<Object, StateMachine.StateSingle<Integer>, String, Object> plans = plans(
+                containers, Collections.emptyList());
+        List<DispatchPlans.EventPlan<Object, StateMachine.StateSingle<Integer>, String, Object>> eventPlans = new ArrayList<>();
+        List<DispatchPlans.TransitionPlan<Object, StateMachine.StateSingle<Integer>, String, Object>> transitionPlans = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            DispatchPlans.EventPlan<Object, StateMachine.StateSingle<Integer>, String, Object> plan = plans
+                    .plan(new StateMachine.StateSingle<>(i), EVENT);
+            eventPlans.add(plan);
+            transitionPlans.add(plan.transition(
+                    new StateMachine.StateSingle<>((i + 1) % size)));
+        }
+        for (int i = 0; i < size; i++) {
+            DispatchPlans.EventPlan<Object, StateMachine.StateSingle<Integer>, String, Object> plan = plans
+                    .plan(new StateMachine.StateSingle<>(i), EVENT);
+            Assert.assertSame(eventPlans.get(i), plan);
+            Assert.assertSame(transitionPlans.get(i), plan.transition(
+                    new StateMachine.StateSingle<>((i + 1) % size)));
+        }
+        Assert.assertEquals(0, plans.limitedSize());
+        // 未定义的事件受上限限制
+        plans.plan(new StateMachine.StateSingle<>(0), "X");
+        Assert.assertEquals(1, plans.limitedSize());
+    }
+
+    /**
+     * 未实现equals的状态最多缓存{@link DispatchPlans#MAX_PLANS}个计划，
+     * 超过后每次创建的计划仍然正确
+     */
+    @Test
+    public void testLimited() {
+        List<MachineContainer<Object, Box, String>> containers = Collections
+                .singletonList(new MachineContainer<>(new Box(0), EVENT,
+                        new Box(1), null));
+        DispatchPlans<Object, Box, String, Object> plans = plans(containers,
+                Collections.singletonList(new EnterListener(new Box(1))));
+        for (int i = 0; i < DispatchPlans.MAX_PLANS * 2; i++) {
+            DispatchPlans.EventPlan<Object, Box, String, Object> plan = plans
+                    .plan(new Box(0), EVENT);
+            Assert.assertEquals(1,
+                    plan.transition(new Box(1)).enterListeners.size());
+            Assert.assertEquals(0,
+                    plan.transition(new Box(2)).enterListeners.size());
+        }
+        Assert.assertEquals(DispatchPlans.MAX_PLANS, plans.limitedSize());
+        Box box = new Box(0);
+        Assert.assertNotSame(plans.plan(box, EVENT), plans.plan(box, EVENT));
+    }
+
+    /**
+     * 通配定义匹配的运行时状态不在迁移定义中，受缓存上限限制
+     */
+    @Test
+    public void testWildcard() {
+        List<MachineContainer<Object, StatePair<Integer, Integer>, String>> containers = Collections
+                .singletonList(new MachineContainer<>(new StatePair<>(0, null),
+                        EVENT, new StatePair<>(1, 1), null));
+        DispatchPlans<Object, StatePair<Integer, Integer>, String, Object> plans = plans(
+                containers, Collections.emptyList());
+        for (int i = 0; i < DispatchPlans.MAX_PLANS * 2; i++) {
+            DispatchPlans.EventPlan<Object, StatePair<Integer, Integer>, String, Object> plan = plans
+                    .plan(new StatePair<>(0, i), EVENT);
+            Assert.assertTrue(plan.exitListeners.isEmpty());
+            Assert.assertTrue(plan.transition(new StatePair<>(1, 1))
+                    .enterListeners.isEmpty());
+            Assert.assertTrue(plans.limitedSize() <= DispatchPlans.MAX_PLANS);
+        }
+        Assert.assertEquals(DispatchPlans.MAX_PLANS, plans.limitedSize());
+    }
+
+    private static <S extends StateContainer> DispatchPlans<Object, S, String, Object> plans(
+            List<MachineContainer<Object, S, String>> containers,
+            List<AbstractStateMachineStateListener<Object, S, String>> stateListeners) {
+        return new DispatchPlans<>(containers, Collections.emptyList(),
+                Collections.emptyList(), stateListeners,
+                Collections.emptyList(), Collections.emptyList(), null);
+    }
+
+    /**
+     * 未实现equals的状态
+     */
+    private static class Box implements StateContainer<Box> {
+        private final int value;
+
+        private Box(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean match(Box box) {
+            return this.value == box.value;
+        }
+    }
+
+    private static class EnterListener
+            implements AbstractStateMachineStateListener<Object, Box, String> {
+        private final Box state;
+
+        private EnterListener(Box state) {
+            this.state = state;
+        }
+
+        @Override
+        public Box state() {
+            return this.state;
+        }
+
+        @Override
+        public boolean isEnter() {
+            return true;
+        }
+
+        @Override
+        public void listener(Object o, String event) {
+        }
+    }
+}
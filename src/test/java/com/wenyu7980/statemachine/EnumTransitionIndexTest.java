@@ -0,0 +1,130 @@
+package com.wenyu7980.statemachine;
+
+import com.wenyu7980.statemachine.AbstractStateMachine.MachineContainer;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 测试枚举状态迁移索引
+ *
+ * @author wenyu
+ */
+public class EnumTransitionIndexTest {
+    private StateMachine<Data, State, Event, Review> machine;
+    private List<MachineContainer<Data, StateMachine.StateSingle<State>, Event>> containers;
+
+    @Before
+    public void Before() {
+        this.machine = new StateMachine<>(
+                (t) -> new StateMachine.StateSingle<>(t.getS()),
+                (t, s) -> t.setS(s.getS()),
+                (t, s, e) -> new NoStateTransformException("没有状态转换{0},{1}",
+                        s.toString(), e.toString()));
+        this.containers = Arrays.asList(
+                new MachineContainer<>(new StateMachine.StateSingle<>(State.S1),
+                        Event.E1, new StateMachine.StateSingle<>(State.S2),
+                        null),
+                new MachineContainer<>(new StateMachine.StateSingle<>(null),
+                        Event.E1, new StateMachine.StateSingle<>(State.S3),
+                        null),
+                new MachineContainer<>(new StateMachine.StateSingle<>(State.S2),
+                        Event.E2, new StateMachine.StateSingle<>(State.S1),
+                        null));
+        for (MachineContainer<Data, StateMachine.StateSingle<State>, Event> container : this.containers) {
+            this.machine.addState(container.getFrom(), container.getEvent(),
+                    container.getTo());
+        }
+    }
+
+    /**
+     * 状态、事件均为同一枚举类型时使用枚举索引
+     */
+    @Test
+    public void testSelected() {
+        Assert.assertTrue(this.machine
+                .createIndex(this.containers) instanceof EnumTransitionIndex);
+        StateMachine<Data, String, String, Review> strings = new StateMachine<>(
+                (t) -> null, (t, s) -> {
+        }, (t, s, e) -> new IllegalStateException());
+        Assert.assertTrue(strings.createIndex(Arrays.asList(
+                new MachineContainer<>(new StateMachine.StateSingle<>("S1"),
+                        "E1", new StateMachine.StateSingle<>("S2"),
+                        null))) instanceof HashTransitionIndex);
+        // 状态不是同一枚举类型
+        StateMachine<Data, Object, Event, Review> mixed = new StateMachine<>(
+                (t) -> null, (t, s) -> {
+        }, (t, s, e) -> new IllegalStateException());
+        Assert.assertTrue(mixed.createIndex(Arrays.asList(
+                new MachineContainer<>(new StateMachine.StateSingle<>(State.S1),
+                        Event.E1, new StateMachine.StateSingle<>(State2.S1),
+                        null))) instanceof HashTransitionIndex);
+    }
+
+    /**
+     * 通配源状态按定义顺序展开
+     */
+    @Test
+    public void testCandidates() {
+        TransitionIndex<Data, StateMachine.StateSingle<State>, Event> index = this.machine
+                .createIndex(this.containers);
+        Assert.assertEquals(Arrays.asList(State.S2, State.S3),
+                this.targets(index, State.S1, Event.E1));
+        Assert.assertEquals(Arrays.asList(State.S3),
+                this.targets(index, State.S3, Event.E1));
+        Assert.assertEquals(Arrays.asList(),
+                this.targets(index, State.S1, Event.E2));
+    }
+
+    /**
+     * 现在状态为通配时退回hash索引，返回事件下的全部迁移
+     */
+    @Test
+    public void testNullState() {
+        TransitionIndex<Data, StateMachine.StateSingle<State>, Event> index = this.machine
+                .createIndex(this.containers);
+        Assert.assertEquals(Arrays.asList(State.S2, State.S3),
+                this.targets(index, null, Event.E1));
+        Assert.assertEquals(2, index.candidates(null, Event.E1).size());
+        Assert.assertEquals(0, index.candidates(
+                new StateMachine.StateSingle<>(State.S1), null).size());
+    }
+
+    /**
+     * 现在状态、事件不是定义时的枚举类型时退回hash索引
+     */
+    @Test
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public void testForeignType() {
+        TransitionIndex index = this.machine.createIndex(this.containers);
+        // 只匹配通配源状态
+        Assert.assertEquals(Arrays.asList(State.S3),
+                this.targets(index, State2.S1, Event.E1));
+        Assert.assertEquals(Arrays.asList(State.S3),
+                this.targets(index, "S1", Event.E1));
+        Assert.assertEquals(0,
+                index.candidates(new StateMachine.StateSingle<>(State.S1),
+                        State.S1).size());
+        Data data = new Data();
+        Assert.assertEquals(new StateMachine.StateSingle<>(State.S3),
+                ((AbstractStateMachine) this.machine).sendEvent(data,
+                        new StateMachine.StateSingle<>(State2.S1), Event.E1));
+        Assert.assertEquals(State.S3, data.getS());
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private List<Object> targets(TransitionIndex index, Object state,
+            Event event) {
+        List<Object> targets = new ArrayList<>();
+        for (Object container : index.candidates(
+                new StateMachine.StateSingle<>(state), event)) {
+            targets.add(((StateMachine.StateSingle<?>) ((MachineContainer) container)
+                    .getTo()).getS());
+        }
+        return targets;
+    }
+}
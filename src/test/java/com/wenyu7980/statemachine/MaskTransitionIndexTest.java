@@ -0,0 +1,257 @@
+package com.wenyu7980.statemachine;
+
+import com.wenyu7980.statemachine.AbstractStateMachine.MachineContainer;
+import com.wenyu7980.statemachine.StateMachine2d.StatePair;
+import com.wenyu7980.statemachine.StateMachine3d.StateTriple;
+import com.wenyu7980.statemachine.exception.StatemachineExceptionSupplier;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 测试多维状态迁移掩码索引
+ *
+ * @author wenyu
+ */
+public class MaskTransitionIndexTest {
+
+    /**
+     * 2维：多个掩码桶合并，按定义顺序排序
+     */
+    @Test
+    public void testMerge2d() {
+        StateMachine2d<Data2, State, State2, Event, Review> machine = machine2d();
+        List<MachineContainer<Data2, StatePair<State, State2>, Event>> containers = Arrays
+                .asList(container2d(State.S1, null, State.S2),
+                        container2d(null, State2.S1, State.S3),
+                        container2d(State.S1, State2.S1, State.S4),
+                        container2d(null, null, State.S5),
+                        container2d(State.S1, State2.S2, State.S6));
+        TransitionIndex<Data2, StatePair<State, State2>, Event> index = machine
+                .createIndex(containers);
+        Assert.assertEquals(
+                Arrays.asList(State.S2, State.S3, State.S4, State.S5),
+                targets(index, new StatePair<>(State.S1, State2.S1)));
+        Assert.assertEquals(Arrays.asList(State.S2, State.S5, State.S6),
+                targets(index, new StatePair<>(State.S1, State2.S2)));
+        Assert.assertEquals(Arrays.asList(State.S2, State.S5),
+                targets(index, new StatePair<>(State.S1, State2.S3)));
+        Assert.assertEquals(Arrays.asList(State.S3, State.S5),
+                targets(index, new StatePair<>(State.S2, State2.S1)));
+        Assert.assertEquals(Arrays.asList(State.S5),
+                targets(index, new StatePair<>(State.S2, State2.S2)));
+        // 匹配同一组桶的状态共用合并结果
+        Assert.assertSame(
+                index.candidates(new StatePair<>(State.S1, State2.S3), Event.E1),
+                index.candidates(new StatePair<>(State.S1, State2.S4),
+                        Event.E1));
+        // 现在状态包含通配时返回事件下的全部迁移
+        Assert.assertEquals(5,
+                index.candidates(new StatePair<>(State.S1, null), Event.E1)
+                        .size());
+        Assert.assertEquals(0, index.candidates(
+                new StatePair<>(State.S1, State2.S1), Event.E2).size());
+    }
+
+    /**
+     * 2维：多个掩码桶同时匹配时拒绝迁移
+     */
+    @Test
+    public void testDuplicate2d() {
+        StateMachine2d<Data2, State, State2, Event, Review> machine = machine2d();
+        // S1+null--E1+false-->S2+S2
+        machine.addState(new StatePair<>(State.S1, null), Event.E1,
+                new StatePair<>(State.S2, State2.S2),
+                (d, state, event, value) -> false);
+        // S1+S1--E1-->S3+S3
+        machine.addState(new StatePair<>(State.S1, State2.S1), Event.E1,
+                new StatePair<>(State.S3, State2.S3));
+        // null+S1--E1-->S4+S4
+        machine.addState(new StatePair<>(null, State2.S1), Event.E1,
+                new StatePair<>(State.S4, State2.S4));
+        // null+S2--E1-->S5+S5
+        machine.addState(new StatePair<>(null, State2.S2), Event.E1,
+                new StatePair<>(State.S5, State2.S5));
+        Data2 data2 = new Data2(new Data2.Inner(BigDecimal.ONE));
+        Assert.assertEquals(new StatePair<>(State.S5, State2.S5),
+                machine.sendEvent(data2, new StatePair<>(State.S1, State2.S2),
+                        Event.E1));
+        Assert.assertEquals(new StatePair<>(State.S4, State2.S4),
+                machine.sendEvent(data2, new StatePair<>(State.S9, State2.S1),
+                        Event.E1));
+        try {
+            // S1+S1 与 null+S1 同时匹配
+            machine.sendEvent(data2, new StatePair<>(State.S1, State2.S1),
+                    Event.E1);
+            Assert.fail("S1+S1--E1 多个状态迁移");
+        } catch (NoStateTransformException e) {
+            // 预期
+        }
+        try {
+            machine.sendEvent(data2, new StatePair<>(State.S9, State2.S9),
+                    Event.E1);
+            Assert.fail("S9+S9--E1 没有状态迁移");
+        } catch (NoStateTransformException e) {
+            // 预期
+        }
+    }
+
+    /**
+     * 3维：多个掩码桶合并，按定义顺序排序
+     */
+    @Test
+    public void testMerge3d() {
+        StateMachine3d<Data3, State, State2, State3, Event, Review> machine = machine3d();
+        List<MachineContainer<Data3, StateTriple<State, State2, State3>, Event>> containers = Arrays
+                .asList(container3d(null, State2.S1, null, State.S2),
+                        container3d(State.S1, null, State3.S1, State.S3),
+                        container3d(State.S1, State2.S1, State3.S1, State.S4),
+                        container3d(null, null, State3.S1, State.S5),
+                        container3d(State.S1, State2.S1, null, State.S6));
+        TransitionIndex<Data3, StateTriple<State, State2, State3>, Event> index = machine
+                .createIndex(containers);
+        Assert.assertEquals(
+                Arrays.asList(State.S2, State.S3, State.S4, State.S5,
+                        State.S6),
+                targets(index,
+                        new StateTriple<>(State.S1, State2.S1, State3.S1)));
+        Assert.assertEquals(Arrays.asList(State.S2, State.S6), targets(index,
+                new StateTriple<>(State.S1, State2.S1, State3.S2)));
+        Assert.assertEquals(Arrays.asList(State.S3, State.S5), targets(index,
+                new StateTriple<>(State.S1, State2.S2, State3.S1)));
+        Assert.assertEquals(Arrays.asList(State.S2, State.S5), targets(index,
+                new StateTriple<>(State.S2, State2.S1, State3.S1)));
+        Assert.assertEquals(Arrays.asList(), targets(index,
+                new StateTriple<>(State.S2, State2.S2, State3.S2)));
+    }
+
+    /**
+     * 3维：多个掩码桶同时匹配时拒绝迁移
+     */
+    @Test
+    public void testDuplicate3d() {
+        StateMachine3d<Data3, State, State2, State3, Event, Review> machine = machine3d();
+        Data3 data3 = new Data3(new Data3.Inner(new BigDecimal(1)));
+        // S1+S1+S1--E3+false-->S2+S2+S2
+        machine.addState(new StateTriple<>(State.S1, State2.S1, State3.S1),
+                Event.E3, new StateTriple<>(State.S2, State2.S2, State3.S2),
+                (d, state, event, value) -> false);
+        // S1+null+S1--E3-->S3+S3+S3
+        machine.addState(new StateTriple<>(State.S1, null, State3.S1),
+                Event.E3, new StateTriple<>(State.S3, State2.S3, State3.S3));
+        // null+S2+null--E3-->S4+S4+S4
+        machine.addState(new StateTriple<>(null, State2.S2, null), Event.E3,
+                new StateTriple<>(State.S4, State2.S4, State3.S4));
+        Assert.assertEquals("S1+S1+S1--E3-->S3+S3+S3",
+                new StateTriple<>(State.S3, State2.S3, State3.S3),
+                machine.sendEvent(data3,
+                        new StateTriple<>(State.S1, State2.S1, State3.S1),
+                        Event.E3));
+        Assert.assertEquals("S1+S5+S1--E3-->S3+S3+S3",
+                new StateTriple<>(State.S3, State2.S3, State3.S3),
+                machine.sendEvent(data3,
+                        new StateTriple<>(State.S1, State2.S5, State3.S1),
+                        Event.E3));
+        Assert.assertEquals("S9+S2+S9--E3-->S4+S4+S4",
+                new StateTriple<>(State.S4, State2.S4, State3.S4),
+                machine.sendEvent(data3,
+                        new StateTriple<>(State.S9, State2.S2, State3.S9),
+                        Event.E3));
+        try {
+            // S1+null+S1 与 null+S2+null 同时匹配
+            machine.sendEvent(data3,
+                    new StateTriple<>(State.S1, State2.S2, State3.S1),
+                    Event.E3);
+            Assert.fail("S1+S2+S1--E3 多个状态迁移");
+        } catch (NoStateTransformException e) {
+            // 预期
+        }
+        try {
+            machine.sendEvent(data3,
+                    new StateTriple<>(State.S9, State2.S9, State3.S9),
+                    Event.E3);
+            Assert.fail("S9+S9+S9--E3 没有状态迁移");
+        } catch (NoStateTransformException e) {
+            // 预期
+        }
+    }
+
+    /**
+     * 合并结果按桶组合缓存，不随现在状态增长，大量现在状态共用同一合并结果
+     */
+    @Test
+    public void testManyStates() {
+        StateMachine3d<Object, Integer, Integer, Integer, String, Object> machine = new StateMachine3d<>(
+                (t) -> null, (t, s) -> {
+        }, (t, s, e) -> new IllegalStateException());
+        List<MachineContainer<Object, StateTriple<Integer, Integer, Integer>, String>> containers = Arrays
+                .asList(new MachineContainer<>(new StateTriple<>(0, null, null),
+                                "E", new StateTriple<>(1, 1, 1), null),
+                        new MachineContainer<>(new StateTriple<>(null, 0, null),
+                                "E", new StateTriple<>(2, 2, 2), null));
+        TransitionIndex<Object, StateTriple<Integer, Integer, Integer>, String> index = machine
+                .createIndex(containers);
+        List<MachineContainer<Object, StateTriple<Integer, Integer, Integer>, String>> merged = index
+                .candidates(new StateTriple<>(0, 0, 0), "E");
+        Assert.assertEquals(2, merged.size());
+        for (int i = 0; i < 2; i++) {
+            for (int s3 = 0; s3 < 10000; s3++) {
+                Assert.assertSame(merged, index
+                        .candidates(new StateTriple<>(0, 0, s3), "E"));
+            }
+        }
+    }
+
+    private static StateMachine2d<Data2, State, State2, Event, Review> machine2d() {
+        StatemachineExceptionSupplier<Data2, StatePair<State, State2>, Event, NoStateTransformException> supplier = (
+                d, s, e) -> new NoStateTransformException("没有状态转换{0},{1}",
+                s.toString(), e.toString());
+        return new StateMachine2d<>(
+                (t) -> new StatePair<>(t.getS(), t.getS2()), (t, s) -> {
+            t.setS(s.getS1());
+            t.setS2(s.getS2());
+        }, supplier);
+    }
+
+    private static StateMachine3d<Data3, State, State2, State3, Event, Review> machine3d() {
+        StatemachineExceptionSupplier<Data3, StateTriple<State, State2, State3>, Event, NoStateTransformException> supplier = (
+                d, s, e) -> new NoStateTransformException("没有状态转换{0},{1}",
+                s.toString(), e.toString());
+        return new StateMachine3d<>(
+                (t) -> new StateTriple<>(t.getS(), t.getS2(), t.getS3()),
+                (t, s) -> {
+                    t.setS(s.getS1());
+                    t.setS2(s.getS2());
+                    t.setS3(s.getS3());
+                }, supplier);
+    }
+
+    private static MachineContainer<Data2, StatePair<State, State2>, Event> container2d(
+            State s1, State2 s2, State to) {
+        return new MachineContainer<>(new StatePair<>(s1, s2), Event.E1,
+                new StatePair<>(to, null), null);
+    }
+
+    private static MachineContainer<Data3, StateTriple<State, State2, State3>, Event> container3d(
+            State s1, State2 s2, State3 s3, State to) {
+        return new MachineContainer<>(new StateTriple<>(s1, s2, s3), Event.E1,
+                new StateTriple<>(to, null, null), null);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static List<Object> targets(TransitionIndex index,
+            StateContainer state) {
+        List<Object> targets = new ArrayList<>();
+        for (Object container : index.candidates(state, Event.E1)) {
+            StateContainer to = ((MachineContainer) container).getTo();
+            targets.add(to instanceof StatePair ?
+                    ((StatePair) to).getS1() :
+                    ((StateTriple) to).getS1());
+        }
+        return targets;
+    }
+}
@@ -0,0 +1,303 @@
+package com.wenyu7980.statemachine;
+
+import com.wenyu7980.statemachine.journal.StateMachineJournal;
+import com.wenyu7980.statemachine.journal.StateMachineJournalCodec;
+import com.wenyu7980.statemachine.listener.*;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * 测试状态机调用稳定后不分配内存
+ *
+ * @author wenyu
+ */
+public class StateMachineAllocationTest {
+    private static final int WARMUP = 20000;
+    private static final int EVENTS = 100000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private com.sun.management.ThreadMXBean threadMXBean;
+    private Level level;
+
+    @Before
+    public void Before() {
+        Assume.assumeTrue(ManagementFactory
+                .getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        this.threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        Assume.assumeTrue(
+                this.threadMXBean.isThreadAllocatedMemorySupported());
+        this.threadMXBean.setThreadAllocatedMemoryEnabled(true);
+        // 关闭debug日志
+        Logger logger = Logger.getLogger(AbstractStateMachine.class);
+        this.level = logger.getLevel();
+        logger.setLevel(Level.INFO);
+    }
+
+    @After
+    public void After() {
+        if (this.threadMXBean != null) {
+            Logger.getLogger(AbstractStateMachine.class).setLevel(this.level);
+        }
+    }
+
+    @Test
+    public void testStateMachine() {
+        StateMachine<Data, State, Event, Review> machine = new StateMachine<>(
+                (t) -> new StateMachine.StateSingle<>(t.getS()),
+                (t, s) -> t.setS(s.getS()), (t, s, e) -> new IllegalStateException());
+        StateMachine.StateSingle<State> s1 = new StateMachine.StateSingle<>(
+                State.S1);
+        StateMachine.StateSingle<State> s2 = new StateMachine.StateSingle<>(
+                State.S2);
+        machine.addState(s1, Event.E1, s2, (t, s, e, c) -> true);
+        machine.addState(s2, Event.E2, s1);
+        machine.addState(new StateMachine.StateSingle<>(null), Event.E3, s1);
+        machine.addListener(new Listener<>());
+        machine.addStateListener(new StateListener<>(s2));
+        machine.addEventListener(new EventListener<>(Event.E1));
+        machine.addTransformListener(new TransformListener<>(s1, s2));
+        machine.addAction((t, from, e, to, c) -> {
+        });
+        Data data = new Data();
+        Review review = new Review(ReviewStatus.PASS);
+        StateMachine.StateSingle<State> query1 = new StateMachine.StateSingle<>(
+                State.S1);
+        StateMachine.StateSingle<State> query2 = new StateMachine.StateSingle<>(
+                State.S2);
+        this.assertNoAllocation(() -> {
+            machine.sendEvent(data, query1, Event.E1, review);
+            machine.sendEvent(data, query2, Event.E2, review);
+        });
+        Assert.assertEquals(State.S1, data.getS());
+    }
+
+    @Test
+    public void testStateMachine2d() {
+        StateMachine2d<Data2, State, State2, Event, Review> machine = new StateMachine2d<>(
+                (t) -> new StateMachine2d.StatePair<>(t.getS(), t.getS2()),
+                (t, s) -> {
+                    t.setS(s.getS1());
+                    t.setS2(s.getS2());
+                }, (t, s, e) -> new IllegalStateException());
+        StateMachine2d.StatePair<State, State2> s1 = new StateMachine2d.StatePair<>(
+                State.S1, State2.S1);
+        StateMachine2d.StatePair<State, State2> s2 = new StateMachine2d.StatePair<>(
+                State.S2, State2.S2);
+        machine.addState(s1, Event.E1, s2, (t, s, e, c) -> true);
+        machine.addState(new StateMachine2d.StatePair<>(State.S2, null),
+                Event.E2, s1);
+        machine.addState(new StateMachine2d.StatePair<>(null, State2.S2),
+                Event.E2, s2, (t, s, e, c) -> false);
+        machine.addListener(new Listener<>());
+        machine.addStateListener(new StateListener<>(s2));
+        machine.addEventListener(new EventListener<>(Event.E1));
+        machine.addTransformListener(new TransformListener<>(s1, s2));
+        machine.addAction((t, from, e, to, c) -> {
+        });
+        Data2 data = new Data2();
+        StateMachine2d.StatePair<State, State2> query1 = new StateMachine2d.StatePair<>(
+                State.S1, State2.S1);
+        StateMachine2d.StatePair<State, State2> query2 = new StateMachine2d.StatePair<>(
+                State.S2, State2.S2);
+        this.assertNoAllocation(() -> {
+            machine.sendEvent(data, query1, Event.E1);
+            machine.sendEvent(data, query2, Event.E2);
+        });
+        Assert.assertEquals(State2.S1, data.getS2());
+    }
+
+    @Test
+    public void testStateMachine3d() {
+        StateMachine3d<Data3, State, State2, State3, Event, Review> machine = new StateMachine3d<>(
+                (t) -> new StateMachine3d.StateTriple<>(t.getS(), t.getS2(),
+                        t.getS3()), (t, s) -> {
+            t.setS(s.getS1());
+            t.setS2(s.getS2());
+            t.setS3(s.getS3());
+        }, (t, s, e) -> new IllegalStateException());
+        StateMachine3d.StateTriple<State, State2, State3> s1 = new StateMachine3d.StateTriple<>(
+                State.S1, State2.S1, State3.S1);
+        StateMachine3d.StateTriple<State, State2, State3> s2 = new StateMachine3d.StateTriple<>(
+                State.S2, State2.S2, State3.S2);
+        machine.addState(s1, Event.E1, s2);
+        machine.addState(new StateMachine3d.StateTriple<>(State.S2, null, null),
+                Event.E2, s1);
+        machine.addState(new StateMachine3d.StateTriple<>(null, State2.S2, null),
+                Event.E2, s2, (t, s, e, c) -> false);
+        machine.addListener(new Listener<>());
+        machine.addStateListener(new StateListener<>(s2));
+        machine.addEventListener(new EventListener<>(Event.E1));
+        machine.addTransformListener(new TransformListener<>(s1, s2));
+        machine.addAction((t, from, e, to, c) -> {
+        });
+        Data3 data = new Data3();
+        StateMachine3d.StateTriple<State, State2, State3> query1 = new StateMachine3d.StateTriple<>(
+                State.S1, State2.S1, State3.S1);
+        StateMachine3d.StateTriple<State, State2, State3> query2 = new StateMachine3d.StateTriple<>(
+                State.S2, State2.S2, State3.S2);
+        this.assertNoAllocation(() -> {
+            machine.sendEvent(data, query1, Event.E1);
+            machine.sendEvent(data, query2, Event.E2);
+        });
+        Assert.assertEquals(State3.S1, data.getS3());
+    }
+
+    @Test
+    public void testMetrics() {
+        StateMachine<Data, State, Event, Review> machine = new StateMachine<>(
+                (t) -> new StateMachine.StateSingle<>(t.getS()),
+                (t, s) -> t.setS(s.getS()), (t, s, e) -> new IllegalStateException());
+        StateMachine.StateSingle<State> s1 = new StateMachine.StateSingle<>(
+                State.S1);
+        StateMachine.StateSingle<State> s2 = new StateMachine.StateSingle<>(
+                State.S2);
+        machine.addState(s1, Event.E1, s2, (t, s, e, c) -> true);
+        machine.addState(s2, Event.E2, s1);
+        machine.getMetrics().setEnabled(true);
+        Data data = new Data();
+        this.assertNoAllocation(() -> {
+            machine.sendEvent(data, s1, Event.E1);
+            machine.sendEvent(data, s2, Event.E2);
+        });
+        Assert.assertEquals(2,
+                machine.getMetrics().snapshot().getTransitions().size());
+    }
+
+    @Test
+    public void testJournal() throws Exception {
+        StateMachine<Data, State, Event, Review> machine = new StateMachine<>(
+                (t) -> new StateMachine.StateSingle<>(t.getS()),
+                (t, s) -> t.setS(s.getS()), (t, s, e) -> new IllegalStateException());
+        StateMachine.StateSingle<State> s1 = new StateMachine.StateSingle<>(
+                State.S1);
+        StateMachine.StateSingle<State> s2 = new StateMachine.StateSingle<>(
+                State.S2);
+        machine.addState(s1, Event.E1, s2);
+        machine.addState(s2, Event.E2, s1);
+        // 分段足够容纳全部记录，不滚动
+        try (StateMachineJournal<Data, StateMachine.StateSingle<State>, Event, Review> journal = new StateMachineJournal<>(
+                this.folder.getRoot().toPath(),
+                StateMachineJournalCodec.ofEnum((t) -> 1L, State.class, Event.class),
+                StateMachineJournal.RECORD_SIZE * (WARMUP + EVENTS) * 2)) {
+            machine.addAction(journal);
+            Data data = new Data();
+            this.assertNoAllocation(() -> {
+                machine.sendEvent(data, s1, Event.E1);
+                machine.sendEvent(data, s2, Event.E2);
+            });
+            Assert.assertEquals((WARMUP + EVENTS) * 2, journal.getSequence());
+        }
+    }
+
+    private void assertNoAllocation(Runnable runnable) {
+        for (int i = 0; i < WARMUP; i++) {
+            runnable.run();
+        }
+        long thread = Thread.currentThread().getId();
+        long overhead = this.threadMXBean.getThreadAllocatedBytes(thread);
+        long start = this.threadMXBean.getThreadAllocatedBytes(thread);
+        overhead = start - overhead;
+        for (int i = 0; i < EVENTS; i++) {
+            runnable.run();
+        }
+        long bytes = this.threadMXBean.getThreadAllocatedBytes(thread) - start
+                - overhead;
+        Assert.assertTrue("每次状态机调用分配" + (double) bytes / EVENTS + "字节",
+                bytes < EVENTS);
+    }
+
+    private static class Listener<T, S, E>
+            implements AbstractStateMachineListener<T, S, E> {
+        @Override
+        public boolean isPost() {
+            return true;
+        }
+
+        @Override
+        public void listener(T t, S s, E e) {
+        }
+    }
+
+    private static class StateListener<T, S, E>
+            implements AbstractStateMachineStateListener<T, S, E> {
+        private final S state;
+
+        private StateListener(S state) {
+            this.state = state;
+        }
+
+        @Override
+        public S state() {
+            return this.state;
+        }
+
+        @Override
+        public boolean isEnter() {
+            return true;
+        }
+
+        @Override
+        public void listener(T t, E event) {
+        }
+    }
+
+    private static class EventListener<T, S, E, C>
+            implements AbstractStateMachineEventListener<T, S, E, C> {
+        private final E event;
+
+        private EventListener(E event) {
+            this.event = event;
+        }
+
+        @Override
+        public E event() {
+            return this.event;
+        }
+
+        @Override
+        public boolean isPost() {
+            return false;
+        }
+
+        @Override
+        public void listener(T t, S from, S to, C context) {
+        }
+    }
+
+    private static class TransformListener<T, S, E>
+            implements AbstractStateMachineTransformListener<T, S, E> {
+        private final S source;
+        private final S target;
+
+        private TransformListener(S source, S target) {
+            this.source = source;
+            this.target = target;
+        }
+
+        @Override
+        public S source() {
+            return this.source;
+        }
+
+        @Override
+        public S target() {
+            return this.target;
+        }
+
+        @Override
+        public void listener(T t, E event) {
+        }
+    }
+}
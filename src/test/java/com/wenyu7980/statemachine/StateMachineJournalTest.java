@@ -0,0 +1,268 @@
+package com.wenyu7980.statemachine;
+
+import com.wenyu7980.statemachine.journal.StateMachineJournal;
+import com.wenyu7980.statemachine.journal.StateMachineJournalCodec;
+import com.wenyu7980.statemachine.journal.StateMachineJournalReader;
+import com.wenyu7980.statemachine.journal.StateMachineRecovery;
+import com.wenyu7980.statemachine.journal.StateMachineRegistry;
+import com.wenyu7980.statemachine.journal.StateMachineJournalSync;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 测试状态迁移日志
+ *
+ * @author wenyu
+ */
+public class StateMachineJournalTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private StateMachineJournalCodec<Data, StateMachine.StateSingle<State>, Event> codec = StateMachineJournalCodec
+            .ofEnum((t) -> 7L, State.class, Event.class);
+    private StateMachine<Data, State, Event, Review> machine;
+
+    @Before
+    public void Before() {
+        this.machine = new StateMachine<>(
+                (t) -> new StateMachine.StateSingle<>(t.getS()),
+                (t, s) -> t.setS(s.getS()),
+                (t, s, e) -> new NoStateTransformException("没有状态转换{0},{1}",
+                        s.toString(), e.toString()));
+        this.machine.addState(new StateMachine.StateSingle<>(State.S1), Event.E1,
+                new StateMachine.StateSingle<>(State.S2));
+        this.machine.addState(new StateMachine.StateSingle<>(State.S2), Event.E2,
+                new StateMachine.StateSingle<>(State.S1));
+    }
+
+    @Test
+    public void testJournal() throws Exception {
+        Path directory = this.folder.getRoot().toPath().resolve("journal");
+        // 每个分段5条记录
+        try (StateMachineJournal<Data, StateMachine.StateSingle<State>, Event, Review> journal = new StateMachineJournal<>(
+                directory, this.codec, StateMachineJournal.RECORD_SIZE * 5)) {
+            this.machine.addAction(journal);
+            Data data = new Data();
+            data.setS(State.S1);
+            for (int i = 0; i < 6; i++) {
+                this.machine.sendEvent(data, Event.E1);
+                this.machine.sendEvent(data, Event.E2);
+            }
+            try {
+                this.machine.sendEvent(data, Event.E2);
+                Assert.fail();
+            } catch (NoStateTransformException e) {
+            }
+            Assert.assertEquals(12, journal.getSequence());
+        }
+        File[] segments = directory.toFile().listFiles();
+        Assert.assertNotNull(segments);
+        Assert.assertEquals(3, segments.length);
+        List<String> records = new ArrayList<>();
+        long last = new StateMachineJournalReader<>(directory, this.codec)
+                .read((sequence, timestamp, key, from, event, to) -> {
+                    Assert.assertEquals(7L, key);
+                    Assert.assertTrue(timestamp > 0);
+                    records.add(sequence + ":" + from.getS() + "-" + event + "-"
+                            + to.getS());
+                });
+        Assert.assertEquals(12, last);
+        Assert.assertEquals(12, records.size());
+        Assert.assertEquals("1:S1-E1-S2", records.get(0));
+        Assert.assertEquals("12:S2-E2-S1", records.get(11));
+        // 重新打开后继续写入
+        try (StateMachineJournal<Data, StateMachine.StateSingle<State>, Event, Review> journal = new StateMachineJournal<>(
+                directory, this.codec, StateMachineJournal.RECORD_SIZE * 5)) {
+            Assert.assertEquals(12, journal.getSequence());
+            Assert.assertEquals(13, journal.append(8L,
+                    this.codec.encodeState(new StateMachine.StateSingle<>(State.S1)),
+                    this.codec.encodeEvent(Event.E1),
+                    this.codec.encodeState(new StateMachine.StateSingle<>(State.S2))));
+        }
+        records.clear();
+        Assert.assertEquals(13, new StateMachineJournalReader<>(directory,
+                this.codec).read(10,
+                (sequence, timestamp, key, from, event, to) -> records
+                        .add(sequence + ":" + key)));
+        Assert.assertEquals("[11:7, 12:7, 13:8]", records.toString());
+    }
+
+    /**
+     * 写入一半的记录按分段结束处理，重新打开后被覆盖
+     */
+    @Test
+    public void testTornRecord() throws Exception {
+        Path directory = this.folder.newFolder().toPath();
+        try (StateMachineJournal<Data, StateMachine.StateSingle<State>, Event, Review> journal = new StateMachineJournal<>(
+                directory, this.codec, StateMachineJournal.RECORD_SIZE * 10)) {
+            for (int i = 1; i <= 5; i++) {
+                journal.append(i, 1, 1, 2);
+            }
+        }
+        // 第4条记录的key未写完
+        Path segment = directory.resolve(String.format("%020d", 1)
+                + StateMachineJournal.SUFFIX);
+        try (FileChannel channel = FileChannel.open(segment,
+                StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 0x7F }),
+                    StateMachineJournal.RECORD_SIZE * 3 + 16);
+        }
+        List<Long> keys = new ArrayList<>();
+        Assert.assertEquals(3, new StateMachineJournalReader<>(directory,
+                this.codec).read(
+                (sequence, timestamp, key, from, event, to) -> keys.add(key)));
+        Assert.assertEquals(Arrays.asList(1L, 2L, 3L), keys);
+        try (StateMachineJournal<Data, StateMachine.StateSingle<State>, Event, Review> journal = new StateMachineJournal<>(
+                directory, this.codec, StateMachineJournal.RECORD_SIZE * 10)) {
+            Assert.assertEquals(3, journal.getSequence());
+            Assert.assertEquals(4, journal.append(40, 1, 1, 2));
+        }
+        keys.clear();
+        Assert.assertEquals(4, new StateMachineJournalReader<>(directory,
+                this.codec).read(
+                (sequence, timestamp, key, from, event, to) -> keys.add(key)));
+        Assert.assertEquals(Arrays.asList(1L, 2L, 3L, 40L), keys);
+    }
+
+    @Test
+    public void testSync() throws Exception {
+        // 每5条刷盘
+        try (StateMachineJournal<Data, StateMachine.StateSingle<State>, Event, Review> journal = new StateMachineJournal<>(
+                this.folder.newFolder().toPath(), this.codec, 4096,
+                StateMachineJournalSync.everyRecords(5))) {
+            for (int i = 0; i < 12; i++) {
+                journal.append(i, 1, 1, 2);
+            }
+            Assert.assertEquals(10, journal.getSynced());
+            Assert.assertEquals(2, journal.getForces());
+        }
+        // 定时刷盘
+        try (StateMachineJournal<Data, StateMachine.StateSingle<State>, Event, Review> journal = new StateMachineJournal<>(
+                this.folder.newFolder().toPath(), this.codec, 4096,
+                StateMachineJournalSync.interval(10))) {
+            for (int i = 0; i < 3; i++) {
+                journal.append(i, 1, 1, 2);
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (journal.getSynced() < 3
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            Assert.assertEquals(3, journal.getSynced());
+        }
+    }
+
+    @Test
+    public void testSyncAlways() throws Exception {
+        try (StateMachineJournal<Data, StateMachine.StateSingle<State>, Event, Review> journal = new StateMachineJournal<>(
+                this.folder.newFolder().toPath(), this.codec,
+                StateMachineJournal.RECORD_SIZE * 100,
+                StateMachineJournalSync.always())) {
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < 4; i++) {
+                    futures.add(executor.submit(() -> {
+                        for (int j = 0; j < 250; j++) {
+                            long sequence = journal.append(j, 1, 1, 2);
+                            // 返回时已刷盘
+                            Assert.assertTrue(journal.getSynced() >= sequence);
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get(30, TimeUnit.SECONDS);
+                }
+            } finally {
+                executor.shutdown();
+            }
+            Assert.assertEquals(1000, journal.getSynced());
+            Assert.assertTrue(journal.getForces() <= 1000);
+        }
+    }
+
+    @Test
+    public void testRecovery() throws Exception {
+        Path directory = this.folder.newFolder().toPath();
+        Path snapshots = this.folder.newFolder().toPath();
+        int s1 = this.codec.encodeState(new StateMachine.StateSingle<>(State.S1));
+        int s2 = this.codec.encodeState(new StateMachine.StateSingle<>(State.S2));
+        int s3 = this.codec.encodeState(new StateMachine.StateSingle<>(State.S3));
+        int e1 = this.codec.encodeEvent(Event.E1);
+        StateMachineRecovery recovery = new StateMachineRecovery(directory,
+                snapshots).parallelism(4);
+        try (StateMachineJournal<Data, StateMachine.StateSingle<State>, Event, Review> journal = new StateMachineJournal<>(
+                directory, this.codec, StateMachineJournal.RECORD_SIZE * 64)) {
+            // 1000个数据S1->S2，偶数数据S2->S3
+            for (long key = 0; key < 1000; key++) {
+                journal.append(key, s1, e1, s2);
+            }
+            for (long key = 0; key < 1000; key += 2) {
+                journal.append(key, s2, e1, s3);
+            }
+            StateMachineRegistry registry = recovery.recover();
+            Assert.assertEquals(1500, registry.getSequence());
+            Assert.assertEquals(1000, registry.size());
+            Assert.assertEquals(s3, registry.get(0, 0));
+            Assert.assertEquals(s2, registry.get(999, 0));
+            Assert.assertEquals(0, registry.get(1000, 0));
+            recovery.snapshot(registry);
+            // 快照之后的日志
+            journal.append(999, s2, e1, s3);
+            journal.append(1000, s1, e1, s2);
+        }
+        StateMachineRegistry registry = recovery.load();
+        Assert.assertEquals(1500, registry.getSequence());
+        Assert.assertEquals(s2, registry.get(999, 0));
+        recovery.replay(registry);
+        Assert.assertEquals(1502, registry.getSequence());
+        Assert.assertEquals(1001, registry.size());
+        Assert.assertEquals(s3, registry.get(999, 0));
+        Assert.assertEquals(s2, registry.get(1000, 0));
+        Assert.assertEquals(s2, registry.get(1, 0));
+        Assert.assertEquals(s3, registry.get(998, 0));
+    }
+
+    /**
+     * 执行器线程数少于分区数时重放不阻塞
+     */
+    @Test
+    public void testReplaySingleThread() throws Exception {
+        Path directory = this.folder.newFolder().toPath();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (StateMachineJournal<Data, StateMachine.StateSingle<State>, Event, Review> journal = new StateMachineJournal<>(
+                directory, this.codec)) {
+            for (int state = 1; state <= 3; state++) {
+                for (long key = 0; key < 20000; key++) {
+                    journal.append(key, state - 1, 0, state);
+                }
+            }
+            StateMachineRegistry registry = new StateMachineRecovery(directory,
+                    this.folder.newFolder().toPath()).parallelism(8)
+                    .executor(executor).recover();
+            Assert.assertEquals(60000, registry.getSequence());
+            Assert.assertEquals(20000, registry.size());
+            for (long key = 0; key < 20000; key++) {
+                Assert.assertEquals(3, registry.get(key, 0));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
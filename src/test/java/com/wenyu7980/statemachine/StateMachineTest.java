@@ -1,275 +1,986 @@
-package com.wenyu7980.statemachine;
-
-import com.wenyu7980.statemachine.exception.StatemachineExceptionSupplier;
-import com.wenyu7980.statemachine.guard.StateMachineTextGuard;
-import com.wenyu7980.statemachine.listener.*;
-import org.junit.Assert;
-import org.junit.Before;
-import org.junit.Test;
-import org.mockito.Mockito;
-
-import java.math.BigDecimal;
-
-import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.when;
-
-public class StateMachineTest {
-
-    private StateMachine<Data, State, Event, Review> machine;
-    private StatemachineExceptionSupplier<Data, StateMachine.StateSingle<State>, Event, NoStateTransformException> supplier = (Data d, StateMachine.StateSingle<State> s, Event e) -> new NoStateTransformException(
-            "没有状态转换{0},{1}", s.toString(), e.toString());
-    private static final Review reviewPass = new Review(ReviewStatus.PASS);
-    private static final Review reviewReject = new Review(ReviewStatus.REJECT);
-
-    @Before
-    public void Before() {
-        this.machine = new StateMachine<>(
-                (t) -> new StateMachine.StateSingle<>(t.getS()), (t, s) -> {
-            t.setS(s.getS());
-        }, this.supplier);
-        // S1--E1-->S2
-        machine.addState(new StateMachine.StateSingle<>(State.S1), Event.E1,
-                new StateMachine.StateSingle<>(State.S2));
-        // S2--E2+false-->S3
-        machine.addState(new StateMachine.StateSingle<>(State.S2), Event.E2,
-                new StateMachine.StateSingle<>(State.S3),
-                (data, state, event, value) -> {
-                    return false;
-                });
-        // S2--E2+true-->S4
-        machine.addState(new StateMachine.StateSingle<>(State.S2), Event.E2,
-                new StateMachine.StateSingle<>(State.S4),
-                (data, state, event, value) -> {
-                    return true;
-                });
-        // S4--E2+true-->S5
-        machine.addState(new StateMachine.StateSingle<>(State.S4), Event.E3,
-                new StateMachine.StateSingle<>(State.S5),
-                new StateMachineTextGuard<>("1==1;"));
-        // S5--E4+<>1-->S5
-        machine.addState(new StateMachine.StateSingle<>(State.S5), Event.E4,
-                new StateMachine.StateSingle<>(State.S5),
-                new StateMachineTextGuard<>("#.inner.data<>1;"));
-        // S5--E4+==1-->S6
-        machine.addState(new StateMachine.StateSingle<>(State.S5), Event.E4,
-                new StateMachine.StateSingle<>(State.S6),
-                new StateMachineTextGuard<>("#.inner.data==1;"));
-        // S6--E5+PASS-->S7
-        machine.addState(new StateMachine.StateSingle<>(State.S6), Event.E5,
-                new StateMachine.StateSingle<>(State.S7),
-                new StateMachineTextGuard<>("$.status==\"PASS\";"));
-        // S6--E5+<>PASS-->S8
-        machine.addState(new StateMachine.StateSingle<>(State.S6), Event.E5,
-                new StateMachine.StateSingle<>(State.S8),
-                new StateMachineTextGuard<>("$.status<>\"PASS\";"));
-        // S8--E6+true-->S9
-        machine.addState(new StateMachine.StateSingle<>(State.S8), Event.E6,
-                new StateMachine.StateSingle<>(State.S9),
-                new StateMachineTextGuard<>(
-                        "$.status==\"PASS\" || $.status==\"Other\" ;"));
-    }
-
-    @Test
-    public void test() {
-        Data data = new Data();
-        Assert.assertEquals("S1--E1-->S2",
-                new StateMachine.StateSingle<>(State.S2),
-                machine.sendEvent(data,
-                        new StateMachine.StateSingle<>(State.S1), Event.E1));
-        Assert.assertEquals("S2--E2-->S4",
-                new StateMachine.StateSingle<>(State.S4),
-                machine.sendEvent(data,
-                        new StateMachine.StateSingle<>(State.S2), Event.E2));
-    }
-
-    @Test
-    public void TestStateMachineTextGuard() {
-        Data data = new Data(new Data.Inner(new BigDecimal(1)));
-        Assert.assertEquals("S4--E3-->S5",
-                new StateMachine.StateSingle<>(State.S5),
-                machine.sendEvent(data,
-                        new StateMachine.StateSingle<>(State.S4), Event.E3));
-        Assert.assertEquals("S5--E4-->S6",
-                new StateMachine.StateSingle<>(State.S6),
-                machine.sendEvent(data,
-                        new StateMachine.StateSingle<>(State.S5), Event.E4));
-    }
-
-    @Test
-    public void TestStateMachineTextGuard$() {
-        Data data = new Data(new Data.Inner(new BigDecimal(1)));
-        Assert.assertEquals("S6--E5+PASS-->S7",
-                new StateMachine.StateSingle<>(State.S7),
-                machine.sendEvent(data,
-                        new StateMachine.StateSingle<>(State.S6), Event.E5,
-                        reviewPass));
-        Assert.assertEquals("S6--E5+<>PASS-->S8",
-                new StateMachine.StateSingle<>(State.S8),
-                machine.sendEvent(data,
-                        new StateMachine.StateSingle<>(State.S6), Event.E5,
-                        reviewReject));
-    }
-
-    @Test
-    public void TestStateMachineTextGuardLogic() {
-        Data data = new Data(new Data.Inner(new BigDecimal(1)));
-        // S8--E6+true-->S9
-        Assert.assertEquals("S8--E6+true-->S9",
-                new StateMachine.StateSingle<>(State.S9),
-                machine.sendEvent(data,
-                        new StateMachine.StateSingle<>(State.S8), Event.E6,
-                        reviewPass));
-    }
-
-    /**
-     * 测试无状态转移异常
-     */
-    @Test(expected = NoStateTransformException.class)
-    public void testNoStateTransformException() {
-        Data data = new Data();
-        machine.sendEvent(data, new StateMachine.StateSingle<>(State.S1),
-                Event.E3);
-    }
-
-    @Test
-    public void testBigDecimalZero() {
-        Data data = new Data();
-        StateMachine<Data, State, Event, Review> machine = new StateMachine<>(
-                (t) -> new StateMachine.StateSingle<>(t.getS()), (t, s) -> {
-            t.setS(s.getS());
-        }, this.supplier);
-        machine.addState(new StateMachine.StateSingle<>(State.S1), Event.E1,
-                new StateMachine.StateSingle<>(State.S2),
-                new StateMachineTextGuard<>("#.zero == 0.0;"));
-        machine.addState(new StateMachine.StateSingle<>(State.S2), Event.E2,
-                new StateMachine.StateSingle<>(State.S3),
-                new StateMachineTextGuard<>("#.zero <> 1.0;"));
-        Assert.assertEquals("S1--E1+true-->S2",
-                new StateMachine.StateSingle<>(State.S2),
-                machine.sendEvent(data,
-                        new StateMachine.StateSingle<>(State.S1), Event.E1));
-        Assert.assertEquals("S2--E2+true-->S3",
-                new StateMachine.StateSingle<>(State.S3),
-                machine.sendEvent(data,
-                        new StateMachine.StateSingle<>(State.S2), Event.E2));
-    }
-
-    @Test
-    public void testBoolean() {
-        Data data = new Data();
-        StateMachine<Data, State, Event, Review> machine = new StateMachine<>(
-                (t) -> new StateMachine.StateSingle<>(t.getS()), (t, s) -> {
-            t.setS(s.getS());
-        }, this.supplier);
-        machine.addState(new StateMachine.StateSingle<>(State.S1), Event.E1,
-                new StateMachine.StateSingle<>(State.S2),
-                new StateMachineTextGuard<>("#.uBoolean;"));
-        machine.addState(new StateMachine.StateSingle<>(State.S2), Event.E2,
-                new StateMachine.StateSingle<>(State.S3),
-                new StateMachineTextGuard<>("!#.lBoolean ;"));
-        machine.addState(new StateMachine.StateSingle<>(State.S3), Event.E3,
-                new StateMachine.StateSingle<>(State.S4),
-                new StateMachineTextGuard<>("!(#.lBoolean && #.lBoolean);"));
-        Assert.assertEquals("S3--E3+!false-->S4",
-                new StateMachine.StateSingle<>(State.S4),
-                machine.sendEvent(data,
-                        new StateMachine.StateSingle<>(State.S3), Event.E3));
-        Assert.assertEquals("S1--E1+true-->S2",
-                new StateMachine.StateSingle<>(State.S2),
-                machine.sendEvent(data,
-                        new StateMachine.StateSingle<>(State.S1), Event.E1));
-        Assert.assertEquals("S2--E2+true-->S3",
-                new StateMachine.StateSingle<>(State.S3),
-                machine.sendEvent(data,
-                        new StateMachine.StateSingle<>(State.S2), Event.E2));
-    }
-
-    /**
-     * 测试是否正常调用listener
-     */
-    @SuppressWarnings("unchecked")
-    @Test
-    public void testListener() {
-        Data data = new Data();
-        StateMachine<Data, State, Event, Review> machine = new StateMachine<>(
-                (t) -> new StateMachine.StateSingle<>(t.getS()), (t, s) -> {
-            t.setS(s.getS());
-        }, this.supplier);
-        machine.addState(new StateMachine.StateSingle<>(State.S1), Event.E1,
-                new StateMachine.StateSingle<>(State.S2));
-        machine.addState(new StateMachine.StateSingle<>(State.S2), Event.E2,
-                new StateMachine.StateSingle<>(State.S3));
-        // preListener
-        StateMachineListener<Data, State, Event> preListener = Mockito
-                .mock(StateMachineListener.class);
-        when(preListener.isPost()).thenReturn(false);
-        machine.addListener(preListener);
-        // preEventListener
-        StateMachineEventListener<Data, State, Event, Review> preEventListener = Mockito
-                .mock(StateMachineEventListener.class);
-        when(preEventListener.isPost()).thenReturn(false);
-        when(preEventListener.event()).thenReturn(Event.E1);
-        machine.addEventListener(preEventListener);
-        // exitStateListener
-        StateMachineStateListener<Data, State, Event> exitStateListener = Mockito
-                .mock(StateMachineStateListener.class);
-        when(exitStateListener.isEnter()).thenReturn(false);
-        when(exitStateListener.state())
-                .thenReturn(new StateMachine.StateSingle<>(State.S1));
-        machine.addStateListener(exitStateListener);
-        // transformListener
-        StateMachineTransformListener<Data, State, Event> transformListener = Mockito
-                .mock(StateMachineTransformListener.class);
-        when(transformListener.source())
-                .thenReturn(new StateMachine.StateSingle<>(State.S1));
-        when(transformListener.target())
-                .thenReturn(new StateMachine.StateSingle<>(State.S2));
-        machine.addTransformListener(transformListener);
-        // actionListener
-        StateMachineActionListener<Data, State, Event, Review> actionListener = Mockito
-                .mock(StateMachineActionListener.class);
-        machine.addAction(actionListener);
-        // enterStateListener
-        StateMachineStateListener<Data, State, Event> enterStateListener = Mockito
-                .mock(StateMachineStateListener.class);
-        when(enterStateListener.isEnter()).thenReturn(true);
-        when(enterStateListener.state())
-                .thenReturn(new StateMachine.StateSingle<>(State.S2));
-        machine.addStateListener(enterStateListener);
-        // preEventListener
-        StateMachineEventListener<Data, State, Event, Review> postEventListener = Mockito
-                .mock(StateMachineEventListener.class);
-        when(postEventListener.isPost()).thenReturn(true);
-        when(postEventListener.event()).thenReturn(Event.E1);
-        machine.addEventListener(postEventListener);
-        // postListener
-        StateMachineListener<Data, State, Event> postListener = Mockito
-                .mock(StateMachineListener.class);
-        when(postListener.isPost()).thenReturn(true);
-        machine.addListener(postListener);
-        machine.sendEvent(data, new StateMachine.StateSingle<>(State.S1),
-                Event.E1);
-        // 确认调用before
-        verify(preListener)
-                .listener(data, new StateMachine.StateSingle<>(State.S1),
-                        Event.E1);
-        verify(preEventListener)
-                .listener(data, new StateMachine.StateSingle<>(State.S1), null,
-                        null);
-        verify(exitStateListener).listener(data, Event.E1);
-        verify(transformListener).listener(data, Event.E1);
-        verify(actionListener)
-                .listener(data, new StateMachine.StateSingle<>(State.S1),
-                        Event.E1, new StateMachine.StateSingle<>(State.S2),
-                        null);
-        verify(enterStateListener).listener(data, Event.E1);
-        verify(postEventListener)
-                .listener(data, new StateMachine.StateSingle<>(State.S1),
-                        new StateMachine.StateSingle<>(State.S2), null);
-        verify(postListener)
-                .listener(data, new StateMachine.StateSingle<>(State.S2),
-                        Event.E1);
-        Assert.assertEquals(State.S2, data.getS());
-    }
-
-}
+package com.wenyu7980.statemachine;
+
+import com.wenyu7980.statemachine.concurrent.StateMachineRetryPolicy;
+import com.wenyu7980.statemachine.exception.StatemachineConflictException;
+import com.wenyu7980.statemachine.exception.StatemachineExceptionSupplier;
+import com.wenyu7980.statemachine.guard.StateMachineTextGuard;
+import com.wenyu7980.statemachine.listener.*;
+import com.wenyu7980.statemachine.metrics.StateMachineMetrics;
+import com.wenyu7980.statemachine.metrics.StateMachineMetricsSnapshot;
+import com.wenyu7980.statemachine.metrics.StateMachinePhase;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class StateMachineTest {
+
+    private StateMachine<Data, State, Event, Review> machine;
+    private StatemachineExceptionSupplier<Data, StateMachine.StateSingle<State>, Event, NoStateTransformException> supplier = (Data d, StateMachine.StateSingle<State> s, Event e) -> new NoStateTransformException(
+            "没有状态转换{0},{1}", s.toString(), e.toString());
+    private static final Review reviewPass = new Review(ReviewStatus.PASS);
+    private static final Review reviewReject = new Review(ReviewStatus.REJECT);
+
+    @Before
+    public void Before() {
+        this.machine = new StateMachine<>(
+                (t) -> new StateMachine.StateSingle<>(t.getS()), (t, s) -> {
+            t.setS(s.getS());
+        }, this.supplier);
+        // S1--E1-->S2
+        machine.addState(new StateMachine.StateSingle<>(State.S1), Event.E1,
+                new StateMachine.StateSingle<>(State.S2));
+        // S2--E2+false-->S3
+        machine.addState(new StateMachine.StateSingle<>(State.S2), Event.E2,
+                new StateMachine.StateSingle<>(State.S3),
+                (data, state, event, value) -> {
+                    return false;
+                });
+        // S2--E2+true-->S4
+        machine.addState(new StateMachine.StateSingle<>(State.S2), Event.E2,
+                new StateMachine.StateSingle<>(State.S4),
+                (data, state, event, value) -> {
+                    return true;
+                });
+        // S4--E2+true-->S5
+        machine.addState(new StateMachine.StateSingle<>(State.S4), Event.E3,
+                new StateMachine.StateSingle<>(State.S5),
+                new StateMachineTextGuard<>("1==1;"));
+        // S5--E4+<>1-->S5
+        machine.addState(new StateMachine.StateSingle<>(State.S5), Event.E4,
+                new StateMachine.StateSingle<>(State.S5),
+                new StateMachineTextGuard<>("#.inner.data<>1;"));
+        // S5--E4+==1-->S6
+        machine.addState(new StateMachine.StateSingle<>(State.S5), Event.E4,
+                new StateMachine.StateSingle<>(State.S6),
+                new StateMachineTextGuard<>("#.inner.data==1;"));
+        // S6--E5+PASS-->S7
+        machine.addState(new StateMachine.StateSingle<>(State.S6), Event.E5,
+                new StateMachine.StateSingle<>(State.S7),
+                new StateMachineTextGuard<>("$.status==\"PASS\";"));
+        // S6--E5+<>PASS-->S8
+        machine.addState(new StateMachine.StateSingle<>(State.S6), Event.E5,
+                new StateMachine.StateSingle<>(State.S8),
+                new StateMachineTextGuard<>("$.status<>\"PASS\";"));
+        // S8--E6+true-->S9
+        machine.addState(new StateMachine.StateSingle<>(State.S8), Event.E6,
+                new StateMachine.StateSingle<>(State.S9),
+                new StateMachineTextGuard<>(
+                        "$.status==\"PASS\" || $.status==\"Other\" ;"));
+    }
+
+    @Test
+    public void test() {
+        Data data = new Data();
+        Assert.assertEquals("S1--E1-->S2",
+                new StateMachine.StateSingle<>(State.S2),
+                machine.sendEvent(data,
+                        new StateMachine.StateSingle<>(State.S1), Event.E1));
+        Assert.assertEquals("S2--E2-->S4",
+                new StateMachine.StateSingle<>(State.S4),
+                machine.sendEvent(data,
+                        new StateMachine.StateSingle<>(State.S2), Event.E2));
+    }
+
+    @Test
+    public void TestStateMachineTextGuard() {
+        Data data = new Data(new Data.Inner(new BigDecimal(1)));
+        Assert.assertEquals("S4--E3-->S5",
+                new StateMachine.StateSingle<>(State.S5),
+                machine.sendEvent(data,
+                        new StateMachine.StateSingle<>(State.S4), Event.E3));
+        Assert.assertEquals("S5--E4-->S6",
+                new StateMachine.StateSingle<>(State.S6),
+                machine.sendEvent(data,
+                        new StateMachine.StateSingle<>(State.S5), Event.E4));
+    }
+
+    @Test
+    public void TestStateMachineTextGuard$() {
+        Data data = new Data(new Data.Inner(new BigDecimal(1)));
+        Assert.assertEquals("S6--E5+PASS-->S7",
+                new StateMachine.StateSingle<>(State.S7),
+                machine.sendEvent(data,
+                        new StateMachine.StateSingle<>(State.S6), Event.E5,
+                        reviewPass));
+        Assert.assertEquals("S6--E5+<>PASS-->S8",
+                new StateMachine.StateSingle<>(State.S8),
+                machine.sendEvent(data,
+                        new StateMachine.StateSingle<>(State.S6), Event.E5,
+                        reviewReject));
+    }
+
+    @Test
+    public void TestStateMachineTextGuardLogic() {
+        Data data = new Data(new Data.Inner(new BigDecimal(1)));
+        // S8--E6+true-->S9
+        Assert.assertEquals("S8--E6+true-->S9",
+                new StateMachine.StateSingle<>(State.S9),
+                machine.sendEvent(data,
+                        new StateMachine.StateSingle<>(State.S8), Event.E6,
+                        reviewPass));
+    }
+
+    /**
+     * 测试无状态转移异常
+     */
+    @Test(expected = NoStateTransformException.class)
+    public void testNoStateTransformException() {
+        Data data = new Data();
+        machine.sendEvent(data, new StateMachine.StateSingle<>(State.S1),
+                Event.E3);
+    }
+
+    @Test
+    public void testBigDecimalZero() {
+        Data data = new Data();
+        StateMachine<Data, State, Event, Review> machine = new StateMachine<>(
+                (t) -> new StateMachine.StateSingle<>(t.getS()), (t, s) -> {
+            t.setS(s.getS());
+        }, this.supplier);
+        machine.addState(new StateMachine.StateSingle<>(State.S1), Event.E1,
+                new StateMachine.StateSingle<>(State.S2),
+                new StateMachineTextGuard<>("#.zero == 0.0;"));
+        machine.addState(new StateMachine.StateSingle<>(State.S2), Event.E2,
+                new StateMachine.StateSingle<>(State.S3),
+                new StateMachineTextGuard<>("#.zero <> 1.0;"));
+        Assert.assertEquals("S1--E1+true-->S2",
+                new StateMachine.StateSingle<>(State.S2),
+                machine.sendEvent(data,
+                        new StateMachine.StateSingle<>(State.S1), Event.E1));
+        Assert.assertEquals("S2--E2+true-->S3",
+                new StateMachine.StateSingle<>(State.S3),
+                machine.sendEvent(data,
+                        new StateMachine.StateSingle<>(State.S2), Event.E2));
+    }
+
+    @Test
+    public void testBoolean() {
+        Data data = new Data();
+        StateMachine<Data, State, Event, Review> machine = new StateMachine<>(
+                (t) -> new StateMachine.StateSingle<>(t.getS()), (t, s) -> {
+            t.setS(s.getS());
+        }, this.supplier);
+        machine.addState(new StateMachine.StateSingle<>(State.S1), Event.E1,
+                new StateMachine.StateSingle<>(State.S2),
+                new StateMachineTextGuard<>("#.uBoolean;"));
+        machine.addState(new StateMachine.StateSingle<>(State.S2), Event.E2,
+                new StateMachine.StateSingle<>(State.S3),
+                new StateMachineTextGuard<>("!#.lBoolean ;"));
+        machine.addState(new StateMachine.StateSingle<>(State.S3), Event.E3,
+                new StateMachine.StateSingle<>(State.S4),
+                new StateMachineTextGuard<>("!(#.lBoolean && #.lBoolean);"));
+        Assert.assertEquals("S3--E3+!false-->S4",
+                new StateMachine.StateSingle<>(State.S4),
+                machine.sendEvent(data,
+                        new StateMachine.StateSingle<>(State.S3), Event.E3));
+        Assert.assertEquals("S1--E1+true-->S2",
+                new StateMachine.StateSingle<>(State.S2),
+                machine.sendEvent(data,
+                        new StateMachine.StateSingle<>(State.S1), Event.E1));
+        Assert.assertEquals("S2--E2+true-->S3",
+                new StateMachine.StateSingle<>(State.S3),
+                machine.sendEvent(data,
+                        new StateMachine.StateSingle<>(State.S2), Event.E2));
+    }
+
+    /**
+     * 测试通配源状态
+     */
+    @Test
+    public void testWildcardFrom() {
+        Data data = new Data();
+        StateMachine<Data, State, Event, Review> machine = new StateMachine<>(
+                (t) -> new StateMachine.StateSingle<>(t.getS()), (t, s) -> {
+            t.setS(s.getS());
+        }, this.supplier);
+        // S1--E1-->S2
+        machine.addState(new StateMachine.StateSingle<>(State.S1), Event.E1,
+                new StateMachine.StateSingle<>(State.S2));
+        // *--E2-->END
+        machine.addState(new StateMachine.StateSingle<>(null), Event.E2,
+                new StateMachine.StateSingle<>(State.END));
+        // S3--E1+false-->S4
+        machine.addState(new StateMachine.StateSingle<>(State.S3), Event.E1,
+                new StateMachine.StateSingle<>(State.S4),
+                (d, state, event, value) -> false);
+        Assert.assertEquals("S1--E1-->S2",
+                new StateMachine.StateSingle<>(State.S2),
+                machine.sendEvent(data,
+                        new StateMachine.StateSingle<>(State.S1), Event.E1));
+        Assert.assertEquals("S1--E2-->END",
+                new StateMachine.StateSingle<>(State.END),
+                machine.sendEvent(data,
+                        new StateMachine.StateSingle<>(State.S1), Event.E2));
+        Assert.assertEquals("S9--E2-->END",
+                new StateMachine.StateSingle<>(State.END),
+                machine.sendEvent(data,
+                        new StateMachine.StateSingle<>(State.S9), Event.E2));
+        Assert.assertEquals("*--E1-->S2",
+                new StateMachine.StateSingle<>(State.S2),
+                machine.sendEvent(data, new StateMachine.StateSingle<>(null),
+                        Event.E1));
+        // S1--E2-->S5 与 *--E2-->END 同时匹配
+        machine.addState(new StateMachine.StateSingle<>(State.S1), Event.E2,
+                new StateMachine.StateSingle<>(State.S5));
+        try {
+            machine.sendEvent(data, new StateMachine.StateSingle<>(State.S1),
+                    Event.E2);
+            Assert.fail("S1--E2 多个状态迁移");
+        } catch (NoStateTransformException e) {
+            // 预期
+        }
+        Assert.assertEquals("S2--E2-->END",
+                new StateMachine.StateSingle<>(State.END),
+                machine.sendEvent(data,
+                        new StateMachine.StateSingle<>(State.S2), Event.E2));
+    }
+
+    /**
+     * 测试编译后的状态机
+     */
+    @Test
+    public void testBuild() {
+        Data data = new Data();
+        CompiledStateMachine<Data, StateMachine.StateSingle<State>, Event, Review> compiled = machine
+                .build();
+        Assert.assertSame(compiled, machine.build());
+        machine.addState(new StateMachine.StateSingle<>(State.S1), Event.E6,
+                new StateMachine.StateSingle<>(State.END));
+        Assert.assertNotSame(compiled, machine.build());
+        Assert.assertEquals("S1--E6-->END",
+                new StateMachine.StateSingle<>(State.END),
+                machine.build().sendEvent(data,
+                        new StateMachine.StateSingle<>(State.S1), Event.E6));
+        try {
+            compiled.sendEvent(data, new StateMachine.StateSingle<>(State.S1),
+                    Event.E6);
+            Assert.fail("编译后的状态机不受定义变更影响");
+        } catch (NoStateTransformException e) {
+            // 预期
+        }
+        Assert.assertEquals("S1--E1-->S2",
+                new StateMachine.StateSingle<>(State.S2),
+                compiled.sendEvent(data,
+                        new StateMachine.StateSingle<>(State.S1), Event.E1));
+    }
+
+    /**
+     * 测试批量状态切换
+     */
+    @Test
+    public void testSendEvents() {
+        List<Data> datas = new ArrayList<>();
+        for (State state : new State[] { State.S1, State.S3, State.S1,
+                State.S2 }) {
+            Data data = new Data();
+            data.setS(state);
+            datas.add(data);
+        }
+        StateMachineBatchResult<Data, StateMachine.StateSingle<State>> result = machine
+                .sendEvents(datas, Event.E1);
+        Assert.assertFalse(result.isAllTransitioned());
+        Assert.assertEquals(2, result.getTransitioned().size());
+        Assert.assertEquals(2, result.getRejected().size());
+        for (StateMachineBatchResult.Transition<Data, StateMachine.StateSingle<State>> transition : result
+                .getTransitioned()) {
+            Assert.assertEquals(new StateMachine.StateSingle<>(State.S1),
+                    transition.getFrom());
+            Assert.assertEquals(new StateMachine.StateSingle<>(State.S2),
+                    transition.getTo());
+            Assert.assertSame(datas.get(transition.getIndex()),
+                    transition.getT());
+        }
+        for (StateMachineBatchResult.Rejection<Data, StateMachine.StateSingle<State>> rejection : result
+                .getRejected()) {
+            Assert.assertTrue(rejection
+                    .getException() instanceof NoStateTransformException);
+        }
+        Assert.assertEquals(State.S2, datas.get(0).getS());
+        Assert.assertEquals(State.S3, datas.get(1).getS());
+        Assert.assertEquals(State.S2, datas.get(2).getS());
+        Assert.assertEquals(State.S2, datas.get(3).getS());
+    }
+
+    /**
+     * 测试批量状态切换时监听抛出异常
+     */
+    @Test
+    public void testSendEventsListenerError() {
+        List<Data> datas = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Data data = new Data();
+            data.setS(State.S1);
+            datas.add(data);
+        }
+        for (boolean post : new boolean[] { false, true }) {
+            machine.addListener(new AbstractStateMachineListener<Data, StateMachine.StateSingle<State>, Event>() {
+                @Override
+                public boolean isPost() {
+                    return post;
+                }
+
+                @Override
+                public void listener(Data data,
+                        StateMachine.StateSingle<State> s, Event e) {
+                    if (data == datas.get(post ? 1 : 2)) {
+                        throw new IllegalStateException(
+                                post ? "post" : "pre");
+                    }
+                }
+            });
+        }
+        StateMachineBatchResult<Data, StateMachine.StateSingle<State>> result = machine
+                .sendEvents(datas, Event.E1);
+        Assert.assertFalse(result.isAllTransitioned());
+        Assert.assertFalse(result.isAllSucceeded());
+        // 状态已改变后监听抛出异常，记为迁移成功并保留异常
+        Assert.assertEquals(2, result.getTransitioned().size());
+        Assert.assertNull(result.getTransitioned().get(0).getException());
+        StateMachineBatchResult.Transition<Data, StateMachine.StateSingle<State>> transition = result
+                .getTransitioned().get(1);
+        Assert.assertEquals(1, transition.getIndex());
+        Assert.assertEquals(new StateMachine.StateSingle<>(State.S2),
+                transition.getTo());
+        Assert.assertEquals("post", transition.getException().getMessage());
+        Assert.assertEquals(State.S2, datas.get(1).getS());
+        // 迁移前监听抛出异常，状态未改变
+        Assert.assertEquals(1, result.getRejected().size());
+        Assert.assertEquals(2, result.getRejected().get(0).getIndex());
+        Assert.assertEquals("pre",
+                result.getRejected().get(0).getException().getMessage());
+        Assert.assertEquals(State.S1, datas.get(2).getS());
+    }
+
+    /**
+     * 测试并行批量状态切换
+     */
+    @Test
+    public void testSendEventsParallel() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (StateMachineBatchOptions options : new StateMachineBatchOptions[] {
+                    new StateMachineBatchOptions().threshold(64).ordered(true),
+                    new StateMachineBatchOptions().threshold(64).ordered(true)
+                            .executor(executor) }) {
+                List<Data> datas = new ArrayList<>();
+                for (int i = 0; i < 2000; i++) {
+                    Data data = new Data();
+                    data.setS(i % 3 == 0 ? State.S3 : State.S1);
+                    datas.add(data);
+                }
+                StateMachineBatchResult<Data, StateMachine.StateSingle<State>> result = machine
+                        .sendEvents(datas, Event.E1, null, options);
+                Assert.assertEquals(1333, result.getTransitioned().size());
+                Assert.assertEquals(667, result.getRejected().size());
+                int last = -1;
+                for (StateMachineBatchResult.Transition<Data, StateMachine.StateSingle<State>> transition : result
+                        .getTransitioned()) {
+                    Assert.assertTrue(transition.getIndex() > last);
+                    Assert.assertEquals(State.S2, transition.getT().getS());
+                    last = transition.getIndex();
+                }
+                for (StateMachineBatchResult.Rejection<Data, StateMachine.StateSingle<State>> rejection : result
+                        .getRejected()) {
+                    Assert.assertEquals(0, rejection.getIndex() % 3);
+                    Assert.assertEquals(State.S3, rejection.getT().getS());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 测试异步状态切换
+     */
+    @Test
+    public void testSendEventAsync() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            StateMachine<Data, State, Event, Review> machine = new StateMachine<>(
+                    (t) -> new StateMachine.StateSingle<>(t.getS()),
+                    (t, s) -> t.setS(s.getS()), this.supplier);
+            machine.addState(new StateMachine.StateSingle<>(State.S1), Event.E1,
+                    new StateMachine.StateSingle<>(State.S2));
+            machine.addState(new StateMachine.StateSingle<>(State.S2), Event.E2,
+                    new StateMachine.StateSingle<>(State.S1));
+            machine.async(executor, null, 2);
+            List<Data> datas = new ArrayList<>();
+            List<CompletableFuture<StateMachine.StateSingle<State>>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                Data data = new Data();
+                data.setS(State.S1);
+                datas.add(data);
+            }
+            // 同一数据的事件必须按提交顺序执行，否则S1--E2没有状态迁移
+            for (int i = 0; i < 200; i++) {
+                for (Data data : datas) {
+                    futures.add(machine.sendEventAsync(data,
+                            i % 2 == 0 ? Event.E1 : Event.E2));
+                }
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                    .get(30, TimeUnit.SECONDS);
+            for (Data data : datas) {
+                Assert.assertEquals(State.S1, data.getS());
+            }
+            try {
+                machine.sendEventAsync(datas.get(0), Event.E2)
+                        .get(30, TimeUnit.SECONDS);
+                Assert.fail("S1--E2 没有状态迁移");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(
+                        e.getCause() instanceof NoStateTransformException);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 测试分段锁
+     */
+    @Test
+    public void testLockStripes() throws Exception {
+        StateMachine<Data, State, Event, Review> machine = new StateMachine<>(
+                (t) -> new StateMachine.StateSingle<>(t.getS()),
+                (t, s) -> t.setS(s.getS()), this.supplier);
+        machine.addState(new StateMachine.StateSingle<>(State.S1), Event.E1,
+                new StateMachine.StateSingle<>(State.S2));
+        machine.addState(new StateMachine.StateSingle<>(State.S2), Event.E1,
+                new StateMachine.StateSingle<>(State.S1));
+        int[] count = new int[1];
+        machine.addAction((t, from, e, to, c) -> count[0]++);
+        machine.lockStripes(16, null);
+        Data data = new Data();
+        data.setS(State.S1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 500; j++) {
+                        machine.sendEvent(data, Event.E1);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertEquals(2000, count[0]);
+        Assert.assertEquals(State.S1, data.getS());
+    }
+
+    /**
+     * 测试比较并设置状态
+     */
+    @Test
+    public void testCompareAndSet() {
+        StateMachine<AtomicReference<String>, String, String, Object> machine = new StateMachine<>(
+                (t) -> new StateMachine.StateSingle<>(t.get()),
+                (t, expected, update) -> t
+                        .compareAndSet(expected.getS(), update.getS()),
+                (t, s, e) -> new NoStateTransformException("没有状态转换{0},{1}",
+                        s.toString(), e));
+        machine.addState(new StateMachine.StateSingle<>("S1"), "E1",
+                new StateMachine.StateSingle<>("S2"));
+        machine.addState(new StateMachine.StateSingle<>("S3"), "E1",
+                new StateMachine.StateSingle<>("S2"));
+        AtomicReference<String> data = new AtomicReference<>("S1");
+        // 第一次迁移前状态被修改为S3，重试后由S3迁移
+        int[] modified = new int[1];
+        machine.addListener(new AbstractStateMachineListener<AtomicReference<String>, StateMachine.StateSingle<String>, String>() {
+            @Override
+            public boolean isPost() {
+                return false;
+            }
+
+            @Override
+            public void listener(AtomicReference<String> t,
+                    StateMachine.StateSingle<String> s, String e) {
+                if (modified[0]++ == 0) {
+                    t.set("S3");
+                }
+            }
+        });
+        Assert.assertEquals(new StateMachine.StateSingle<>("S2"),
+                machine.sendEvent(data, "E1"));
+        Assert.assertEquals("S2", data.get());
+        Assert.assertEquals(1, machine.getRetryStatistics().getConflicts());
+        Assert.assertEquals(1, machine.getRetryStatistics().getRetries());
+        Assert.assertEquals(0, machine.getRetryStatistics().getFailures());
+        // 不重试
+        machine.retryPolicy(StateMachineRetryPolicy.failFast());
+        modified[0] = 0;
+        data.set("S1");
+        try {
+            machine.sendEvent(data, "E1");
+            Assert.fail();
+        } catch (StatemachineConflictException e) {
+            Assert.assertEquals(new StateMachine.StateSingle<>("S1"),
+                    e.getExpected());
+        }
+        Assert.assertEquals("S3", data.get());
+        Assert.assertEquals(2, machine.getRetryStatistics().getConflicts());
+        Assert.assertEquals(1, machine.getRetryStatistics().getRetries());
+        Assert.assertEquals(1, machine.getRetryStatistics().getFailures());
+        // 批量迁移同样重试，记录重试后的现在状态
+        machine.retryPolicy(StateMachineRetryPolicy.defaultPolicy());
+        modified[0] = 0;
+        data.set("S1");
+        StateMachineBatchResult<AtomicReference<String>, StateMachine.StateSingle<String>> result = machine
+                .sendEvents(Collections.singletonList(data), "E1");
+        Assert.assertTrue(result.isAllTransitioned());
+        Assert.assertEquals(new StateMachine.StateSingle<>("S3"),
+                result.getTransitioned().get(0).getFrom());
+        Assert.assertEquals("S2", data.get());
+        Assert.assertEquals(3, machine.getRetryStatistics().getConflicts());
+        Assert.assertEquals(2, machine.getRetryStatistics().getRetries());
+        // 重试用尽时拒绝，记录最后一次的现在状态
+        machine.retryPolicy(StateMachineRetryPolicy.failFast());
+        modified[0] = 0;
+        data.set("S1");
+        result = machine.sendEvents(Collections.singletonList(data), "E1");
+        Assert.assertEquals(1, result.getRejected().size());
+        Assert.assertEquals(new StateMachine.StateSingle<>("S1"),
+                result.getRejected().get(0).getState());
+        Assert.assertTrue(result.getRejected().get(0)
+                .getException() instanceof StatemachineConflictException);
+        Assert.assertEquals(2, machine.getRetryStatistics().getFailures());
+    }
+
+    /**
+     * 测试比较并设置时已被修改的状态在监听之前冲突
+     */
+    @Test
+    public void testConflictBeforeListeners() {
+        StateMachine<AtomicReference<String>, String, String, Object> machine = new StateMachine<>(
+                (t) -> new StateMachine.StateSingle<>(t.get()),
+                (t, expected, update) -> t
+                        .compareAndSet(expected.getS(), update.getS()),
+                (t, s, e) -> new NoStateTransformException("没有状态转换{0},{1}",
+                        s.toString(), e));
+        machine.addState(new StateMachine.StateSingle<>("S1"), "E1",
+                new StateMachine.StateSingle<>("S2"));
+        machine.addState(new StateMachine.StateSingle<>("S3"), "E1",
+                new StateMachine.StateSingle<>("S2"));
+        AtomicReference<String> first = new AtomicReference<>("S1");
+        AtomicReference<String> second = new AtomicReference<>("S1");
+        List<String> called = new ArrayList<>();
+        machine.addListener(new AbstractStateMachineListener<AtomicReference<String>, StateMachine.StateSingle<String>, String>() {
+            @Override
+            public boolean isPost() {
+                return false;
+            }
+
+            @Override
+            public void listener(AtomicReference<String> t,
+                    StateMachine.StateSingle<String> s, String e) {
+                called.add(s.getS());
+                // 第一个数据迁移时修改第二个数据的状态
+                if (t == first) {
+                    second.set("S3");
+                }
+            }
+        });
+        // 调用方提供的状态已过期，不执行监听
+        try {
+            machine.sendEvent(second, new StateMachine.StateSingle<>("S3"),
+                    "E1");
+            Assert.fail();
+        } catch (StatemachineConflictException e) {
+            Assert.assertTrue(called.isEmpty());
+        }
+        // 分组后第二个数据的状态被修改，重试时由S3迁移，每个数据只执行一次监听
+        StateMachineBatchResult<AtomicReference<String>, StateMachine.StateSingle<String>> result = machine
+                .sendEvents(Arrays.asList(first, second), "E1");
+        Assert.assertTrue(result.isAllTransitioned());
+        Assert.assertEquals(new StateMachine.StateSingle<>("S3"),
+                result.getTransitioned().get(1).getFrom());
+        Assert.assertEquals(Arrays.asList("S1", "S3"), called);
+        Assert.assertEquals(2, machine.getRetryStatistics().getConflicts());
+        Assert.assertEquals(1, machine.getRetryStatistics().getRetries());
+    }
+
+    /**
+     * 测试重放
+     */
+    @Test
+    public void testReplay() {
+        int[] sets = new int[1];
+        StateMachine<Data, State, Event, Review> machine = new StateMachine<>(
+                (t) -> new StateMachine.StateSingle<>(t.getS()), (t, s) -> {
+            sets[0]++;
+            t.setS(s.getS());
+        }, this.supplier);
+        machine.addState(new StateMachine.StateSingle<>(State.S1), Event.E1,
+                new StateMachine.StateSingle<>(State.S2),
+                (t, s, e, c) -> {
+                    throw new IllegalStateException("重放不调用守卫");
+                });
+        machine.addState(new StateMachine.StateSingle<>(State.S2), Event.E2,
+                new StateMachine.StateSingle<>(State.S3),
+                (t, s, e, c) -> false);
+        List<String> projections = new ArrayList<>();
+        machine.addAction(new ProjectionAction(projections));
+        machine.addAction((t, from, e, to, c) -> Assert.fail("非投影监听"));
+        machine.addStateListener(new ProjectionStateListener(projections));
+        Data data1 = new Data();
+        Data data2 = new Data();
+        StateMachineReplayBatch<Data, StateMachine.StateSingle<State>, Event> batch = new StateMachineReplayBatch<>();
+        batch.add(data1, new StateMachine.StateSingle<>(State.S1), Event.E1,
+                new StateMachine.StateSingle<>(State.S2));
+        batch.add(data2, new StateMachine.StateSingle<>(State.S1), Event.E1,
+                new StateMachine.StateSingle<>(State.S2));
+        batch.add(data1, new StateMachine.StateSingle<>(State.S2), Event.E2,
+                new StateMachine.StateSingle<>(State.S3));
+        machine.replay(batch, null);
+        Assert.assertEquals("[S1-E1-S2, S1-E1-S2, S2-E2-S3, enter S3]",
+                projections.toString());
+        Assert.assertEquals(State.S3, data1.getS());
+        Assert.assertEquals(State.S2, data2.getS());
+        // 每个数据设置一次状态
+        Assert.assertEquals(2, sets[0]);
+        machine.replay(data2, new StateMachine.StateSingle<>(State.S2),
+                Event.E2, new StateMachine.StateSingle<>(State.S3), null);
+        Assert.assertEquals(State.S3, data2.getS());
+        Assert.assertEquals(3, sets[0]);
+    }
+
+    private static class ProjectionAction implements
+            StateMachineActionListener<Data, State, Event, Review>,
+            StateMachineProjectionListener {
+        private final List<String> projections;
+
+        private ProjectionAction(List<String> projections) {
+            this.projections = projections;
+        }
+
+        @Override
+        public void listener(Data data, StateMachine.StateSingle<State> from,
+                Event e, StateMachine.StateSingle<State> to, Review review) {
+            this.projections.add(from.getS() + "-" + e + "-" + to.getS());
+        }
+    }
+
+    private static class ProjectionStateListener implements
+            StateMachineStateListener<Data, State, Event>,
+            StateMachineProjectionListener {
+        private final List<String> projections;
+
+        private ProjectionStateListener(List<String> projections) {
+            this.projections = projections;
+        }
+
+        @Override
+        public StateMachine.StateSingle<State> state() {
+            return new StateMachine.StateSingle<>(State.S3);
+        }
+
+        @Override
+        public boolean isEnter() {
+            return true;
+        }
+
+        @Override
+        public void listener(Data data, Event event) {
+            this.projections.add("enter " + State.S3);
+        }
+    }
+
+    /**
+     * 测试统计
+     */
+    @Test
+    public void testMetrics() {
+        this.machine.getMetrics().setEnabled(true);
+        Data data = new Data();
+        data.setS(State.S1);
+        this.machine.sendEvent(data, Event.E1, reviewPass);
+        data.setS(State.S1);
+        this.machine.sendEvent(data, Event.E1, reviewPass);
+        try {
+            this.machine.sendEvent(data, Event.E1, reviewPass);
+            Assert.fail();
+        } catch (NoStateTransformException e) {
+        }
+        this.machine.getMetrics().setEnabled(false);
+        data.setS(State.S1);
+        this.machine.sendEvent(data, Event.E1, reviewPass);
+        StateMachineMetricsSnapshot snapshot = this.machine.getMetrics()
+                .snapshot();
+        StateMachineMetricsSnapshot.Transition transition = null;
+        for (StateMachineMetricsSnapshot.Transition t : snapshot
+                .getTransitions()) {
+            if (new StateMachine.StateSingle<>(State.S1).equals(t.getFrom())) {
+                transition = t;
+            }
+        }
+        Assert.assertNotNull(transition);
+        Assert.assertEquals(Event.E1, transition.getEvent());
+        Assert.assertEquals(new StateMachine.StateSingle<>(State.S2),
+                transition.getTo());
+        Assert.assertEquals(2, transition.getCount());
+        Assert.assertTrue(transition.getNanos() > 0);
+        Assert.assertTrue(transition.getPercentile(99) >= transition.getMean());
+        long rejections = 0;
+        for (StateMachineMetricsSnapshot.Rejection r : snapshot
+                .getRejections()) {
+            rejections += r.getCount();
+            if (r.getCount() > 0) {
+                Assert.assertEquals(new StateMachine.StateSingle<>(State.S2),
+                        r.getState());
+            }
+        }
+        Assert.assertEquals(1, rejections);
+    }
+
+    /**
+     * 测试分阶段计时
+     */
+    @Test
+    public void testPhaseTiming() {
+        this.machine.addAction(new ProjectionAction(new ArrayList<>()));
+        Data data = new Data();
+        data.setS(State.S1);
+        this.machine.sendEvent(data, Event.E1, reviewPass);
+        this.machine.getMetrics().setPhaseTimingEnabled(true);
+        data.setS(State.S1);
+        this.machine.sendEvent(data, Event.E1, reviewPass);
+        data.setS(State.S1);
+        this.machine.sendEvent(data, Event.E1, reviewPass);
+        this.machine.getMetrics().setPhaseTimingEnabled(false);
+        data.setS(State.S1);
+        this.machine.sendEvent(data, Event.E1, reviewPass);
+        StateMachineMetricsSnapshot snapshot = this.machine.getMetrics()
+                .snapshot();
+        Assert.assertEquals(StateMachinePhase.values().length,
+                snapshot.getPhases().size());
+        for (StateMachineMetricsSnapshot.Phase phase : snapshot.getPhases()) {
+            if (phase.getPhase() == StateMachinePhase.GUARD
+                    || phase.getPhase() == StateMachinePhase.SET_STATE
+                    || phase.getPhase() == StateMachinePhase.ACTION) {
+                Assert.assertEquals(phase.toString(), 2, phase.getCount());
+            }
+        }
+        boolean found = false;
+        for (StateMachineMetricsSnapshot.Listener listener : snapshot
+                .getListeners()) {
+            if (listener.getType() == ProjectionAction.class) {
+                Assert.assertEquals(StateMachinePhase.ACTION,
+                        listener.getPhase());
+                Assert.assertEquals(2, listener.getCount());
+                found = true;
+            }
+        }
+        Assert.assertTrue(found);
+        // 未开启统计时不创建迁移、被拒绝的统计项
+        Assert.assertTrue(snapshot.getTransitions().isEmpty());
+        Assert.assertTrue(snapshot.getRejections().isEmpty());
+    }
+
+    /**
+     * 测试统计项上限
+     */
+    @Test
+    public void testMetricsBound() {
+        StateMachine<AtomicReference<Integer>, Integer, String, Object> machine = new StateMachine<>(
+                (t) -> new StateMachine.StateSingle<>(t.get()),
+                (t, s) -> t.set(s.getS()), (t, s, e) -> new IllegalStateException());
+        int size = StateMachineMetrics.MAX_ENTRIES + 10;
+        for (int i = 0; i < size; i++) {
+            machine.addState(new StateMachine.StateSingle<>(i), "E",
+                    new StateMachine.StateSingle<>(i + 1));
+        }
+        AtomicReference<Integer> data = new AtomicReference<>(0);
+        for (int i = 0; i < size; i++) {
+            machine.sendEvent(data, "E");
+        }
+        Assert.assertTrue(machine.getMetrics().snapshot().getTransitions()
+                .isEmpty());
+        machine.getMetrics().setEnabled(true);
+        data.set(0);
+        for (int i = 0; i < size; i++) {
+            machine.sendEvent(data, "E");
+        }
+        List<StateMachineMetricsSnapshot.Transition> transitions = machine
+                .getMetrics().snapshot().getTransitions();
+        Assert.assertEquals(StateMachineMetrics.MAX_ENTRIES + 1,
+                transitions.size());
+        long count = 0;
+        for (StateMachineMetricsSnapshot.Transition transition : transitions) {
+            count += transition.getCount();
+            if (transition.getFrom() == StateMachineMetrics.OVERFLOW) {
+                Assert.assertEquals(10, transition.getCount());
+            }
+        }
+        Assert.assertEquals(size, count);
+    }
+
+    /**
+     * 测试非枚举状态
+     */
+    @Test
+    public void testNotEnumState() {
+        StateMachine<AtomicReference<String>, String, String, Object> machine = new StateMachine<>(
+                (t) -> new StateMachine.StateSingle<>(t.get()),
+                (t, s) -> t.set(s.getS()),
+                (t, s, e) -> new NoStateTransformException("没有状态转换{0},{1}",
+                        s.toString(), e));
+        machine.addState(new StateMachine.StateSingle<>("S1"), "E1",
+                new StateMachine.StateSingle<>("S2"));
+        machine.addState(new StateMachine.StateSingle<>(null), "E2",
+                new StateMachine.StateSingle<>("S1"));
+        AtomicReference<String> data = new AtomicReference<>("S1");
+        Assert.assertEquals("S1--E1-->S2",
+                new StateMachine.StateSingle<>("S2"),
+                machine.sendEvent(data, "E1"));
+        Assert.assertEquals("S2--E2-->S1",
+                new StateMachine.StateSingle<>("S1"),
+                machine.sendEvent(data, "E2"));
+        Assert.assertEquals("S1", data.get());
+    }
+
+    /**
+     * 测试状态机调用后添加的listener
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testListenerAddedAfterSendEvent() {
+        Data data = new Data();
+        StateMachine<Data, State, Event, Review> machine = new StateMachine<>(
+                (t) -> new StateMachine.StateSingle<>(t.getS()), (t, s) -> {
+            t.setS(s.getS());
+        }, this.supplier);
+        machine.addState(new StateMachine.StateSingle<>(State.S1), Event.E1,
+                new StateMachine.StateSingle<>(State.S2));
+        StateMachineStateListener<Data, State, Event> enterStateListener = Mockito
+                .mock(StateMachineStateListener.class);
+        when(enterStateListener.isEnter()).thenReturn(true);
+        when(enterStateListener.state())
+                .thenReturn(new StateMachine.StateSingle<>(State.S2));
+        machine.addStateListener(enterStateListener);
+        machine.sendEvent(data, new StateMachine.StateSingle<>(State.S1),
+                Event.E1);
+        verify(enterStateListener).listener(data, Event.E1);
+        StateMachineActionListener<Data, State, Event, Review> actionListener = Mockito
+                .mock(StateMachineActionListener.class);
+        machine.addAction(actionListener);
+        machine.sendEvent(data, new StateMachine.StateSingle<>(State.S1),
+                Event.E1);
+        verify(enterStateListener, Mockito.times(2)).listener(data, Event.E1);
+        verify(actionListener)
+                .listener(data, new StateMachine.StateSingle<>(State.S1),
+                        Event.E1, new StateMachine.StateSingle<>(State.S2),
+                        null);
+    }
+
+    /**
+     * 测试是否正常调用listener
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testListener() {
+        Data data = new Data();
+        StateMachine<Data, State, Event, Review> machine = new StateMachine<>(
+                (t) -> new StateMachine.StateSingle<>(t.getS()), (t, s) -> {
+            t.setS(s.getS());
+        }, this.supplier);
+        machine.addState(new StateMachine.StateSingle<>(State.S1), Event.E1,
+                new StateMachine.StateSingle<>(State.S2));
+        machine.addState(new StateMachine.StateSingle<>(State.S2), Event.E2,
+                new StateMachine.StateSingle<>(State.S3));
+        // preListener
+        StateMachineListener<Data, State, Event> preListener = Mockito
+                .mock(StateMachineListener.class);
+        when(preListener.isPost()).thenReturn(false);
+        machine.addListener(preListener);
+        // preEventListener
+        StateMachineEventListener<Data, State, Event, Review> preEventListener = Mockito
+                .mock(StateMachineEventListener.class);
+        when(preEventListener.isPost()).thenReturn(false);
+        when(preEventListener.event()).thenReturn(Event.E1);
+        machine.addEventListener(preEventListener);
+        // exitStateListener
+        StateMachineStateListener<Data, State, Event> exitStateListener = Mockito
+                .mock(StateMachineStateListener.class);
+        when(exitStateListener.isEnter()).thenReturn(false);
+        when(exitStateListener.state())
+                .thenReturn(new StateMachine.StateSingle<>(State.S1));
+        machine.addStateListener(exitStateListener);
+        // transformListener
+        StateMachineTransformListener<Data, State, Event> transformListener = Mockito
+                .mock(StateMachineTransformListener.class);
+        when(transformListener.source())
+                .thenReturn(new StateMachine.StateSingle<>(State.S1));
+        when(transformListener.target())
+                .thenReturn(new StateMachine.StateSingle<>(State.S2));
+        machine.addTransformListener(transformListener);
+        // actionListener
+        StateMachineActionListener<Data, State, Event, Review> actionListener = Mockito
+                .mock(StateMachineActionListener.class);
+        machine.addAction(actionListener);
+        // enterStateListener
+        StateMachineStateListener<Data, State, Event> enterStateListener = Mockito
+                .mock(StateMachineStateListener.class);
+        when(enterStateListener.isEnter()).thenReturn(true);
+        when(enterStateListener.state())
+                .thenReturn(new StateMachine.StateSingle<>(State.S2));
+        machine.addStateListener(enterStateListener);
+        // preEventListener
+        StateMachineEventListener<Data, State, Event, Review> postEventListener = Mockito
+                .mock(StateMachineEventListener.class);
+        when(postEventListener.isPost()).thenReturn(true);
+        when(postEventListener.event()).thenReturn(Event.E1);
+        machine.addEventListener(postEventListener);
+        // postListener
+        StateMachineListener<Data, State, Event> postListener = Mockito
+                .mock(StateMachineListener.class);
+        when(postListener.isPost()).thenReturn(true);
+        machine.addListener(postListener);
+        machine.sendEvent(data, new StateMachine.StateSingle<>(State.S1),
+                Event.E1);
+        // 确认调用before
+        verify(preListener)
+                .listener(data, new StateMachine.StateSingle<>(State.S1),
+                        Event.E1);
+        verify(preEventListener)
+                .listener(data, new StateMachine.StateSingle<>(State.S1), null,
+                        null);
+        verify(exitStateListener).listener(data, Event.E1);
+        verify(transformListener).listener(data, Event.E1);
+        verify(actionListener)
+                .listener(data, new StateMachine.StateSingle<>(State.S1),
+                        Event.E1, new StateMachine.StateSingle<>(State.S2),
+                        null);
+        verify(enterStateListener).listener(data, Event.E1);
+        verify(postEventListener)
+                .listener(data, new StateMachine.StateSingle<>(State.S1),
+                        new StateMachine.StateSingle<>(State.S2), null);
+        verify(postListener)
+                .listener(data, new StateMachine.StateSingle<>(State.S2),
+                        Event.E1);
+        Assert.assertEquals(State.S2, data.getS());
+    }
+
+}
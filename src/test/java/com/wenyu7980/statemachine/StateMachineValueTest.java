@@ -1,44 +1,237 @@
-package com.wenyu7980.statemachine;
-
-import com.wenyu7980.statemachine.guard.textguard.StateMachineValue;
-import org.junit.Assert;
-import org.junit.Test;
-
-import java.math.BigDecimal;
-
-/**
- *
- * @author:wenyu
- * @date:2019/6/4
- */
-public class StateMachineValueTest {
-    @Test
-    public void t1() {
-        Data data = new Data(new Data.Inner(BigDecimal.ONE));
-        Assert.assertEquals(BigDecimal.ONE,
-                StateMachineValue.get("#.inner.data;", data, null));
-        Assert.assertEquals(BigDecimal.valueOf(2), StateMachineValue
-                .get("#.inner.data + #.inner.data;", data, null));
-        Assert.assertEquals(BigDecimal.valueOf(1), StateMachineValue
-                .get("#.inner.data * #.inner.data;", data, null));
-        Assert.assertEquals(BigDecimal.ONE,
-                StateMachineValue.get("$.inner.data;", null, data));
-    }
-
-    @Test
-    public void testNull() {
-        Assert.assertNull("null", StateMachineValue.get("null;", null, null));
-        Assert.assertFalse("null <> null;",
-                (boolean) StateMachineValue.get("null <> null;", null, null));
-        Assert.assertTrue("null == null;",
-                (boolean) StateMachineValue.get("null == null;", null, null));
-    }
-
-    @Test
-    public void testString() {
-        Assert.assertTrue("'' <> null;",
-                (boolean) StateMachineValue.get("\"\" <> null;", null, null));
-        Assert.assertFalse("'' == null;",
-                (boolean) StateMachineValue.get("\"\" == null;", null, null));
-    }
-}
+package com.wenyu7980.statemachine;
+
+import com.wenyu7980.statemachine.guard.textguard.StateMachineExpression;
+import com.wenyu7980.statemachine.guard.textguard.StateMachineValue;
+import com.wenyu7980.statemachine.guard.textguard.TextGuardException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+
+/**
+ *
+ * @author:wenyu
+ * @date:2019/6/4
+ */
+public class StateMachineValueTest {
+    @Test
+    public void t1() {
+        Data data = new Data(new Data.Inner(BigDecimal.ONE));
+        Assert.assertEquals(BigDecimal.ONE,
+                StateMachineValue.get("#.inner.data;", data, null));
+        Assert.assertEquals(BigDecimal.valueOf(2), StateMachineValue
+                .get("#.inner.data + #.inner.data;", data, null));
+        Assert.assertEquals(BigDecimal.valueOf(1), StateMachineValue
+                .get("#.inner.data * #.inner.data;", data, null));
+        Assert.assertEquals(BigDecimal.ONE,
+                StateMachineValue.get("$.inner.data;", null, data));
+    }
+
+    @Test
+    public void testNull() {
+        Assert.assertNull("null", StateMachineValue.get("null;", null, null));
+        Assert.assertFalse("null <> null;",
+                (boolean) StateMachineValue.get("null <> null;", null, null));
+        Assert.assertTrue("null == null;",
+                (boolean) StateMachineValue.get("null == null;", null, null));
+    }
+
+    @Test
+    public void testString() {
+        Assert.assertTrue("'' <> null;",
+                (boolean) StateMachineValue.get("\"\" <> null;", null, null));
+        Assert.assertFalse("'' == null;",
+                (boolean) StateMachineValue.get("\"\" == null;", null, null));
+    }
+
+    @Test
+    public void testCompile() {
+        StateMachineExpression expression = StateMachineValue
+                .compile("#.inner.data + 1 > 1;");
+        Assert.assertTrue((boolean) expression
+                .evaluate(new Data(new Data.Inner(BigDecimal.ONE)), null));
+        Assert.assertFalse((boolean) expression
+                .evaluate(new Data(new Data.Inner(BigDecimal.ZERO)), null));
+        Assert.assertEquals(BigDecimal.valueOf(-2),
+                StateMachineValue.get("-2;", null, null));
+    }
+
+    /**
+     * 类型已知、未知时均定义表达式类，不退回方法句柄
+     */
+    @Test
+    public void testGenerated() {
+        String name = "com.wenyu7980.statemachine.guard.textguard.generated.Expression";
+        Assert.assertEquals(name, StateMachineValue
+                .compile("#.inner.data + 1 > 1;").getClass().getName());
+        Assert.assertEquals(name, StateMachineValue
+                .compile("#.count > 1000 && !#.flag;", Numbers.class, null)
+                .getClass().getName());
+        Assert.assertEquals(name, StateMachineValue
+                .compile("#.s == \"S1\" && $.status == \"PASS\";", Data.class,
+                        Review.class).getClass().getName());
+    }
+
+    /**
+     * 一次求值不生成表达式类
+     */
+    @Test
+    public void testGetNotGenerated() {
+        for (int i = 0; i < 100; i++) {
+            StateMachineValue.get("1 + 2 > 2;", null, null);
+        }
+        ClassLoadingMXBean classes = ManagementFactory.getClassLoadingMXBean();
+        long loaded = classes.getTotalLoadedClassCount();
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals(true,
+                    StateMachineValue.get("1 + 2 > 2;", null, null));
+        }
+        Assert.assertTrue(classes.getTotalLoadedClassCount() - loaded < 100);
+    }
+
+    @Test(expected = TextGuardException.class)
+    public void testCompileError() {
+        StateMachineValue.compile("#.inner.data >;");
+    }
+
+    @Test
+    public void testAccessor() {
+        StateMachineExpression expression = StateMachineValue
+                .compile("#.amount > 1 && #.total > 2;");
+        Assert.assertTrue((boolean) expression.evaluate(new Child(), null));
+        Assert.assertFalse((boolean) expression.evaluate(new Base(), null));
+        Assert.assertTrue((boolean) expression.evaluate(new Other(), null));
+        Assert.assertTrue((boolean) expression.evaluate(new Child(), null));
+    }
+
+    @Test(expected = TextGuardException.class)
+    public void testAccessorNotFound() {
+        StateMachineValue.get("#.unknown;", new Base(), null);
+    }
+
+    @Test
+    public void testShortCircuit() {
+        Assert.assertFalse((boolean) StateMachineValue
+                .get("$ <> null && $.status == \"PASS\";", null, null));
+        Assert.assertTrue((boolean) StateMachineValue
+                .get("$ == null || $.status == \"PASS\";", null, null));
+        Assert.assertEquals(BigDecimal.ONE, StateMachineValue
+                .get("$ == null ? 1 : $.status;", null, null));
+        Assert.assertEquals("PASS", StateMachineValue.get(
+                "$ == null ? 1 : $.status;", null, new Review(ReviewStatus.PASS)));
+    }
+
+    @Test
+    public void testNumber() {
+        Numbers numbers = new Numbers();
+        Assert.assertTrue((boolean) StateMachineValue
+                .get("#.count > 1000 && #.count < 1001.5;", numbers, null));
+        Assert.assertTrue((boolean) StateMachineValue
+                .get("#.count == 1001.0;", numbers, null));
+        Assert.assertEquals(2002L,
+                StateMachineValue.get("#.count + #.count;", numbers, null));
+        Assert.assertEquals(BigDecimal.valueOf(Long.MAX_VALUE).add(BigDecimal.ONE),
+                StateMachineValue.get("#.max + 1;", numbers, null));
+        Assert.assertTrue((boolean) StateMachineValue
+                .get("#.rate == 0.1 && #.rate * 10 >= 1;", numbers, null));
+        Assert.assertTrue((boolean) StateMachineValue
+                .get("#.amount == 1 && #.amount > 0.99;", numbers, null));
+        Assert.assertEquals(new BigDecimal("3.5"),
+                StateMachineValue.get("7 / 2;", null, null));
+        Assert.assertEquals(-1L, StateMachineValue.get("-#.one;", numbers, null));
+    }
+
+    @Test
+    public void testTyped() {
+        Numbers numbers = new Numbers();
+        StateMachineExpression expression = StateMachineValue.compile(
+                "#.count > 1000 && #.rate < 0.2 && #.max > #.count && !#.flag;",
+                Numbers.class, null);
+        Assert.assertTrue(expression.test(numbers, null));
+        numbers.flag = true;
+        Assert.assertFalse(expression.test(numbers, null));
+        Data data = new Data(new Data.Inner(BigDecimal.ONE));
+        data.setS(State.S1);
+        Assert.assertTrue(StateMachineValue
+                .compile("#.s == \"S1\" && #.inner.data == 1 && $.status == \"PASS\";",
+                        Data.class, Review.class)
+                .test(data, new Review(ReviewStatus.PASS)));
+    }
+
+    @Test
+    public void testEnum() {
+        Data data = new Data();
+        Review review = new Review(ReviewStatus.PASS);
+        for (Class<?> type : new Class<?>[] { Data.class, Object.class }) {
+            StateMachineExpression expression = StateMachineValue.compile(
+                    "#.s == \"S1\" && \"PASS\" == $.status && $.status <> \"REJECT\";",
+                    type, type == Data.class ? Review.class : Object.class);
+            data.setS(State.S1);
+            Assert.assertTrue(expression.test(data, review));
+            Assert.assertEquals(true, expression.evaluate(data, review));
+            data.setS(State.S2);
+            Assert.assertFalse(expression.test(data, review));
+            data.setS(null);
+            Assert.assertFalse(expression.test(data, review));
+            Assert.assertTrue(StateMachineValue
+                    .compile("#.s <> \"S1\";", type, null).test(data, null));
+        }
+        Assert.assertFalse((boolean) StateMachineValue.get("$.status == \"S1\";",
+                null, review));
+        Assert.assertFalse((boolean) StateMachineValue.get("#.count == \"1001\";",
+                new Numbers(), null));
+    }
+
+    @Test(expected = TextGuardException.class)
+    public void testTypedNull() {
+        StateMachineValue.compile("#.inner.data == 1;", Data.class, null)
+                .test(new Data(), null);
+    }
+
+    @Test
+    public void testTypedError() {
+        for (String text : new String[] { "#.unknown > 1;", "#.count && #.flag;",
+                "#.amount + #.flag;", "#.amount > \"1\";", "#.count.value;",
+                "#.s == \"S0\";" }) {
+            try {
+                StateMachineValue.compile(text,
+                        text.contains("#.s ") ? Data.class : Numbers.class,
+                        null);
+                Assert.fail(text);
+            } catch (TextGuardException e) {
+                Assert.assertEquals(text, e.getMessage());
+            }
+        }
+    }
+
+    public static class Numbers {
+        private int count = 1001;
+        private int one = 1;
+        private long max = Long.MAX_VALUE;
+        private double rate = 0.1;
+        private BigDecimal amount = new BigDecimal("1.00");
+        private boolean flag;
+    }
+
+    public static class Base {
+        private BigDecimal amount = BigDecimal.valueOf(2);
+
+        public BigDecimal getTotal() {
+            return amount;
+        }
+    }
+
+    public static class Child extends Base {
+        @Override
+        public BigDecimal getTotal() {
+            return BigDecimal.TEN;
+        }
+    }
+
+    public static class Other {
+        private BigDecimal amount = BigDecimal.TEN;
+        private BigDecimal total = BigDecimal.TEN;
+    }
+}